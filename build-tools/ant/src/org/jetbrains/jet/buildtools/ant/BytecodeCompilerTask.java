@@ -20,9 +20,15 @@ import org.apache.tools.ant.Task;
 import org.apache.tools.ant.types.Path;
 import org.apache.tools.ant.types.Reference;
 import org.jetbrains.jet.buildtools.core.BytecodeCompiler;
+import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.cli.common.messages.MessageCollectorPlainTextToStream;
 import org.jetbrains.jet.cli.jvm.compiler.CompileEnvironmentException;
+import org.jetbrains.jet.cli.jvm.daemon.CompileDaemonClient;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.jetbrains.jet.buildtools.core.Util.getPath;
 
@@ -44,6 +50,7 @@ public class BytecodeCompilerTask extends Task {
     private File module;
     private Path compileClasspath;
     private boolean includeRuntime = true;
+    private Integer daemonPort;
 
     public void setOutput(File output) {
         this.output = output;
@@ -69,6 +76,14 @@ public class BytecodeCompilerTask extends Task {
         this.includeRuntime = includeRuntime;
     }
 
+    /**
+     * Port of a running Kotlin compile daemon to send the compilation to.
+     * When no daemon is listening on the port, the sources are compiled in the Ant process.
+     */
+    public void setDaemonPort(int daemonPort) {
+        this.daemonPort = daemonPort;
+    }
+
 
     /**
      * Set the classpath to be used for this compilation.
@@ -111,6 +126,10 @@ public class BytecodeCompilerTask extends Task {
     @Override
     public void execute() {
 
+        if (this.daemonPort != null && compileWithDaemon()) {
+            return;
+        }
+
         BytecodeCompiler compiler = new BytecodeCompiler();
         String stdlibPath = (this.stdlib != null ? getPath(this.stdlib) : null);
         String[] classpath = (this.compileClasspath != null ? this.compileClasspath.list() : null);
@@ -151,4 +170,73 @@ public class BytecodeCompilerTask extends Task {
             throw new CompileEnvironmentException("\"src\" or \"module\" should be specified");
         }
     }
+
+
+    /**
+     * @return false if there is no daemon to compile with
+     */
+    private boolean compileWithDaemon() {
+        List<String> args = new ArrayList<String>();
+        if (this.src != null) {
+            if ((this.output == null) && (this.jar == null)) {
+                throw new CompileEnvironmentException("\"output\" or \"jar\" should be specified");
+            }
+            args.add("-src");
+            args.add(getPath(this.src));
+        }
+        else if (this.module != null) {
+            if (this.output != null) {
+                throw new CompileEnvironmentException("Module compilation is only supported for jar destination");
+            }
+            args.add("-module");
+            args.add(getPath(this.module));
+        }
+        else {
+            throw new CompileEnvironmentException("\"src\" or \"module\" should be specified");
+        }
+
+        if (this.output != null) {
+            args.add("-output");
+            args.add(getPath(this.output));
+        }
+        if (this.jar != null) {
+            args.add("-jar");
+            args.add(getPath(this.jar));
+        }
+        if (this.includeRuntime) {
+            args.add("-includeRuntime");
+        }
+
+        Path classpath = new Path(getProject());
+        if (this.stdlib != null) {
+            args.add("-noStdlib");
+            classpath.setLocation(this.stdlib);
+        }
+        if (this.compileClasspath != null) {
+            classpath.append(this.compileClasspath);
+        }
+        if (classpath.size() > 0) {
+            args.add("-classpath");
+            args.add(classpath.toString());
+        }
+
+        ExitCode exitCode;
+        try {
+            exitCode = CompileDaemonClient.compile(this.daemonPort, args.toArray(new String[args.size()]),
+                                                   MessageCollectorPlainTextToStream.PLAIN_TEXT_TO_SYSTEM_ERR);
+        }
+        catch (IOException e) {
+            // Some messages may have been reported already, compiling again would report them twice
+            throw new CompileEnvironmentException("Connection to the compile daemon is lost during the compilation", e);
+        }
+
+        if (exitCode == null) {
+            log("No compile daemon is listening on port " + this.daemonPort + ", compiling in process");
+            return false;
+        }
+        if (exitCode != ExitCode.OK) {
+            throw new CompileEnvironmentException("Compilation failed with " + exitCode + ", see \"ERROR:\" messages above for more details.");
+        }
+        return true;
+    }
 }
@@ -17,9 +17,11 @@
 package org.jetbrains.jet.codegen;
 
 import com.google.common.collect.Lists;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.asm4.Type;
 import org.jetbrains.jet.codegen.state.GenerationState;
 import org.jetbrains.jet.codegen.state.GenerationStateAware;
@@ -31,6 +33,10 @@ import org.jetbrains.jet.lang.resolve.name.FqName;
 import javax.inject.Inject;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static org.jetbrains.jet.codegen.AsmUtil.isPrimitive;
 
@@ -38,9 +44,17 @@ public final class ClassFileFactory extends GenerationStateAware {
     @NotNull private ClassBuilderFactory builderFactory;
 
     private final Map<FqName, NamespaceCodegen> ns2codegen = new HashMap<FqName, NamespaceCodegen>();
+    // Builders of the classes already written to the sink are replaced with null to release their bytes
     private final Map<String, ClassBuilder> generators = new LinkedHashMap<String, ClassBuilder>();
+    private final Map<String, Collection<File>> outputSourceFiles = new HashMap<String, Collection<File>>();
     private boolean isDone = false;
 
+    @Nullable private ClassFileSink sink;
+
+    @Nullable private ExecutorService classWritingExecutor;
+    // Classes whose bytes are computed on the executor, in the order they are written to the sink
+    private final Queue<PendingOutput> pendingOutputs = new LinkedList<PendingOutput>();
+
     public ClassFileFactory(@NotNull GenerationState state) {
         super(state);
     }
@@ -51,34 +65,148 @@ public final class ClassFileFactory extends GenerationStateAware {
         this.builderFactory = builderFactory;
     }
 
+    /**
+     * Classes are written to the sink as soon as they are finished and are not kept in memory after that,
+     * so {@link #asBytes(String)} and {@link #asText(String)} can't be used for them. Must be set before the generation starts
+     */
+    public void setSink(@Nullable ClassFileSink sink) {
+        assert generators.isEmpty() : "Sink should be set before the generation starts";
+        this.sink = sink;
+    }
+
+    boolean hasSink() {
+        return sink != null;
+    }
+
+    /**
+     * When an executor is set, the bytes of the classes written to the sink are computed on it, which is where ASM computes
+     * the frames and the max stack sizes of the methods. Only the finished class builders are used there, never the analysis
+     * results, so the code generation itself stays on the calling thread. The classes are written to the sink in the same
+     * order as without an executor, on the calling thread
+     */
+    void setClassWritingExecutor(@Nullable ExecutorService executor) {
+        classWritingExecutor = executor;
+    }
+
     ClassBuilder newVisitor(String internalClassName, PsiFile sourceFile) {
         return newVisitor(internalClassName + ".class", Collections.singletonList(sourceFile));
     }
     
     private ClassBuilder newVisitor(String outputFilePath, Collection<? extends PsiFile> sourceFiles) {
-        state.getProgress().reportOutput(toIoFilesIgnoringNonPhysical(sourceFiles), new File(outputFilePath));
         ClassBuilder answer = builderFactory.newClassBuilder();
-        generators.put(outputFilePath, answer);
+        addOutput(outputFilePath, toIoFilesIgnoringNonPhysical(sourceFiles), answer);
         return answer;
     }
 
-    private void done() {
+    private synchronized void addOutput(String outputFilePath, Collection<File> sourceFiles, ClassBuilder builder) {
+        state.getProgress().reportOutput(sourceFiles, new File(outputFilePath));
+        generators.put(outputFilePath, builder);
+        outputSourceFiles.put(outputFilePath, sourceFiles);
+    }
+
+    /**
+     * Writes all the classes generated so far to the sink, except for the namespace classes which are only finished in {@link #done()}
+     */
+    synchronized void flushFinishedOutputs() {
+        if (sink == null) return;
+
+        Set<String> unfinished = new HashSet<String>();
+        if (!isDone) {
+            for (FqName fqName : ns2codegen.keySet()) {
+                unfinished.add(NamespaceCodegen.getJVMClassNameForKotlinNs(fqName).getInternalName() + ".class");
+            }
+        }
+
+        for (Map.Entry<String, ClassBuilder> entry : generators.entrySet()) {
+            ClassBuilder builder = entry.getValue();
+            if (builder == null || unfinished.contains(entry.getKey())) continue;
+
+            if (classWritingExecutor != null) {
+                pendingOutputs.add(new PendingOutput(entry.getKey(), classWritingExecutor.submit(asBytesLater(builder))));
+            }
+            else {
+                sink.write(entry.getKey(), outputSourceFiles.get(entry.getKey()), builderFactory.asBytes(builder));
+            }
+            entry.setValue(null);
+        }
+        writePendingOutputs(false);
+    }
+
+    /**
+     * Waits for the bytes of the classes passed to the executor and writes them to the sink
+     */
+    synchronized void writePendingOutputs() {
+        writePendingOutputs(true);
+    }
+
+    private void writePendingOutputs(boolean wait) {
+        while (!pendingOutputs.isEmpty()) {
+            PendingOutput output = pendingOutputs.peek();
+            if (!wait && !output.bytes.isDone()) return;
+
+            pendingOutputs.remove();
+            assert sink != null : "Only the classes written to the sink are pending";
+            sink.write(output.path, outputSourceFiles.get(output.path), getBytes(output.bytes));
+        }
+    }
+
+    @NotNull
+    private Callable<byte[]> asBytesLater(@NotNull final ClassBuilder builder) {
+        return new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return builderFactory.asBytes(builder);
+            }
+        };
+    }
+
+    @NotNull
+    private static byte[] getBytes(@NotNull Future<byte[]> bytes) {
+        try {
+            return bytes.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException();
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Finishes the namespace classes. When a sink is set, all the classes which are not written yet are written to it
+     */
+    public synchronized void done() {
         if (!isDone) {
             isDone = true;
             for (NamespaceCodegen codegen : ns2codegen.values()) {
                 codegen.done();
             }
+            flushFinishedOutputs();
+            writePendingOutputs(true);
         }
     }
 
     public String asText(String file) {
         done();
-        return builderFactory.asText(generators.get(file));
+        return builderFactory.asText(getNotWrittenBuilder(file));
     }
 
     public byte[] asBytes(String file) {
         done();
-        return builderFactory.asBytes(generators.get(file));
+        return builderFactory.asBytes(getNotWrittenBuilder(file));
+    }
+
+    private synchronized ClassBuilder getNotWrittenBuilder(String file) {
+        ClassBuilder builder = generators.get(file);
+        if (builder == null && generators.containsKey(file)) {
+            throw new IllegalStateException("Class file is already written to the sink or released: " + file);
+        }
+        return builder;
     }
 
     public List<String> files() {
@@ -86,6 +214,30 @@ public final class ClassFileFactory extends GenerationStateAware {
         return new ArrayList<String>(generators.keySet());
     }
 
+    /**
+     * Unlike <code>files().contains(file)</code>, doesn't copy the list of all the files
+     */
+    public synchronized boolean containsFile(@NotNull String file) {
+        done();
+        return generators.containsKey(file);
+    }
+
+    /**
+     * Drops the bytes of the class, so that they can be garbage collected. The file is still listed in {@link #files()}
+     */
+    public synchronized void release(@NotNull String file) {
+        if (generators.containsKey(file)) {
+            generators.put(file, null);
+        }
+    }
+
+    @NotNull
+    public Collection<File> getSourceFiles(@NotNull String file) {
+        Collection<File> result = outputSourceFiles.get(file);
+        assert result != null : "No such output: " + file;
+        return result;
+    }
+
     public String createText() {
         StringBuilder answer = new StringBuilder();
 
@@ -139,6 +291,16 @@ public final class ClassFileFactory extends GenerationStateAware {
                 sourceFile);
     }
 
+    private static class PendingOutput {
+        private final String path;
+        private final Future<byte[]> bytes;
+
+        private PendingOutput(String path, Future<byte[]> bytes) {
+            this.path = path;
+            this.bytes = bytes;
+        }
+    }
+
     private static Collection<File> toIoFilesIgnoringNonPhysical(Collection<? extends PsiFile> psiFiles) {
         List<File> result = Lists.newArrayList();
         for (PsiFile psiFile : psiFiles) {
@@ -81,6 +81,10 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
 
     private static final String CLASS_NO_PATTERN_MATCHED_EXCEPTION = "jet/NoPatternMatchedException";
     private static final String CLASS_TYPE_CAST_EXCEPTION = "jet/TypeCastException";
+
+    // Fewer constants in a when are compared one by one
+    private static final int MIN_SWITCH_CASES = 3;
+
     public static final Set<DeclarationDescriptor> INTEGRAL_RANGES = KotlinBuiltIns.getInstance().getIntegralRanges();
 
     private int myLastLineNumber = -1;
@@ -105,6 +109,13 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
      */
     private final Map<JetElement, StackValue.Local> tempVariables = Maps.newHashMap();
 
+    /*
+     * Calls of inline functions whose bodies are being generated in place of the call, the innermost last
+     */
+    private final Stack<InlinedCall> inlinedCalls = new Stack<InlinedCall>();
+    // Functions whose parameters are bound in the frame, including the ones hidden from the bodies of inlined literals
+    private final List<JetNamedFunction> functionsWithBoundParameters = new ArrayList<JetNamedFunction>();
+
     public CalculatedClosure generateObjectLiteral(
             GenerationState state,
             JetObjectLiteralExpression literal
@@ -157,6 +168,20 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
         }
     }
 
+    static class InlinedCall {
+        final FunctionDescriptor descriptor;
+        final Type resultType;
+        final Label end = new Label();
+        final Map<ValueParameterDescriptor, JetFunctionLiteralExpression> inlinedArguments = Maps.newHashMap();
+        StackValue receiver;
+        int resultIndex = -1;
+
+        InlinedCall(FunctionDescriptor descriptor, Type resultType) {
+            this.descriptor = descriptor;
+            this.resultType = resultType;
+        }
+    }
+
 
     public ExpressionCodegen(
             MethodVisitor v,
@@ -1449,6 +1474,11 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
     }
 
     private void markLineNumber(@NotNull JetElement statement) {
+        // Lines of an inlined body belong to another function, possibly in another file
+        if (!inlinedCalls.isEmpty()) {
+            return;
+        }
+
         Document document = statement.getContainingFile().getViewProvider().getDocument();
         if (document != null) {
             int lineNumber = document.getLineNumber(statement.getTextRange().getStartOffset());  // 0-based
@@ -1483,7 +1513,18 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
     @Override
     public StackValue visitReturnExpression(JetReturnExpression expression, StackValue receiver) {
         JetExpression returnedExpression = expression.getReturnedExpression();
-        if (returnedExpression != null) {
+        if (!inlinedCalls.isEmpty()) {
+            // Function literals containing returns are never inlined, so this is a return from the inlined function
+            InlinedCall inlinedCall = inlinedCalls.peek();
+            if (returnedExpression != null) {
+                gen(returnedExpression, inlinedCall.resultType);
+                if (inlinedCall.resultIndex >= 0) {
+                    v.store(inlinedCall.resultIndex, inlinedCall.resultType);
+                }
+            }
+            v.goTo(inlinedCall.end);
+        }
+        else if (returnedExpression != null) {
             gen(returnedExpression, returnType);
             doFinallyOnReturn();
             v.areturn(returnType);
@@ -1775,6 +1816,11 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
             if (resolvedCall instanceof VariableAsFunctionResolvedCall) {
                 VariableAsFunctionResolvedCall variableAsFunctionResolvedCall = (VariableAsFunctionResolvedCall) resolvedCall;
                 ResolvedCallWithTrace<FunctionDescriptor> functionCall = variableAsFunctionResolvedCall.getFunctionCall();
+                JetFunctionLiteralExpression inlinedArgument =
+                        getInlinedArgument(variableAsFunctionResolvedCall.getVariableCall().getResultingDescriptor());
+                if (inlinedArgument != null) {
+                    return inlineFunctionLiteral(inlinedArgument, functionCall);
+                }
                 return invokeFunction(call, receiver, functionCall);
             }
             else {
@@ -1786,6 +1832,12 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
                         return invokeSamConstructor(expression, resolvedCall, (SimpleFunctionDescriptor) funDescriptor, samInterface);
                     }
                 }
+
+                JetNamedFunction inlinableFunction = InlineCodegenUtil.getInlinableDeclaration(
+                        state.getBindingTrace(), (FunctionDescriptor) resolvedCall.getResultingDescriptor());
+                if (inlinableFunction != null && canInlineCall(inlinableFunction, resolvedCall)) {
+                    return inlineCall(inlinableFunction, resolvedCall, receiver);
+                }
                 return invokeFunction(call, receiver, resolvedCall);
             }
         }
@@ -1833,6 +1885,167 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
         }
     }
 
+    private boolean canInlineCall(@NotNull JetNamedFunction function, @NotNull ResolvedCall<? extends CallableDescriptor> resolvedCall) {
+        // Recursive inline functions are inlined once, the nested calls are compiled as usual.
+        // Inlining would bind the same parameters again and unbind them at the end of the nested call
+        if (functionsWithBoundParameters.contains(function)) {
+            return false;
+        }
+        for (ResolvedValueArgument argument : resolvedCall.getValueArgumentsByIndex()) {
+            if (getArgumentExpression(argument) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static JetExpression getArgumentExpression(@NotNull ResolvedValueArgument argument) {
+        if (!(argument instanceof ExpressionValueArgument)) {
+            return null;
+        }
+        ValueArgument valueArgument = ((ExpressionValueArgument) argument).getValueArgument();
+        return valueArgument != null ? valueArgument.getArgumentExpression() : null;
+    }
+
+    /*
+     * The receiver and the arguments are stored to locals, then the parameters are bound to them and the body of the function is generated,
+     * with returns turned into jumps to the end of the call. Function literals passed to the parameters which
+     * the body only invokes are not evaluated: their bodies are generated at the invocation sites.
+     */
+    private StackValue inlineCall(
+            @NotNull JetNamedFunction function,
+            @NotNull ResolvedCall<? extends CallableDescriptor> resolvedCall,
+            @NotNull StackValue receiver
+    ) {
+        FunctionDescriptor descriptor = (FunctionDescriptor) resolvedCall.getResultingDescriptor().getOriginal();
+        JetType returnJetType = descriptor.getReturnType();
+        assert returnJetType != null : "Inline function without a return type: " + descriptor;
+        InlinedCall inlinedCall = new InlinedCall(descriptor, typeMapper.mapReturnType(returnJetType));
+
+        FrameMap.Mark mark = myFrameMap.mark();
+
+        ReceiverParameterDescriptor receiverParameter = descriptor.getReceiverParameter();
+        if (receiverParameter != null) {
+            Type receiverType = asmType(receiverParameter.getType());
+            StackValue.receiver(resolvedCall, receiver, this, null).put(receiverType, v);
+            int receiverIndex = myFrameMap.enterTemp(receiverType);
+            v.store(receiverIndex, receiverType);
+            inlinedCall.receiver = StackValue.local(receiverIndex, receiverType);
+        }
+
+        // An argument may contain a call of the same function, e.g. max(a, max(b, c)), and inlining it binds the same
+        // parameters. So the arguments are stored to temporaries, and the parameters are bound only when all are computed
+        FrameMap.Mark argumentsMark = myFrameMap.mark();
+        List<ValueParameterDescriptor> storedParameters = new ArrayList<ValueParameterDescriptor>();
+        List<Integer> argumentIndices = new ArrayList<Integer>();
+        List<ResolvedValueArgument> arguments = resolvedCall.getValueArgumentsByIndex();
+        for (ValueParameterDescriptor parameter : descriptor.getValueParameters()) {
+            JetExpression argument = getArgumentExpression(arguments.get(parameter.getIndex()));
+            assert argument != null : "No argument for " + parameter + " in " + function.getName() + " call";
+            if (InlineCodegenUtil.canInlineArgument(bindingContext, parameter, argument)) {
+                inlinedCall.inlinedArguments.put(parameter, (JetFunctionLiteralExpression) argument);
+            }
+            else {
+                Type parameterType = asmType(parameter.getType());
+                gen(argument, parameterType);
+                int argumentIndex = myFrameMap.enterTemp(parameterType);
+                v.store(argumentIndex, parameterType);
+                storedParameters.add(parameter);
+                argumentIndices.add(argumentIndex);
+            }
+        }
+
+        // The temporaries are allocated one after another, so the parameters entered in the same order take their slots
+        argumentsMark.dropTo();
+        for (int i = 0; i < storedParameters.size(); i++) {
+            ValueParameterDescriptor parameter = storedParameters.get(i);
+            int parameterIndex = myFrameMap.enter(parameter, asmType(parameter.getType()));
+            assert parameterIndex == argumentIndices.get(i) : "Parameter " + parameter + " is not bound to its argument";
+        }
+        functionsWithBoundParameters.add(function);
+
+        JetExpression body = function.getBodyExpression();
+        assert body != null : "Inline function without a body: " + descriptor;
+
+        inlinedCalls.push(inlinedCall);
+        if (function.hasBlockBody()) {
+            if (inlinedCall.resultType != Type.VOID_TYPE) {
+                inlinedCall.resultIndex = myFrameMap.enterTemp(inlinedCall.resultType);
+                // Makes the result defined on the paths the frontend knows to be unreachable
+                pushDefaultValueOnStack(inlinedCall.resultType, v);
+                v.store(inlinedCall.resultIndex, inlinedCall.resultType);
+            }
+            gen(body, Type.VOID_TYPE);
+        }
+        else {
+            gen(body, inlinedCall.resultType);
+        }
+        inlinedCalls.pop();
+
+        v.mark(inlinedCall.end);
+        if (inlinedCall.resultIndex >= 0) {
+            v.load(inlinedCall.resultIndex, inlinedCall.resultType);
+        }
+        functionsWithBoundParameters.remove(functionsWithBoundParameters.size() - 1);
+        mark.dropTo();
+
+        return StackValue.onStack(inlinedCall.resultType);
+    }
+
+    @Nullable
+    private JetFunctionLiteralExpression getInlinedArgument(@NotNull VariableDescriptor variable) {
+        if (!(variable instanceof ValueParameterDescriptor)) {
+            return null;
+        }
+        for (InlinedCall inlinedCall : inlinedCalls) {
+            JetFunctionLiteralExpression argument = inlinedCall.inlinedArguments.get(variable.getOriginal());
+            if (argument != null) {
+                return argument;
+            }
+        }
+        return null;
+    }
+
+    private StackValue inlineFunctionLiteral(
+            @NotNull JetFunctionLiteralExpression expression,
+            @NotNull ResolvedCall<FunctionDescriptor> invokeCall
+    ) {
+        JetFunctionLiteral functionLiteral = expression.getFunctionLiteral();
+        FunctionDescriptor literalDescriptor = bindingContext.get(BindingContext.FUNCTION, functionLiteral);
+        assert literalDescriptor != null : "No descriptor for function literal " + expression.getText();
+
+        FunctionDescriptor invoke = invokeCall.getResultingDescriptor();
+        JetType invokeReturnType = invoke.getReturnType();
+        assert invokeReturnType != null : "Invoke without a return type: " + invoke;
+        Type resultType = typeMapper.mapReturnType(invokeReturnType);
+
+        FrameMap.Mark mark = myFrameMap.mark();
+
+        // The arguments are computed in the inlined body, the parameters of the literal are bound to them
+        List<ResolvedValueArgument> arguments = invokeCall.getValueArgumentsByIndex();
+        for (ValueParameterDescriptor parameter : literalDescriptor.getValueParameters()) {
+            JetExpression argument = getArgumentExpression(arguments.get(parameter.getIndex()));
+            assert argument != null : "No argument for " + parameter + " in " + expression.getText() + " call";
+            Type argumentType = asmType(invoke.getValueParameters().get(parameter.getIndex()).getType());
+            gen(argument, argumentType);
+
+            Type parameterType = asmType(parameter.getType());
+            StackValue.onStack(argumentType).put(parameterType, v);
+            v.store(myFrameMap.enter(parameter, parameterType), parameterType);
+        }
+
+        // The body of the literal is the code of the caller, the inlined calls are not visible from there
+        List<InlinedCall> enclosingCalls = new ArrayList<InlinedCall>(inlinedCalls);
+        inlinedCalls.clear();
+        gen(functionLiteral.getBodyExpression()).put(resultType, v);
+        inlinedCalls.addAll(enclosingCalls);
+
+        mark.dropTo();
+
+        return StackValue.onStack(resultType);
+    }
+
     private PropertyDescriptor accessablePropertyDescriptor(PropertyDescriptor propertyDescriptor) {
         PropertySetterDescriptor setter = propertyDescriptor.getSetter();
         PropertyGetterDescriptor getter = propertyDescriptor.getGetter();
@@ -2115,6 +2328,12 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
     }
 
     private StackValue generateReceiver(DeclarationDescriptor provided) {
+        for (InlinedCall inlinedCall : inlinedCalls) {
+            if (inlinedCall.descriptor == provided) {
+                return inlinedCall.receiver;
+            }
+        }
+
         if (context.getCallableDescriptorWithReceiver() == provided) {
             StackValue result = context.getReceiverExpression(typeMapper);
             return castToRequiredTypeOfInterfaceIfNeeded(result, provided, null);
@@ -3493,6 +3712,30 @@ The "returned" value of try expression with no finally is either the last expres
             }
         }
 
+        Map<Object, JetWhenEntry> switchCases = subjectLocal != -1 ? getSwitchCases(expression, subjectJetType, subjectType) : null;
+        if (switchCases != null) {
+            generateWhenAsSwitch(expression, switchCases, subjectType, subjectLocal, resultType, hasElse, end);
+        }
+        else {
+            generateWhenAsConditionChain(expression, subjectType, subjectLocal, resultType, hasElse, end);
+        }
+
+        markLineNumber(expression);
+        v.mark(end);
+
+        myFrameMap.leaveTemp(subjectType);
+        tempVariables.remove(expr);
+        return StackValue.onStack(resultType);
+    }
+
+    private void generateWhenAsConditionChain(
+            JetWhenExpression expression,
+            Type subjectType,
+            int subjectLocal,
+            Type resultType,
+            boolean hasElse,
+            Label end
+    ) {
         Label nextCondition = null;
         for (JetWhenEntry whenEntry : expression.getEntries()) {
             if (nextCondition != null) {
@@ -3525,13 +3768,218 @@ The "returned" value of try expression with no finally is either the last expres
             v.mark(nextCondition);
             throwNewException(CLASS_NO_PATTERN_MATCHED_EXCEPTION);
         }
+    }
 
-        markLineNumber(expression);
-        v.mark(end);
+    /**
+     * @return the entry to jump to for every constant the subject is compared with (Integer for Int, Char, Short and Byte subjects
+     *         and for the ordinals of enum entries, String for strings), or null if the when can't be compiled to a switch
+     */
+    @Nullable
+    private Map<Object, JetWhenEntry> getSwitchCases(JetWhenExpression expression, @Nullable JetType subjectJetType, Type subjectType) {
+        if (subjectJetType == null || subjectJetType.isNullable()) return null;
 
-        myFrameMap.leaveTemp(subjectType);
-        tempVariables.remove(expr);
-        return StackValue.onStack(resultType);
+        boolean isIntLike = isIntLikeSwitchType(subjectType);
+        boolean isString = subjectType.equals(JAVA_STRING_TYPE);
+        ClassifierDescriptor subjectClass = subjectJetType.getConstructor().getDeclarationDescriptor();
+        JetClass enumDeclaration = null;
+        if (subjectClass instanceof ClassDescriptor && ((ClassDescriptor) subjectClass).getKind() == ClassKind.ENUM_CLASS) {
+            PsiElement declaration = BindingContextUtils.classDescriptorToDeclaration(bindingContext, (ClassDescriptor) subjectClass);
+            // Ordinals are known only for the enums compiled together with the when
+            if (declaration instanceof JetClass) {
+                enumDeclaration = (JetClass) declaration;
+            }
+        }
+        if (!isIntLike && !isString && enumDeclaration == null) return null;
+
+        // The first entry matching a constant wins, like in the chain of comparisons
+        Map<Object, JetWhenEntry> cases = new LinkedHashMap<Object, JetWhenEntry>();
+        for (JetWhenEntry whenEntry : expression.getEntries()) {
+            if (whenEntry.isElse()) continue;
+            for (JetWhenCondition condition : whenEntry.getConditions()) {
+                if (!(condition instanceof JetWhenConditionWithExpression)) return null;
+                JetExpression conditionExpression = ((JetWhenConditionWithExpression) condition).getExpression();
+                if (conditionExpression == null) return null;
+
+                Object key;
+                if (enumDeclaration != null) {
+                    key = getEnumEntryOrdinal(conditionExpression, (ClassDescriptor) subjectClass, enumDeclaration);
+                }
+                else {
+                    key = getSwitchConstant(conditionExpression, isString);
+                }
+                if (key == null) return null;
+
+                if (!cases.containsKey(key)) {
+                    cases.put(key, whenEntry);
+                }
+            }
+        }
+
+        // A couple of comparisons are as fast as a switch
+        return cases.size() >= MIN_SWITCH_CASES ? cases : null;
+    }
+
+    private static boolean isIntLikeSwitchType(Type type) {
+        int sort = type.getSort();
+        return sort == Type.INT || sort == Type.CHAR || sort == Type.SHORT || sort == Type.BYTE;
+    }
+
+    @Nullable
+    private Object getSwitchConstant(JetExpression expression, boolean isString) {
+        CompileTimeConstant<?> constant = bindingContext.get(BindingContext.COMPILE_TIME_VALUE, expression);
+        if (constant == null) return null;
+        Object value = constant.getValue();
+        if (isString) {
+            return value instanceof String ? value : null;
+        }
+
+        JetType type = bindingContext.get(BindingContext.EXPRESSION_TYPE, expression);
+        if (type == null || !isIntLikeSwitchType(asmType(type))) return null;
+        if (value instanceof Character) {
+            return (int) (Character) value;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).intValue();
+        }
+        return null;
+    }
+
+    @Nullable
+    private Integer getEnumEntryOrdinal(JetExpression expression, ClassDescriptor enumClass, JetClass enumDeclaration) {
+        JetExpression reference = expression instanceof JetQualifiedExpression
+                                  ? ((JetQualifiedExpression) expression).getSelectorExpression()
+                                  : expression;
+        if (!(reference instanceof JetSimpleNameExpression)) return null;
+
+        DeclarationDescriptor descriptor = bindingContext.get(BindingContext.REFERENCE_TARGET, (JetSimpleNameExpression) reference);
+        if (!(descriptor instanceof VariableDescriptor)) return null;
+        DeclarationDescriptor container = descriptor.getContainingDeclaration();
+        if (!DescriptorUtils.isEnumClassObject(container) || container.getContainingDeclaration() != enumClass) return null;
+
+        // Enum constants are created in the order of declaration, see ImplementationBodyCodegen.initializeEnumConstants()
+        int ordinal = 0;
+        for (JetDeclaration declaration : enumDeclaration.getDeclarations()) {
+            if (declaration instanceof JetEnumEntry) {
+                if (descriptor.getName().getName().equals(declaration.getName())) {
+                    return ordinal;
+                }
+                ordinal++;
+            }
+        }
+        return null;
+    }
+
+    private void generateWhenAsSwitch(
+            JetWhenExpression expression,
+            Map<Object, JetWhenEntry> cases,
+            Type subjectType,
+            int subjectLocal,
+            Type resultType,
+            boolean hasElse,
+            Label end
+    ) {
+        Map<JetWhenEntry, Label> entryLabels = new HashMap<JetWhenEntry, Label>();
+        for (JetWhenEntry whenEntry : cases.values()) {
+            if (!entryLabels.containsKey(whenEntry)) {
+                entryLabels.put(whenEntry, new Label());
+            }
+        }
+        Label defaultLabel = new Label();
+
+        v.load(subjectLocal, subjectType);
+        if (subjectType.equals(JAVA_STRING_TYPE)) {
+            // Switch on the hash code, then compare with the strings having this hash code
+            SortedMap<Integer, List<String>> stringsByHashCode = new TreeMap<Integer, List<String>>();
+            for (Object key : cases.keySet()) {
+                String string = (String) key;
+                List<String> strings = stringsByHashCode.get(string.hashCode());
+                if (strings == null) {
+                    strings = new ArrayList<String>(1);
+                    stringsByHashCode.put(string.hashCode(), strings);
+                }
+                strings.add(string);
+            }
+
+            v.invokevirtual(JAVA_STRING_TYPE.getInternalName(), "hashCode", "()I");
+            Map<Integer, Label> hashCodeLabels = new LinkedHashMap<Integer, Label>();
+            for (Integer hashCode : stringsByHashCode.keySet()) {
+                hashCodeLabels.put(hashCode, new Label());
+            }
+            generateIntSwitch(hashCodeLabels, defaultLabel);
+
+            for (Map.Entry<Integer, List<String>> entry : stringsByHashCode.entrySet()) {
+                v.mark(hashCodeLabels.get(entry.getKey()));
+                for (String string : entry.getValue()) {
+                    v.load(subjectLocal, subjectType);
+                    v.aconst(string);
+                    v.invokevirtual(JAVA_STRING_TYPE.getInternalName(), "equals", "(Ljava/lang/Object;)Z");
+                    v.ifne(entryLabels.get(cases.get(string)));
+                }
+                v.goTo(defaultLabel);
+            }
+        }
+        else {
+            if (!isIntLikeSwitchType(subjectType)) {
+                v.invokevirtual(subjectType.getInternalName(), "ordinal", "()I");
+            }
+            Map<Integer, Label> keyLabels = new TreeMap<Integer, Label>();
+            for (Map.Entry<Object, JetWhenEntry> entry : cases.entrySet()) {
+                keyLabels.put((Integer) entry.getKey(), entryLabels.get(entry.getValue()));
+            }
+            generateIntSwitch(keyLabels, defaultLabel);
+        }
+
+        for (JetWhenEntry whenEntry : expression.getEntries()) {
+            Label label = whenEntry.isElse() ? defaultLabel : entryLabels.get(whenEntry);
+            // All the constants of the entry are matched by the earlier entries
+            if (label == null) continue;
+
+            v.mark(label);
+            FrameMap.Mark mark = myFrameMap.mark();
+            gen(whenEntry.getExpression(), resultType);
+            mark.dropTo();
+            if (!whenEntry.isElse()) {
+                v.goTo(end);
+            }
+        }
+        if (!hasElse) {
+            v.mark(defaultLabel);
+            throwNewException(CLASS_NO_PATTERN_MATCHED_EXCEPTION);
+        }
+    }
+
+    /**
+     * Emits a tableswitch or a lookupswitch, whichever is cheaper, choosing like javac does
+     *
+     * @param labels targets by the key, in the ascending order of the keys
+     */
+    private void generateIntSwitch(Map<Integer, Label> labels, Label defaultLabel) {
+        int[] keys = new int[labels.size()];
+        Label[] targets = new Label[labels.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Label> entry : labels.entrySet()) {
+            keys[i] = entry.getKey();
+            targets[i] = entry.getValue();
+            i++;
+        }
+
+        int min = keys[0];
+        int max = keys[keys.length - 1];
+        long tableSpaceCost = 4 + ((long) max - min + 1);
+        long tableTimeCost = 3;
+        long lookupSpaceCost = 3 + 2 * (long) keys.length;
+        long lookupTimeCost = keys.length;
+        if (tableSpaceCost + 3 * tableTimeCost <= lookupSpaceCost + 3 * lookupTimeCost) {
+            Label[] table = new Label[max - min + 1];
+            Arrays.fill(table, defaultLabel);
+            for (int j = 0; j < keys.length; j++) {
+                table[keys[j] - min] = targets[j];
+            }
+            v.tableswitch(min, max, defaultLabel, table);
+        }
+        else {
+            v.lookupswitch(defaultLabel, keys, targets);
+        }
     }
 
     private StackValue generateWhenCondition(Type subjectType, int subjectLocal, JetWhenCondition condition) {
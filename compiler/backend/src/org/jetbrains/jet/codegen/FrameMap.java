@@ -18,34 +18,62 @@ package org.jetbrains.jet.codegen;
 
 import com.google.common.collect.Lists;
 import com.intellij.openapi.util.Trinity;
-import gnu.trove.TObjectIntHashMap;
-import gnu.trove.TObjectIntIterator;
 import org.jetbrains.asm4.Type;
 import org.jetbrains.jet.lang.descriptors.DeclarationDescriptor;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+/**
+ * Local variable slots of a method being generated.
+ * <p/>
+ * The variables currently entered are kept in arrays in the order they were entered, so entering and leaving them
+ * allocates nothing. A method has few variables at a time, and the ones used most are the last entered, so they are
+ * looked up from the end.
+ */
 public class FrameMap {
-    private final TObjectIntHashMap<DeclarationDescriptor> myVarIndex = new TObjectIntHashMap<DeclarationDescriptor>();
-    private final TObjectIntHashMap<DeclarationDescriptor> myVarSizes = new TObjectIntHashMap<DeclarationDescriptor>();
+    private static final int INITIAL_CAPACITY = 8;
+
+    private DeclarationDescriptor[] myDescriptors = new DeclarationDescriptor[INITIAL_CAPACITY];
+    private int[] myVarIndex = new int[INITIAL_CAPACITY];
+    private int[] myVarSizes = new int[INITIAL_CAPACITY];
+    private int myCount = 0;
+
     private int myMaxIndex = 0;
 
     public int enter(DeclarationDescriptor descriptor, Type type) {
+        int position = find(descriptor);
+        if (position >= 0) {
+            // Entered again without leaving, the new slot replaces the old one
+            remove(position);
+        }
+
+        if (myCount == myDescriptors.length) {
+            int capacity = myCount * 2;
+            myDescriptors = Arrays.copyOf(myDescriptors, capacity);
+            myVarIndex = Arrays.copyOf(myVarIndex, capacity);
+            myVarSizes = Arrays.copyOf(myVarSizes, capacity);
+        }
+
         int index = myMaxIndex;
-        myVarIndex.put(descriptor, index);
+        myDescriptors[myCount] = descriptor;
+        myVarIndex[myCount] = index;
+        myVarSizes[myCount] = type.getSize();
+        myCount++;
         myMaxIndex += type.getSize();
-        myVarSizes.put(descriptor, type.getSize());
         return index;
     }
 
     public int leave(DeclarationDescriptor descriptor) {
-        int size = myVarSizes.get(descriptor);
-        myMaxIndex -= size;
-        myVarSizes.remove(descriptor);
-        int oldIndex = myVarIndex.remove(descriptor);
+        int position = find(descriptor);
+        int oldIndex = 0;
+        if (position >= 0) {
+            oldIndex = myVarIndex[position];
+            myMaxIndex -= myVarSizes[position];
+            remove(position);
+        }
         if (oldIndex != myMaxIndex) {
             throw new IllegalStateException("descriptor can be left only if it is last");
         }
@@ -63,13 +91,32 @@ public class FrameMap {
     }
 
     public int getIndex(DeclarationDescriptor descriptor) {
-        return myVarIndex.contains(descriptor) ? myVarIndex.get(descriptor) : -1;
+        int position = find(descriptor);
+        return position >= 0 ? myVarIndex[position] : -1;
     }
 
     public Mark mark() {
         return new Mark(myMaxIndex);
     }
 
+    private int find(DeclarationDescriptor descriptor) {
+        for (int i = myCount - 1; i >= 0; i--) {
+            if (myDescriptors[i].equals(descriptor)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void remove(int position) {
+        int tail = myCount - position - 1;
+        System.arraycopy(myDescriptors, position + 1, myDescriptors, position, tail);
+        System.arraycopy(myVarIndex, position + 1, myVarIndex, position, tail);
+        System.arraycopy(myVarSizes, position + 1, myVarSizes, position, tail);
+        myCount--;
+        myDescriptors[myCount] = null;
+    }
+
     public class Mark {
         private final int myIndex;
 
@@ -78,18 +125,17 @@ public class FrameMap {
         }
 
         public void dropTo() {
-            List<DeclarationDescriptor> descriptorsToDrop = new ArrayList<DeclarationDescriptor>();
-            TObjectIntIterator<DeclarationDescriptor> iterator = myVarIndex.iterator();
-            while (iterator.hasNext()) {
-                iterator.advance();
-                if (iterator.value() >= myIndex) {
-                    descriptorsToDrop.add(iterator.key());
+            int count = 0;
+            for (int i = 0; i < myCount; i++) {
+                if (myVarIndex[i] < myIndex) {
+                    myDescriptors[count] = myDescriptors[i];
+                    myVarIndex[count] = myVarIndex[i];
+                    myVarSizes[count] = myVarSizes[i];
+                    count++;
                 }
             }
-            for (DeclarationDescriptor declarationDescriptor : descriptorsToDrop) {
-                myVarIndex.remove(declarationDescriptor);
-                myVarSizes.remove(declarationDescriptor);
-            }
+            Arrays.fill(myDescriptors, count, myCount, null);
+            myCount = count;
             myMaxIndex = myIndex;
         }
     }
@@ -98,17 +144,9 @@ public class FrameMap {
     public String toString() {
         StringBuilder sb = new StringBuilder();
 
-        if (myVarIndex.size() != myVarSizes.size()) {
-            return "inconsistent";
-        }
-
         List<Trinity<DeclarationDescriptor, Integer, Integer>> descriptors = Lists.newArrayList();
-
-        for (Object descriptor0 : myVarIndex.keys()) {
-            DeclarationDescriptor descriptor = (DeclarationDescriptor) descriptor0;
-            int varIndex = myVarIndex.get(descriptor);
-            int varSize = myVarSizes.get(descriptor);
-            descriptors.add(Trinity.create(descriptor, varIndex, varSize));
+        for (int i = 0; i < myCount; i++) {
+            descriptors.add(Trinity.create(myDescriptors[i], myVarIndex[i], myVarSizes[i]));
         }
 
         Collections.sort(descriptors, new Comparator<Trinity<DeclarationDescriptor, Integer, Integer>>() {
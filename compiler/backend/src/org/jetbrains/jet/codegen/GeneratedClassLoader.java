@@ -18,24 +18,62 @@ package org.jetbrains.jet.codegen;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
 
 public class GeneratedClassLoader extends URLClassLoader {
-    private ClassFileFactory state;
+    static {
+        // ClassLoader.registerAsParallelCapable() is only available since Java 7. It registers its caller,
+        // and reflection frames are skipped when the caller is determined
+        try {
+            Method method = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            method.setAccessible(true);
+            method.invoke(null);
+        }
+        catch (NoSuchMethodException e) {
+            // Java 6: class loading is synchronized on the class loader
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private volatile ClassFileFactory state;
+    private final boolean releaseDefinedClasses;
 
     public GeneratedClassLoader(@NotNull ClassFileFactory state, ClassLoader parentClassLoader, URL...urls) {
+        this(state, false, parentClassLoader, urls);
+    }
+
+    /**
+     * @param releaseDefinedClasses whether the bytes of a generated class should be dropped from the factory once the class is defined
+     */
+    public GeneratedClassLoader(
+            @NotNull ClassFileFactory state,
+            boolean releaseDefinedClasses,
+            ClassLoader parentClassLoader,
+            URL... urls
+    ) {
         super(urls, parentClassLoader);
         this.state = state;
+        this.releaseDefinedClasses = releaseDefinedClasses;
     }
 
     @NotNull
     @Override
     protected Class<?> findClass(@NotNull String name) throws ClassNotFoundException {
-        String file = name.replace('.', '/') + ".class";
-        if (state.files().contains(file)) {
-            byte[] bytes = state.asBytes(file);
-            return defineClass(name, bytes, 0, bytes.length);
+        ClassFileFactory factory = state;
+        if (factory != null) {
+            String file = name.replace('.', '/') + ".class";
+            if (factory.containsFile(file)) {
+                byte[] bytes = factory.asBytes(file);
+                Class<?> aClass = defineClass(name, bytes, 0, bytes.length);
+                if (releaseDefinedClasses) {
+                    factory.release(file);
+                }
+                return aClass;
+            }
         }
         return super.findClass(name);
     }
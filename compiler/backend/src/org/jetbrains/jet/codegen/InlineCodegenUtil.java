@@ -0,0 +1,225 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.psi.*;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.BindingTrace;
+import org.jetbrains.jet.lang.resolve.calls.model.ResolvedCall;
+import org.jetbrains.jet.lang.resolve.calls.model.VariableAsFunctionResolvedCall;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+
+import static org.jetbrains.jet.codegen.binding.CodegenBinding.INLINABLE_FUNCTION;
+import static org.jetbrains.jet.codegen.binding.CodegenBinding.INVOKED_ONLY_PARAMETER;
+import static org.jetbrains.jet.lang.resolve.BindingContextUtils.descriptorToDeclaration;
+
+/**
+ * Decides which calls of inline functions are compiled by generating the body of the function in place of the call.
+ * <p/>
+ * Only the functions declared in the sources being compiled can be inlined, as their bodies are generated from PSI.
+ * Function literals passed to the parameters which the body only invokes are inlined too, without creating closures.
+ */
+public class InlineCodegenUtil {
+    private InlineCodegenUtil() {
+    }
+
+    /**
+     * @return the declaration of the given function if its calls can be inlined, {@code null} if they are compiled as usual
+     */
+    @Nullable
+    public static JetNamedFunction getInlinableDeclaration(@NotNull BindingTrace trace, @NotNull FunctionDescriptor descriptor) {
+        if (!(descriptor instanceof SimpleFunctionDescriptor) || !((SimpleFunctionDescriptor) descriptor).isInline()) return null;
+
+        FunctionDescriptor original = descriptor.getOriginal();
+        // Member functions would need a different this and are virtual anyway
+        if (!(original.getContainingDeclaration() instanceof NamespaceDescriptor)) return null;
+
+        PsiElement declaration = descriptorToDeclaration(trace.getBindingContext(), original);
+        if (!(declaration instanceof JetNamedFunction)) return null;
+        JetNamedFunction function = (JetNamedFunction) declaration;
+
+        Boolean inlinable = trace.get(INLINABLE_FUNCTION, function);
+        if (inlinable == null) {
+            inlinable = isInlinable(trace, function, original);
+            trace.record(INLINABLE_FUNCTION, function, inlinable);
+        }
+        return inlinable ? function : null;
+    }
+
+    /**
+     * @return whether the body of the inlined function only invokes the given parameter, so that a function literal passed
+     * as its argument can be generated at the invocation sites instead
+     */
+    public static boolean canInlineArgument(
+            @NotNull BindingContext bindingContext,
+            @NotNull ValueParameterDescriptor parameter,
+            @NotNull JetExpression argument
+    ) {
+        if (!(argument instanceof JetFunctionLiteralExpression)) return false;
+        if (!Boolean.TRUE.equals(bindingContext.get(INVOKED_ONLY_PARAMETER, parameter))) return false;
+
+        JetFunctionLiteral functionLiteral = ((JetFunctionLiteralExpression) argument).getFunctionLiteral();
+        if (functionLiteral.getReceiverTypeRef() != null) return false;
+
+        // The body of the literal is generated in the method of the call, so it must not contain
+        // declarations of its own classes and must not return from the literal
+        final boolean[] inlinable = {true};
+        functionLiteral.getBodyExpression().accept(new JetTreeVisitorVoid() {
+            @Override
+            public void visitElement(PsiElement element) {
+                if (!inlinable[0]) return;
+                if (element instanceof JetReturnExpression || isClassOrTry(element)) {
+                    inlinable[0] = false;
+                    return;
+                }
+                super.visitElement(element);
+            }
+        });
+        return inlinable[0];
+    }
+
+    private static boolean isInlinable(
+            @NotNull final BindingTrace trace,
+            @NotNull final JetNamedFunction function,
+            @NotNull FunctionDescriptor descriptor
+    ) {
+        JetExpression body = function.getBodyExpression();
+        if (body == null || JetPsiUtil.isScriptDeclaration(function)) return false;
+
+        for (TypeParameterDescriptor typeParameter : descriptor.getTypeParameters()) {
+            if (typeParameter.isReified()) return false;
+        }
+        for (ValueParameterDescriptor parameter : descriptor.getValueParameters()) {
+            if (parameter.hasDefaultValue() || parameter.getVarargElementType() != null) return false;
+        }
+
+        final JetExpression functionBody = body;
+        final BindingContext bindingContext = trace.getBindingContext();
+        final boolean[] inlinable = {true};
+        body.accept(new JetTreeVisitorVoid() {
+            @Override
+            public void visitElement(PsiElement element) {
+                if (!inlinable[0]) return;
+                if (isClassOrTry(element) || element instanceof JetSuperExpression) {
+                    inlinable[0] = false;
+                    return;
+                }
+                if (element instanceof JetReturnExpression) {
+                    // A return from an expression body, or from the middle of an expression, can't be turned into a jump
+                    JetReturnExpression returnExpression = (JetReturnExpression) element;
+                    if (returnExpression.getTargetLabel() != null || !function.hasBlockBody() ||
+                        !isStatement(returnExpression, functionBody)) {
+                        inlinable[0] = false;
+                        return;
+                    }
+                }
+                if (element instanceof JetSimpleNameExpression && !isAccessibleFromEverywhere((JetSimpleNameExpression) element)) {
+                    inlinable[0] = false;
+                    return;
+                }
+                super.visitElement(element);
+            }
+
+            private boolean isAccessibleFromEverywhere(@NotNull JetSimpleNameExpression expression) {
+                DeclarationDescriptor target = bindingContext.get(BindingContext.REFERENCE_TARGET, expression);
+                if (!(target instanceof DeclarationDescriptorWithVisibility)) return true;
+                if (((DeclarationDescriptorWithVisibility) target).getVisibility() != Visibilities.PRIVATE) return true;
+                // Private locals are fine, they are declared in the body itself
+                return target.getContainingDeclaration() instanceof CallableDescriptor;
+            }
+        });
+        if (!inlinable[0]) return false;
+
+        for (ValueParameterDescriptor parameter : descriptor.getValueParameters()) {
+            if (KotlinBuiltIns.getInstance().isFunctionType(parameter.getType()) && isOnlyInvoked(bindingContext, body, parameter)) {
+                trace.record(INVOKED_ONLY_PARAMETER, parameter);
+            }
+        }
+        return true;
+    }
+
+    // Whether the expression is a statement of the body, or of the branches and the loops in it, so that nothing is put
+    // on the stack before it is evaluated and a jump from it to the end of the call leaves the stack as at the end
+    private static boolean isStatement(@NotNull JetExpression expression, @NotNull JetExpression body) {
+        JetExpression current = expression;
+        while (current != body) {
+            PsiElement parent = current.getParent();
+            if (parent instanceof JetContainerNode) {
+                parent = parent.getParent();
+            }
+
+            if (parent instanceof JetIfExpression) {
+                JetIfExpression ifExpression = (JetIfExpression) parent;
+                if (current != ifExpression.getThen() && current != ifExpression.getElse()) return false;
+            }
+            else if (parent instanceof JetWhenEntry) {
+                if (current != ((JetWhenEntry) parent).getExpression()) return false;
+                parent = parent.getParent();
+            }
+            else if (parent instanceof JetLoopExpression) {
+                if (current != ((JetLoopExpression) parent).getBody()) return false;
+            }
+            else if (!(parent instanceof JetBlockExpression)) {
+                return false;
+            }
+
+            if (!(parent instanceof JetExpression)) return false;
+            current = (JetExpression) parent;
+        }
+        return true;
+    }
+
+    private static boolean isOnlyInvoked(
+            @NotNull final BindingContext bindingContext,
+            @NotNull JetExpression body,
+            @NotNull final ValueParameterDescriptor parameter
+    ) {
+        final boolean[] onlyInvoked = {true};
+        body.accept(new JetTreeVisitorVoid() {
+            @Override
+            public void visitSimpleNameExpression(JetSimpleNameExpression expression) {
+                ResolvedCall<? extends CallableDescriptor> resolvedCall = bindingContext.get(BindingContext.RESOLVED_CALL, expression);
+                if (resolvedCall instanceof VariableAsFunctionResolvedCall) {
+                    VariableAsFunctionResolvedCall call = (VariableAsFunctionResolvedCall) resolvedCall;
+                    if (call.getVariableCall().getResultingDescriptor().getOriginal() == parameter) {
+                        if (!(expression.getParent() instanceof JetCallExpression) ||
+                            ((JetCallExpression) expression.getParent()).getCalleeExpression() != expression) {
+                            onlyInvoked[0] = false;
+                        }
+                        return;
+                    }
+                }
+                if (bindingContext.get(BindingContext.REFERENCE_TARGET, expression) == parameter) {
+                    onlyInvoked[0] = false;
+                }
+            }
+        });
+        return onlyInvoked[0];
+    }
+
+    private static boolean isClassOrTry(@NotNull PsiElement element) {
+        return element instanceof JetFunctionLiteralExpression ||
+               element instanceof JetObjectLiteralExpression ||
+               element instanceof JetClassOrObject ||
+               element instanceof JetNamedFunction ||
+               element instanceof JetTryExpression;
+    }
+}
@@ -31,6 +31,8 @@ import org.jetbrains.jet.lang.resolve.name.FqName;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.jetbrains.jet.codegen.binding.CodegenBinding.registerClassNameForScript;
 
@@ -58,8 +60,25 @@ public class KotlinCodegenFacade {
             namespaceGrouping.putValue(JetPsiUtil.getFQName(file), file);
         }
 
-        for (Map.Entry<FqName, Collection<JetFile>> entry : namespaceGrouping.entrySet()) {
-            generateNamespace(state, entry.getKey(), entry.getValue(), errorHandler);
+        ClassFileFactory factory = state.getFactory();
+        // The generation itself reads lazily resolved descriptors and records into the traces, so it stays on this thread.
+        // Only the bytes of the classes written to the sink are computed on the executor
+        ExecutorService executor = state.isWriteClassesInParallel() && factory.hasSink()
+                                   ? Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())
+                                   : null;
+        factory.setClassWritingExecutor(executor);
+        try {
+            for (Map.Entry<FqName, Collection<JetFile>> entry : namespaceGrouping.entrySet()) {
+                generateNamespace(state, entry.getKey(), entry.getValue(), errorHandler);
+                factory.flushFinishedOutputs();
+            }
+            factory.writePendingOutputs();
+        }
+        finally {
+            factory.setClassWritingExecutor(null);
+            if (executor != null) {
+                executor.shutdownNow();
+            }
         }
     }
 
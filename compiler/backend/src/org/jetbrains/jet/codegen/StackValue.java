@@ -42,6 +42,24 @@ import static org.jetbrains.jet.codegen.AsmUtil.*;
 import static org.jetbrains.jet.lang.resolve.java.AsmTypeConstants.*;
 
 public abstract class StackValue {
+    // Locals and values on stack of these types are immutable and shared, they are created for almost every expression
+    private static final Type[] CACHED_TYPES = {
+            Type.BOOLEAN_TYPE, Type.CHAR_TYPE, Type.BYTE_TYPE, Type.SHORT_TYPE, Type.INT_TYPE, Type.FLOAT_TYPE, Type.LONG_TYPE,
+            Type.DOUBLE_TYPE, OBJECT_TYPE
+    };
+    private static final int CACHED_LOCAL_COUNT = 32;
+    private static final Local[][] CACHED_LOCALS = new Local[CACHED_TYPES.length][CACHED_LOCAL_COUNT];
+    private static final OnStack[] CACHED_ON_STACK = new OnStack[CACHED_TYPES.length];
+
+    static {
+        for (int i = 0; i < CACHED_TYPES.length; i++) {
+            for (int index = 0; index < CACHED_LOCAL_COUNT; index++) {
+                CACHED_LOCALS[i][index] = new Local(index, CACHED_TYPES[i]);
+            }
+            CACHED_ON_STACK[i] = new OnStack(CACHED_TYPES[i]);
+        }
+    }
+
     @NotNull
     public final Type type;
 
@@ -92,15 +110,30 @@ public abstract class StackValue {
     }
 
     public static Local local(int index, Type type) {
+        int typeIndex = getCachedTypeIndex(type);
+        if (typeIndex >= 0 && index >= 0 && index < CACHED_LOCAL_COUNT) {
+            return CACHED_LOCALS[typeIndex][index];
+        }
         return new Local(index, type);
     }
 
+    private static int getCachedTypeIndex(Type type) {
+        int sort = type.getSort();
+        if (sort >= Type.BOOLEAN && sort <= Type.DOUBLE) {
+            // Primitive types are equal to the constants of Type, which are listed first in the order of their sorts
+            return sort - Type.BOOLEAN;
+        }
+        return type == OBJECT_TYPE ? CACHED_TYPES.length - 1 : -1;
+    }
+
     public static StackValue shared(int index, Type type) {
         return new Shared(index, type);
     }
 
     public static StackValue onStack(Type type) {
-        return type == Type.VOID_TYPE ? none() : new OnStack(type);
+        if (type == Type.VOID_TYPE) return none();
+        int typeIndex = getCachedTypeIndex(type);
+        return typeIndex >= 0 ? CACHED_ON_STACK[typeIndex] : new OnStack(type);
     }
 
     public static StackValue constant(@Nullable Object value, Type type) {
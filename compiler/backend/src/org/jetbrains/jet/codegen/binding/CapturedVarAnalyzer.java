@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen.binding;
+
+import com.google.common.collect.Lists;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.tree.IElementType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.psi.*;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.lexer.JetTokens;
+
+import java.util.List;
+
+/**
+ * Finds out whether a local {@code var} captured in closures can be copied into them by value, as a {@code val} is, instead
+ * of being kept in a {@code jet.runtime.SharedVar}.
+ * <p/>
+ * That's the case when every assignment of the variable is made in the function which declares it (not in a closure),
+ * precedes all the closures using the variable in the text, and isn't in a loop containing one of those closures: then
+ * the variable never changes once a closure has copied it. The references to the variable are found by name, so a
+ * shadowing declaration can only make the variable shared.
+ */
+/*package*/ class CapturedVarAnalyzer {
+    private CapturedVarAnalyzer() {
+    }
+
+    public static boolean canBeCapturedByValue(@NotNull JetVariableDeclaration declaration) {
+        PsiElement scope = declaration instanceof JetMultiDeclarationEntry
+                           ? declaration.getParent().getParent()
+                           : declaration.getParent();
+        Name name = declaration.getNameAsName();
+        if (scope == null || name == null) return false;
+
+        List<JetExpression> writes = Lists.newArrayList();
+        List<JetSimpleNameExpression> captures = Lists.newArrayList();
+        collectReferences(scope, name, writes, captures);
+        if (captures.isEmpty()) return false;
+
+        for (JetExpression write : writes) {
+            for (PsiElement element = write; element != scope; element = element.getParent()) {
+                if (element == null || isClosure(element)) return false;
+                if (element instanceof JetLoopExpression && containsAny(element, captures)) return false;
+            }
+            for (JetSimpleNameExpression capture : captures) {
+                if (write.getTextRange().getEndOffset() > capture.getTextRange().getStartOffset()) return false;
+            }
+        }
+        return true;
+    }
+
+    private static void collectReferences(
+            @NotNull final PsiElement scope,
+            @NotNull final Name name,
+            @NotNull final List<JetExpression> writes,
+            @NotNull final List<JetSimpleNameExpression> captures
+    ) {
+        scope.accept(new JetTreeVisitorVoid() {
+            @Override
+            public void visitSimpleNameExpression(JetSimpleNameExpression expression) {
+                if (!name.equals(expression.getReferencedNameAsName())) return;
+
+                JetExpression write = getWrite(expression);
+                if (write != null) {
+                    writes.add(write);
+                }
+                if (isInClosure(expression, scope)) {
+                    captures.add(expression);
+                }
+            }
+        });
+    }
+
+    // The assignment or increment which writes the given reference, if any
+    @Nullable
+    private static JetExpression getWrite(@NotNull JetSimpleNameExpression reference) {
+        JetExpression expression = reference;
+        while (expression.getParent() instanceof JetParenthesizedExpression) {
+            expression = (JetExpression) expression.getParent();
+        }
+
+        PsiElement parent = expression.getParent();
+        if (parent instanceof JetBinaryExpression) {
+            JetBinaryExpression binaryExpression = (JetBinaryExpression) parent;
+            IElementType operation = binaryExpression.getOperationToken();
+            if (binaryExpression.getLeft() == expression &&
+                (operation == JetTokens.EQ || JetTokens.AUGMENTED_ASSIGNMENTS.contains(operation))) {
+                return binaryExpression;
+            }
+        }
+        else if (parent instanceof JetUnaryExpression) {
+            IElementType operation = ((JetUnaryExpression) parent).getOperationReference().getReferencedNameElementType();
+            if (operation == JetTokens.PLUSPLUS || operation == JetTokens.MINUSMINUS) {
+                return (JetExpression) parent;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isInClosure(@NotNull PsiElement element, @NotNull PsiElement scope) {
+        for (PsiElement parent = element.getParent(); parent != null && parent != scope; parent = parent.getParent()) {
+            if (isClosure(parent)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isClosure(@NotNull PsiElement element) {
+        return element instanceof JetDeclarationWithBody || element instanceof JetClassOrObject;
+    }
+
+    private static boolean containsAny(@NotNull PsiElement element, @NotNull List<? extends PsiElement> elements) {
+        for (PsiElement e : elements) {
+            if (element.getTextRange().contains(e.getTextRange())) return true;
+        }
+        return false;
+    }
+}
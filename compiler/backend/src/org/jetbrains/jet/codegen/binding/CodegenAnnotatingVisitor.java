@@ -275,6 +275,8 @@ class CodegenAnnotatingVisitor extends JetVisitorVoid {
         // working around a problem with shallow analysis
         if (propertyDescriptor == null) return;
 
+        recordIfCapturedByValue(property, propertyDescriptor);
+
         String nameForClassOrNamespaceMember = getNameForClassOrNamespaceMember(propertyDescriptor);
         if (nameForClassOrNamespaceMember != null) {
             nameStack.push(nameForClassOrNamespaceMember);
@@ -286,6 +288,26 @@ class CodegenAnnotatingVisitor extends JetVisitorVoid {
         nameStack.pop();
     }
 
+    @Override
+    public void visitMultiDeclaration(JetMultiDeclaration declaration) {
+        for (JetMultiDeclarationEntry entry : declaration.getEntries()) {
+            VariableDescriptor descriptor = bindingContext.get(VARIABLE, entry);
+            if (descriptor != null) {
+                recordIfCapturedByValue(entry, descriptor);
+            }
+        }
+        super.visitMultiDeclaration(declaration);
+    }
+
+    private void recordIfCapturedByValue(@NotNull JetVariableDeclaration declaration, @NotNull DeclarationDescriptor descriptor) {
+        if (!(descriptor instanceof VariableDescriptor) || descriptor instanceof PropertyDescriptor) return;
+        VariableDescriptor variable = (VariableDescriptor) descriptor;
+        if (variable.isVar() && bindingContext.get(CAPTURED_IN_CLOSURE, variable) != null &&
+            CapturedVarAnalyzer.canBeCapturedByValue(declaration)) {
+            bindingTrace.record(CAPTURED_BY_VALUE, variable);
+        }
+    }
+
     @Override
     public void visitNamedFunction(JetNamedFunction function) {
         FunctionDescriptor functionDescriptor =
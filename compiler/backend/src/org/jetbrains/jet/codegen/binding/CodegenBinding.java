@@ -57,6 +57,13 @@ public class CodegenBinding {
 
     public static final WritableSlice<ClassDescriptor, Collection<ClassDescriptor>> INNER_CLASSES = Slices.createSimpleSlice();
 
+    public static final WritableSlice<JetNamedFunction, Boolean> INLINABLE_FUNCTION = Slices.createSimpleSlice();
+
+    public static final WritableSlice<ValueParameterDescriptor, Boolean> INVOKED_ONLY_PARAMETER = Slices.createSimpleSetSlice();
+
+    // Local vars captured in closures which are never assigned once captured (see CapturedVarAnalyzer)
+    public static final WritableSlice<VariableDescriptor, Boolean> CAPTURED_BY_VALUE = Slices.createSimpleSetSlice();
+
     private CodegenBinding() {
     }
 
@@ -367,7 +374,8 @@ public class CodegenBinding {
     public static boolean isVarCapturedInClosure(BindingContext bindingContext, DeclarationDescriptor descriptor) {
         if (!(descriptor instanceof VariableDescriptor) || descriptor instanceof PropertyDescriptor) return false;
         VariableDescriptor variableDescriptor = (VariableDescriptor) descriptor;
-        return bindingContext.get(CAPTURED_IN_CLOSURE, variableDescriptor) != null && variableDescriptor.isVar();
+        return bindingContext.get(CAPTURED_IN_CLOSURE, variableDescriptor) != null && variableDescriptor.isVar() &&
+               !Boolean.TRUE.equals(bindingContext.get(CAPTURED_BY_VALUE, variableDescriptor));
     }
 
     public static boolean hasThis0(BindingContext bindingContext, ClassDescriptor classDescriptor) {
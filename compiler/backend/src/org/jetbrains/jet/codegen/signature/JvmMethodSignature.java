@@ -22,6 +22,7 @@ import org.jetbrains.asm4.Type;
 import org.jetbrains.asm4.commons.Method;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class JvmMethodSignature {
@@ -43,6 +44,9 @@ public class JvmMethodSignature {
      */
     private final boolean genericsAvailable;
 
+    // Computed on the first request, the arguments of every call of the method are generated against them
+    private List<Type> valueParameterTypes;
+
     public JvmMethodSignature(
             @NotNull Method asmMethod,
             @Nullable String genericsSignature,
@@ -132,13 +136,16 @@ public class JvmMethodSignature {
     }
 
     public List<Type> getValueParameterTypes() {
-        List<Type> r = new ArrayList<Type>(kotlinParameterTypes.size());
-        for (JvmMethodParameterSignature p : kotlinParameterTypes) {
-            if (p.getKind() == JvmMethodParameterKind.VALUE) {
-                r.add(p.getAsmType());
+        if (valueParameterTypes == null) {
+            List<Type> r = new ArrayList<Type>(kotlinParameterTypes.size());
+            for (JvmMethodParameterSignature p : kotlinParameterTypes) {
+                if (p.getKind() == JvmMethodParameterKind.VALUE) {
+                    r.add(p.getAsmType());
+                }
             }
+            valueParameterTypes = Collections.unmodifiableList(r);
         }
-        return r;
+        return valueParameterTypes;
     }
 
     @NotNull
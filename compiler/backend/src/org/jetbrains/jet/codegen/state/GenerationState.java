@@ -68,6 +68,8 @@ public class GenerationState {
 
     private final boolean generateDeclaredClasses;
 
+    private final boolean writeClassesInParallel;
+
     public GenerationState(Project project, ClassBuilderFactory builderFactory, BindingContext bindingContext, List<JetFile> files) {
         this(project, builderFactory, Progress.DEAF, bindingContext, files, BuiltinToJavaTypesMapping.ENABLED, true, false, true);
     }
@@ -82,6 +84,22 @@ public class GenerationState {
             boolean generateNotNullAssertions,
             boolean generateNotNullParamAssertions,
             boolean generateDeclaredClasses
+    ) {
+        this(project, builderFactory, progress, bindingContext, files, builtinToJavaTypesMapping, generateNotNullAssertions,
+             generateNotNullParamAssertions, generateDeclaredClasses, false);
+    }
+
+    public GenerationState(
+            @NotNull Project project,
+            @NotNull ClassBuilderFactory builderFactory,
+            @NotNull Progress progress,
+            @NotNull BindingContext bindingContext,
+            @NotNull List<JetFile> files,
+            @NotNull BuiltinToJavaTypesMapping builtinToJavaTypesMapping,
+            boolean generateNotNullAssertions,
+            boolean generateNotNullParamAssertions,
+            boolean generateDeclaredClasses,
+            boolean writeClassesInParallel
     ) {
         this.project = project;
         this.progress = progress;
@@ -102,6 +120,7 @@ public class GenerationState {
         this.generateNotNullAssertions = generateNotNullAssertions;
         this.generateNotNullParamAssertions = generateNotNullParamAssertions;
         this.generateDeclaredClasses = generateDeclaredClasses;
+        this.writeClassesInParallel = writeClassesInParallel;
     }
 
     @NotNull
@@ -166,6 +185,14 @@ public class GenerationState {
         return generateDeclaredClasses;
     }
 
+    /**
+     * Only the bytes of the classes written to a {@link org.jetbrains.jet.codegen.ClassFileSink} are computed in parallel,
+     * along with their frames. The classes themselves are still generated sequentially
+     */
+    public boolean isWriteClassesInParallel() {
+        return writeClassesInParallel;
+    }
+
     public void beforeCompile() {
         markUsed();
 
@@ -88,6 +88,8 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         }
 
         Config config = getConfig(arguments, project);
+        config.setRemoveUnusedDeclarations(arguments.removeUnused);
+        config.setMinify(arguments.minify);
         if (analyzeAndReportErrors(messageCollector, environmentForJS.getSourceFiles(), config)) {
             return COMPILATION_ERROR;
         }
@@ -99,7 +101,7 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         }
 
         MainCallParameters mainCallParameters = arguments.createMainCallParameters();
-        return translateAndGenerateOutputFile(mainCallParameters, environmentForJS, config, outputFile);
+        return translateAndGenerateOutputFile(mainCallParameters, environmentForJS, config, outputFile, messageCollector);
     }
 
     private static void reportCompiledSourcesList(@NotNull MessageCollector messageCollector,
@@ -125,10 +127,18 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
             @NotNull MainCallParameters mainCall,
             @NotNull JetCoreEnvironment environmentForJS,
             @NotNull Config config,
-            @NotNull String outputFile
+            @NotNull String outputFile,
+            @NotNull MessageCollector messageCollector
     ) {
         try {
-            K2JSTranslator.translateWithMainCallParametersAndSaveToFile(mainCall, environmentForJS.getSourceFiles(), outputFile, config);
+            K2JSTranslator translator = new K2JSTranslator(config);
+            String programCode = translator.generateProgramCode(environmentForJS.getSourceFiles(), mainCall);
+            FileUtil.writeToFile(new File(outputFile), programCode);
+            if (config.isRemoveUnusedDeclarations()) {
+                messageCollector.report(CompilerMessageSeverity.INFO,
+                                        "Unused declarations removed: " + translator.getRemovedDeclarationsSize() + " characters",
+                                        NO_LOCATION);
+            }
         }
         catch (Exception e) {
             throw new RuntimeException(e);
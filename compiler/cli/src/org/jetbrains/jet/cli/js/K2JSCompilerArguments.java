@@ -53,6 +53,12 @@ public class K2JSCompilerArguments extends CompilerArguments {
     @Argument(value = "main", description = "Whether a main function should be called; either 'call' or 'noCall', default 'call' (main function will be auto detected)")
     public String main;
 
+    @Argument(value = "removeUnused", description = "Leave out the declarations which the main function, the tests and the package initializers don't use; the module then can't be called from other scripts")
+    public boolean removeUnused;
+
+    @Argument(value = "minify", description = "Shorten the local names and leave out the optional whitespace of the generated code")
+    public boolean minify;
+
     @Argument(value = "help", alias = "h", description = "Show help")
     public boolean help;
 
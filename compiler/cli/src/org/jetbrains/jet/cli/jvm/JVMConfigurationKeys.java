@@ -16,6 +16,8 @@
 
 package org.jetbrains.jet.cli.jvm;
 
+import com.intellij.core.JavaCoreApplicationEnvironment;
+import com.intellij.util.Consumer;
 import org.jetbrains.jet.codegen.BuiltinToJavaTypesMapping;
 import org.jetbrains.jet.config.CompilerConfigurationKey;
 import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
@@ -39,4 +41,19 @@ public class JVMConfigurationKeys {
             CompilerConfigurationKey.create("generate not-null assertions");
     public static final CompilerConfigurationKey<Boolean> GENERATE_NOT_NULL_PARAMETER_ASSERTIONS =
             CompilerConfigurationKey.create("generate not-null parameter assertions");
+
+    public static final CompilerConfigurationKey<Boolean> PARALLEL_CLASS_WRITING =
+            CompilerConfigurationKey.create("write generated classes in parallel");
+
+    public static final CompilerConfigurationKey<File> INCREMENTAL_CACHE_DIR =
+            CompilerConfigurationKey.create("incremental compilation cache directory");
+
+    public static final CompilerConfigurationKey<File> CLASS_PATH_INDEX_DIR =
+            CompilerConfigurationKey.create("classpath jar indices directory");
+
+    public static final CompilerConfigurationKey<JavaCoreApplicationEnvironment> APPLICATION_ENVIRONMENT =
+            CompilerConfigurationKey.create("shared application environment");
+    // Notified of every classpath entry opened through the shared application environment
+    public static final CompilerConfigurationKey<Consumer<File>> CLASSPATH_ENTRY_CONSUMER =
+            CompilerConfigurationKey.create("consumer of classpath entries");
 }
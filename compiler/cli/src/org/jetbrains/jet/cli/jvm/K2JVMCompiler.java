@@ -29,6 +29,7 @@ import org.jetbrains.jet.cli.common.messages.*;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
 import org.jetbrains.jet.cli.jvm.compiler.CommandLineScriptUtils;
 import org.jetbrains.jet.cli.jvm.compiler.CompileEnvironmentUtil;
+import org.jetbrains.jet.cli.jvm.compiler.IncrementalCompiler;
 import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
 import org.jetbrains.jet.cli.jvm.compiler.KotlinToJVMBytecodeCompiler;
 import org.jetbrains.jet.cli.jvm.repl.ReplFromTerminal;
@@ -123,6 +124,13 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
 
         configuration.put(JVMConfigurationKeys.GENERATE_NOT_NULL_ASSERTIONS, arguments.notNullAssertions);
         configuration.put(JVMConfigurationKeys.GENERATE_NOT_NULL_PARAMETER_ASSERTIONS, arguments.notNullParamAssertions);
+        configuration.put(JVMConfigurationKeys.PARALLEL_CLASS_WRITING, arguments.parallelClassWriting);
+        if (arguments.incrementalCache != null) {
+            configuration.put(JVMConfigurationKeys.INCREMENTAL_CACHE_DIR, new File(arguments.incrementalCache));
+        }
+        if (arguments.classpathIndex != null) {
+            configuration.put(JVMConfigurationKeys.CLASS_PATH_INDEX_DIR, new File(arguments.classpathIndex));
+        }
 
         configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, messageCollector);
 
@@ -148,6 +156,9 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
                 JetCoreEnvironment environment = new JetCoreEnvironment(rootDisposable, configuration);
                 KotlinToJVMBytecodeCompiler.compileAndExecuteScript(paths, environment, scriptArgs);
             }
+            else if (arguments.incrementalCache != null && outputDir != null) {
+                IncrementalCompiler.compile(configuration, outputDir, new File(arguments.incrementalCache));
+            }
             else {
                 JetCoreEnvironment environment = new JetCoreEnvironment(rootDisposable, configuration);
                 KotlinToJVMBytecodeCompiler.compileBunchOfSources(environment, jar, outputDir, arguments.includeRuntime);
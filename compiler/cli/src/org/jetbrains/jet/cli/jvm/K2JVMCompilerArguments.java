@@ -70,6 +70,15 @@ public class K2JVMCompilerArguments extends CompilerArguments {
     @Argument(value = "notNullParamAssertions", description = "generate not-null assertions on parameters of methods accessible from Java")
     public boolean notNullParamAssertions;
 
+    @Argument(value = "parallelClassWriting", description = "compute frames and bytes of generated classes in parallel when writing them to the output, the classes are still generated sequentially (experimental)")
+    public boolean parallelClassWriting;
+
+    @Argument(value = "incrementalCache", description = "directory to keep the incremental compilation cache in, only used with -output")
+    public String incrementalCache;
+
+    @Argument(value = "classpathIndex", description = "directory to keep the indices of the classpath jars in, to speed up class lookups")
+    public String classpathIndex;
+
     @Argument(value = "builtins", description = "compile builtin classes (internal)")
     public boolean builtins;
 
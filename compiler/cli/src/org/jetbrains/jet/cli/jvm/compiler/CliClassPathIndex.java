@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.google.common.collect.Lists;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.resolve.java.ClassPathIndex;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Answers the class finder's lookups from the jar indices (see {@link JarIndex}) instead of opening every jar of the classpath.
+ * Directories of the classpath are checked on the file system.
+ */
+public class CliClassPathIndex extends ClassPathIndex {
+    private final List<JarIndex> jars = Lists.newArrayList();
+    private final List<File> directories = Lists.newArrayList();
+    // Set when some jar couldn't be indexed: nothing can be said about its contents
+    private boolean incomplete = false;
+
+    public CliClassPathIndex(@NotNull List<File> classpath, @NotNull File indexDir) {
+        for (File file : classpath) {
+            if (file.isFile()) {
+                JarIndex jarIndex = JarIndex.load(file, indexDir);
+                if (jarIndex != null) {
+                    jars.add(jarIndex);
+                }
+                else {
+                    incomplete = true;
+                }
+            }
+            else if (file.isDirectory()) {
+                directories.add(file);
+            }
+        }
+    }
+
+    @Override
+    public boolean mayContainClass(@NotNull FqName fqName) {
+        if (incomplete || fqName.isRoot()) return true;
+
+        // Like CoreJavaFileManager, look for the file of the outermost class under every possible package
+        StringBuilder packagePath = new StringBuilder();
+        for (String segment : fqName.getFqName().split("\\.")) {
+            String classPath = packagePath.length() == 0 ? segment : packagePath + "/" + segment;
+            for (JarIndex jar : jars) {
+                if (jar.containsClass(classPath)) return true;
+            }
+            for (File directory : directories) {
+                if (new File(directory, classPath + ".class").isFile() || new File(directory, classPath + ".java").isFile()) return true;
+            }
+            if (packagePath.length() > 0) {
+                packagePath.append('/');
+            }
+            packagePath.append(segment);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean mayContainPackage(@NotNull FqName fqName) {
+        if (incomplete || fqName.isRoot()) return true;
+
+        String path = fqName.getFqName().replace('.', '/');
+        for (JarIndex jar : jars) {
+            if (jar.containsPackage(path)) return true;
+        }
+        for (File directory : directories) {
+            if (new File(directory, path).isDirectory()) return true;
+        }
+        return false;
+    }
+}
@@ -29,6 +29,7 @@ import org.jetbrains.jet.cli.common.messages.MessageCollector;
 import org.jetbrains.jet.cli.common.messages.MessageRenderer;
 import org.jetbrains.jet.cli.jvm.JVMConfigurationKeys;
 import org.jetbrains.jet.codegen.ClassFileFactory;
+import org.jetbrains.jet.codegen.ClassFileSink;
 import org.jetbrains.jet.codegen.GeneratedClassLoader;
 import org.jetbrains.jet.codegen.state.GenerationState;
 import org.jetbrains.jet.config.CommonConfigurationKeys;
@@ -47,6 +48,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.jar.*;
 
@@ -163,7 +165,20 @@ public class CompileEnvironmentUtil {
 
     // TODO: includeRuntime should be not a flag but a path to runtime
     public static void writeToJar(ClassFileFactory factory, OutputStream fos, @Nullable FqName mainClass, boolean includeRuntime) {
-        try {
+        JarSink sink = new JarSink(fos, mainClass);
+        for (String file : factory.files()) {
+            sink.write(file, factory.getSourceFiles(file), factory.asBytes(file));
+        }
+        sink.finish(includeRuntime);
+    }
+
+    /**
+     * Writes class files to a jar as they are generated, {@link #finish(boolean)} should be called after the generation is done
+     */
+    public static class JarSink implements ClassFileSink {
+        private final JarOutputStream stream;
+
+        public JarSink(@NotNull OutputStream fos, @Nullable FqName mainClass) {
             Manifest manifest = new Manifest();
             Attributes mainAttributes = manifest.getMainAttributes();
             mainAttributes.putValue("Manifest-Version", "1.0");
@@ -171,18 +186,35 @@ public class CompileEnvironmentUtil {
             if (mainClass != null) {
                 mainAttributes.putValue("Main-Class", mainClass.getFqName());
             }
-            JarOutputStream stream = new JarOutputStream(fos, manifest);
-            for (String file : factory.files()) {
-                stream.putNextEntry(new JarEntry(file));
-                stream.write(factory.asBytes(file));
+            try {
+                stream = new JarOutputStream(fos, manifest);
             }
-            if (includeRuntime) {
-                writeRuntimeToJar(stream);
+            catch (IOException e) {
+                throw new CompileEnvironmentException("Failed to generate jar file", e);
             }
-            stream.finish();
         }
-        catch (IOException e) {
-            throw new CompileEnvironmentException("Failed to generate jar file", e);
+
+        @Override
+        public void write(@NotNull String relativePath, @NotNull Collection<File> sourceFiles, @NotNull byte[] bytes) {
+            try {
+                stream.putNextEntry(new JarEntry(relativePath));
+                stream.write(bytes);
+            }
+            catch (IOException e) {
+                throw new CompileEnvironmentException("Failed to generate jar file", e);
+            }
+        }
+
+        public void finish(boolean includeRuntime) {
+            try {
+                if (includeRuntime) {
+                    writeRuntimeToJar(stream);
+                }
+                stream.finish();
+            }
+            catch (IOException e) {
+                throw new CompileEnvironmentException("Failed to generate jar file", e);
+            }
         }
     }
 
@@ -238,18 +270,27 @@ public class CompileEnvironmentUtil {
     }
 
     public static void writeToOutputDirectory(ClassFileFactory factory, @NotNull File outputDir) {
-        List<String> files = factory.files();
-        for (String file : files) {
-            File target = new File(outputDir, file);
-            try {
-                FileUtil.writeToFile(target, factory.asBytes(file));
-            }
-            catch (IOException e) {
-                throw new CompileEnvironmentException(e);
-            }
+        ClassFileSink sink = createOutputDirectorySink(outputDir);
+        for (String file : factory.files()) {
+            sink.write(file, factory.getSourceFiles(file), factory.asBytes(file));
         }
     }
 
+    @NotNull
+    public static ClassFileSink createOutputDirectorySink(@NotNull final File outputDir) {
+        return new ClassFileSink() {
+            @Override
+            public void write(@NotNull String relativePath, @NotNull Collection<File> sourceFiles, @NotNull byte[] bytes) {
+                try {
+                    FileUtil.writeToFile(new File(outputDir, relativePath), bytes);
+                }
+                catch (IOException e) {
+                    throw new CompileEnvironmentException(e);
+                }
+            }
+        };
+    }
+
     // Used for debug output only
     private static String loadModuleScriptText(String moduleScriptFile) {
         String moduleScriptText;
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk state of the incremental compilation of one module: for every source file, the hash of its contents,
+ * the hash of its declarations' signatures, the namespaces it refers to and the class files generated from it.
+ * Copies of the class files are kept in the cache directory, so that they can be restored in the output directory.
+ */
+public class IncrementalCache {
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE_NAME = "index.bin";
+    private static final String CLASSES_DIRECTORY_NAME = "classes";
+
+    public static class FileEntry {
+        @NotNull public final String contentHash;
+        @NotNull public final String namespace;
+        @NotNull public final String signatureHash;
+        @NotNull public final Set<String> referencedNamespaces;
+        @NotNull public final List<String> outputs;
+
+        public FileEntry(
+                @NotNull String contentHash,
+                @NotNull String namespace,
+                @NotNull String signatureHash,
+                @NotNull Set<String> referencedNamespaces,
+                @NotNull List<String> outputs
+        ) {
+            this.contentHash = contentHash;
+            this.namespace = namespace;
+            this.signatureHash = signatureHash;
+            this.referencedNamespaces = referencedNamespaces;
+            this.outputs = outputs;
+        }
+    }
+
+    @NotNull
+    private final File cacheDir;
+    @NotNull
+    private final String environmentHash;
+    // Keys are system independent absolute paths of the source files
+    private final Map<String, FileEntry> entries = Maps.newHashMap();
+
+    private IncrementalCache(@NotNull File cacheDir, @NotNull String environmentHash) {
+        this.cacheDir = cacheDir;
+        this.environmentHash = environmentHash;
+    }
+
+    /**
+     * @param environmentHash describes everything except for the sources which affects the compilation (classpath, options).
+     *                        When it differs from the one the cache was saved with, the cache is discarded
+     */
+    @NotNull
+    public static IncrementalCache load(@NotNull File cacheDir, @NotNull String environmentHash) {
+        IncrementalCache cache = new IncrementalCache(cacheDir, environmentHash);
+        File indexFile = new File(cacheDir, INDEX_FILE_NAME);
+        if (!indexFile.exists()) {
+            return cache;
+        }
+
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                if (input.readInt() != VERSION || !environmentHash.equals(input.readUTF())) {
+                    return cache;
+                }
+                int size = input.readInt();
+                for (int i = 0; i < size; i++) {
+                    String path = input.readUTF();
+                    String contentHash = input.readUTF();
+                    String namespace = input.readUTF();
+                    String signatureHash = input.readUTF();
+                    Set<String> referencedNamespaces = Sets.newHashSet(readStrings(input));
+                    List<String> outputs = readStrings(input);
+                    cache.entries.put(path, new FileEntry(contentHash, namespace, signatureHash, referencedNamespaces, outputs));
+                }
+            }
+            finally {
+                input.close();
+            }
+        }
+        catch (IOException e) {
+            // A broken cache only means a full rebuild
+            cache.entries.clear();
+        }
+        return cache;
+    }
+
+    public void save() {
+        File indexFile = new File(cacheDir, INDEX_FILE_NAME);
+        try {
+            FileUtil.createParentDirs(indexFile);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+            try {
+                output.writeInt(VERSION);
+                output.writeUTF(environmentHash);
+                output.writeInt(entries.size());
+                for (Map.Entry<String, FileEntry> entry : entries.entrySet()) {
+                    FileEntry fileEntry = entry.getValue();
+                    output.writeUTF(entry.getKey());
+                    output.writeUTF(fileEntry.contentHash);
+                    output.writeUTF(fileEntry.namespace);
+                    output.writeUTF(fileEntry.signatureHash);
+                    writeStrings(output, fileEntry.referencedNamespaces);
+                    writeStrings(output, fileEntry.outputs);
+                }
+            }
+            finally {
+                output.close();
+            }
+        }
+        catch (IOException e) {
+            throw new CompileEnvironmentException("Failed to save incremental cache to " + cacheDir, e);
+        }
+    }
+
+    /**
+     * Removes the index, so that the next build is a full one
+     */
+    public void invalidate() {
+        entries.clear();
+        FileUtil.delete(new File(cacheDir, INDEX_FILE_NAME));
+    }
+
+    @Nullable
+    public FileEntry get(@NotNull String path) {
+        return entries.get(path);
+    }
+
+    @NotNull
+    public Set<String> getPaths() {
+        return entries.keySet();
+    }
+
+    public void put(@NotNull String path, @NotNull FileEntry entry) {
+        entries.put(path, entry);
+    }
+
+    public void remove(@NotNull String path) {
+        FileEntry entry = entries.remove(path);
+        if (entry != null) {
+            for (String output : entry.outputs) {
+                FileUtil.delete(getClassFile(output));
+            }
+        }
+    }
+
+    @NotNull
+    public File getClassFile(@NotNull String relativePath) {
+        return new File(new File(cacheDir, CLASSES_DIRECTORY_NAME), relativePath);
+    }
+
+    public void saveClassFile(@NotNull String relativePath, @NotNull byte[] bytes) {
+        try {
+            FileUtil.writeToFile(getClassFile(relativePath), bytes);
+        }
+        catch (IOException e) {
+            throw new CompileEnvironmentException("Failed to save incremental cache to " + cacheDir, e);
+        }
+    }
+
+    @NotNull
+    public static String hash(@NotNull byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(bytes);
+            StringBuilder result = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return result.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NotNull
+    private static List<String> readStrings(@NotNull DataInput input) throws IOException {
+        int size = input.readInt();
+        List<String> result = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+            result.add(input.readUTF());
+        }
+        return result;
+    }
+
+    private static void writeStrings(@NotNull DataOutput output, @NotNull Collection<String> strings) throws IOException {
+        output.writeInt(strings.size());
+        for (String string : strings) {
+            output.writeUTF(string);
+        }
+    }
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.CLIConfigurationKeys;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.cli.common.messages.OutputMessageUtil;
+import org.jetbrains.jet.cli.jvm.JVMConfigurationKeys;
+import org.jetbrains.jet.codegen.ClassFileSink;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.config.CommonConfigurationKeys;
+import org.jetbrains.jet.config.CompilerConfiguration;
+import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.psi.*;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.DescriptorUtils;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeProjection;
+import org.jetbrains.jet.renderer.DescriptorRenderer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Compiles only the source files changed since the previous compilation (according to {@link IncrementalCache})
+ * and the files which depend on the changed signatures. Everything else is copied to the output directory from the cache.
+ *
+ * Namespaces are recompiled as a whole, because all their files contribute to the namespace class.
+ * Classes of the namespaces which are not recompiled are put to the classpath from the output directory.
+ * Dependencies are tracked on the namespace level: a file depends on the namespaces of the declarations and types it refers to.
+ */
+public class IncrementalCompiler {
+    // After this many rounds everything is recompiled, which always terminates
+    private static final int MAX_ROUNDS = 5;
+
+    private static final Set<String> SOURCE_EXTENSIONS = Sets.newHashSet("kt", "jet");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @NotNull private final CompilerConfiguration configuration;
+    @NotNull private final File outputDir;
+    @NotNull private final IncrementalCache cache;
+    @Nullable private final MessageCollector messageCollector;
+
+    private final Map<String, String> contentHashes = Maps.newLinkedHashMap();
+    private final ClassFileSink outputDirectorySink;
+
+    private IncrementalCompiler(@NotNull CompilerConfiguration configuration, @NotNull File outputDir, @NotNull File cacheDir) {
+        this.configuration = configuration;
+        this.outputDir = outputDir;
+        this.cache = IncrementalCache.load(cacheDir, environmentHash(configuration));
+        this.messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY);
+        this.outputDirectorySink = CompileEnvironmentUtil.createOutputDirectorySink(outputDir);
+    }
+
+    /**
+     * @return false if there were compilation errors
+     */
+    public static boolean compile(@NotNull CompilerConfiguration configuration, @NotNull File outputDir, @NotNull File cacheDir) {
+        return new IncrementalCompiler(configuration, outputDir, cacheDir).compile();
+    }
+
+    private boolean compile() {
+        // Classes of the files which are not recompiled are taken from the output directory
+        outputDir.mkdirs();
+
+        for (String root : configuration.getList(CommonConfigurationKeys.SOURCE_ROOTS_KEY)) {
+            collectSources(new File(root));
+        }
+
+        Set<String> changedNamespaces = Sets.newHashSet();
+        for (String path : Lists.newArrayList(cache.getPaths())) {
+            if (!contentHashes.containsKey(path)) {
+                IncrementalCache.FileEntry removed = cache.get(path);
+                assert removed != null;
+                deleteOutputs(removed);
+                changedNamespaces.add(removed.namespace);
+                cache.remove(path);
+            }
+        }
+
+        Set<String> dirty = Sets.newLinkedHashSet();
+        for (Map.Entry<String, String> entry : contentHashes.entrySet()) {
+            IncrementalCache.FileEntry cached = cache.get(entry.getKey());
+            if (cached == null || !cached.contentHash.equals(entry.getValue()) ||
+                changedNamespaces.contains(cached.namespace) || !restoreOutputs(cached)) {
+                dirty.add(entry.getKey());
+            }
+        }
+        dirty.addAll(getDependents(changedNamespaces, Collections.<String>emptySet()));
+
+        Set<String> recompiled = Sets.newHashSet();
+        for (int round = 1; !dirty.isEmpty(); round++) {
+            if (round > MAX_ROUNDS) {
+                dirty.addAll(contentHashes.keySet());
+            }
+            Set<String> filesToCompile = withWholeNamespaces(dirty);
+
+            report(CompilerMessageSeverity.LOGGING,
+                   "Incremental compilation round " + round + ": " + filesToCompile.size() + " of " + contentHashes.size() + " files");
+
+            for (String path : filesToCompile) {
+                IncrementalCache.FileEntry cached = cache.get(path);
+                if (cached != null) {
+                    deleteOutputs(cached);
+                }
+            }
+
+            Map<String, IncrementalCache.FileEntry> compiled = compileFiles(filesToCompile);
+            if (compiled == null) {
+                cache.invalidate();
+                return false;
+            }
+            recompiled.addAll(compiled.keySet());
+
+            changedNamespaces = Sets.newHashSet();
+            for (Map.Entry<String, IncrementalCache.FileEntry> entry : compiled.entrySet()) {
+                IncrementalCache.FileEntry oldEntry = cache.get(entry.getKey());
+                IncrementalCache.FileEntry newEntry = entry.getValue();
+                if (oldEntry == null || !oldEntry.namespace.equals(newEntry.namespace) || !oldEntry.signatureHash.equals(newEntry.signatureHash)) {
+                    changedNamespaces.add(newEntry.namespace);
+                    if (oldEntry != null) {
+                        changedNamespaces.add(oldEntry.namespace);
+                    }
+                }
+                cache.put(entry.getKey(), newEntry);
+            }
+
+            dirty = Sets.newLinkedHashSet();
+            // A new file may turn out to be in a namespace some other files of which were not compiled in this round
+            Set<String> compiledNamespaces = namespacesOf(compiled.keySet());
+            for (String path : contentHashes.keySet()) {
+                if (compiled.containsKey(path)) continue;
+                IncrementalCache.FileEntry entry = cache.get(path);
+                if (entry != null && compiledNamespaces.contains(entry.namespace)) {
+                    dirty.add(path);
+                }
+            }
+            dirty.addAll(getDependents(changedNamespaces, compiled.keySet()));
+        }
+
+        for (String path : contentHashes.keySet()) {
+            if (!recompiled.contains(path)) {
+                reportRestoredOutputs(path);
+            }
+        }
+
+        cache.save();
+        return true;
+    }
+
+    @Nullable
+    private Map<String, IncrementalCache.FileEntry> compileFiles(@NotNull Set<String> paths) {
+        CompilerConfiguration roundConfiguration = configuration.copy();
+        roundConfiguration.put(CommonConfigurationKeys.SOURCE_ROOTS_KEY, Lists.newArrayList(paths));
+        List<File> classpath = Lists.newArrayList(configuration.getList(JVMConfigurationKeys.CLASSPATH_KEY));
+        classpath.add(outputDir);
+        roundConfiguration.put(JVMConfigurationKeys.CLASSPATH_KEY, classpath);
+
+        final Map<String, List<String>> outputs = Maps.newHashMap();
+        ClassFileSink sink = new ClassFileSink() {
+            @Override
+            public void write(@NotNull String relativePath, @NotNull Collection<File> sourceFiles, @NotNull byte[] bytes) {
+                outputDirectorySink.write(relativePath, sourceFiles, bytes);
+                cache.saveClassFile(relativePath, bytes);
+                for (File sourceFile : sourceFiles) {
+                    String path = toPath(sourceFile);
+                    List<String> fileOutputs = outputs.get(path);
+                    if (fileOutputs == null) {
+                        fileOutputs = Lists.newArrayList();
+                        outputs.put(path, fileOutputs);
+                    }
+                    fileOutputs.add(relativePath);
+                }
+            }
+        };
+
+        Disposable disposable = CompileEnvironmentUtil.createMockDisposable();
+        try {
+            JetCoreEnvironment environment = new JetCoreEnvironment(disposable, roundConfiguration);
+            GenerationState generationState = KotlinToJVMBytecodeCompiler.analyzeAndGenerate(environment, sink);
+            if (generationState == null) {
+                return null;
+            }
+
+            try {
+                generationState.getFactory().done();
+
+                BindingContext bindingContext = generationState.getBindingContext();
+                Map<String, IncrementalCache.FileEntry> result = Maps.newLinkedHashMap();
+                for (JetFile file : environment.getSourceFiles()) {
+                    VirtualFile virtualFile = file.getVirtualFile();
+                    assert virtualFile != null : "Source file should be physical: " + file;
+                    String path = toPath(new File(virtualFile.getPath()));
+
+                    String contentHash = contentHashes.get(path);
+                    assert contentHash != null : "Unexpected source file: " + path;
+                    List<String> fileOutputs = outputs.get(path);
+                    result.put(path, new IncrementalCache.FileEntry(
+                            contentHash,
+                            JetPsiUtil.getFQName(file).getFqName(),
+                            signatureHash(file, bindingContext),
+                            referencedNamespaces(file, bindingContext),
+                            fileOutputs != null ? fileOutputs : Collections.<String>emptyList()));
+                }
+                return result;
+            }
+            finally {
+                generationState.destroy();
+            }
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+
+    private void collectSources(@NotNull File file) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    collectSources(child);
+                }
+            }
+        }
+        else if (SOURCE_EXTENSIONS.contains(FileUtil.getExtension(file.getName()))) {
+            try {
+                contentHashes.put(toPath(file), IncrementalCache.hash(FileUtil.loadFileBytes(file)));
+            }
+            catch (IOException e) {
+                throw new CompileEnvironmentException("Failed to read " + file, e);
+            }
+        }
+    }
+
+    @NotNull
+    private Set<String> withWholeNamespaces(@NotNull Set<String> paths) {
+        Set<String> namespaces = namespacesOf(paths);
+        Set<String> result = Sets.newLinkedHashSet(paths);
+        for (String path : contentHashes.keySet()) {
+            IncrementalCache.FileEntry entry = cache.get(path);
+            if (entry != null && namespaces.contains(entry.namespace)) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    private Set<String> namespacesOf(@NotNull Collection<String> paths) {
+        Set<String> result = Sets.newHashSet();
+        for (String path : paths) {
+            IncrementalCache.FileEntry entry = cache.get(path);
+            if (entry != null) {
+                result.add(entry.namespace);
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    private Set<String> getDependents(@NotNull Set<String> namespaces, @NotNull Set<String> exclude) {
+        Set<String> result = Sets.newLinkedHashSet();
+        if (namespaces.isEmpty()) return result;
+
+        for (String path : contentHashes.keySet()) {
+            if (exclude.contains(path)) continue;
+            IncrementalCache.FileEntry entry = cache.get(path);
+            if (entry != null && !Collections.disjoint(entry.referencedNamespaces, namespaces)) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    private boolean restoreOutputs(@NotNull IncrementalCache.FileEntry entry) {
+        for (String output : entry.outputs) {
+            File cached = cache.getClassFile(output);
+            if (!cached.exists()) {
+                return false;
+            }
+            try {
+                FileUtil.copy(cached, new File(outputDir, output));
+            }
+            catch (IOException e) {
+                throw new CompileEnvironmentException("Failed to copy " + cached + " to " + outputDir, e);
+            }
+        }
+        return true;
+    }
+
+    private void deleteOutputs(@NotNull IncrementalCache.FileEntry entry) {
+        for (String output : entry.outputs) {
+            FileUtil.delete(new File(outputDir, output));
+        }
+    }
+
+    private void reportRestoredOutputs(@NotNull String path) {
+        if (messageCollector == null) return;
+        IncrementalCache.FileEntry entry = cache.get(path);
+        assert entry != null : "No cache entry for " + path;
+        for (String output : entry.outputs) {
+            messageCollector.report(
+                    CompilerMessageSeverity.OUTPUT,
+                    OutputMessageUtil.formatOutputMessage(Collections.singletonList(new File(path)), new File(output)),
+                    CompilerMessageLocation.NO_LOCATION);
+        }
+    }
+
+    private void report(@NotNull CompilerMessageSeverity severity, @NotNull String message) {
+        if (messageCollector != null) {
+            messageCollector.report(severity, message, CompilerMessageLocation.NO_LOCATION);
+        }
+    }
+
+    @NotNull
+    private static String signatureHash(@NotNull JetFile file, @NotNull BindingContext bindingContext) {
+        List<String> signatures = Lists.newArrayList();
+        for (JetDeclaration declaration : file.getDeclarations()) {
+            DeclarationDescriptor descriptor = bindingContext.get(BindingContext.DECLARATION_TO_DESCRIPTOR, declaration);
+            if (descriptor != null) {
+                addSignatures(descriptor, signatures);
+            }
+            // Bodies of inline functions are copied to the call sites, so their dependents are recompiled when they change
+            if (descriptor instanceof SimpleFunctionDescriptor && ((SimpleFunctionDescriptor) descriptor).isInline()) {
+                signatures.add(declaration.getText());
+            }
+        }
+        Collections.sort(signatures);
+        return IncrementalCache.hash(StringUtil.join(signatures, "\n").getBytes(UTF_8));
+    }
+
+    private static void addSignatures(@NotNull DeclarationDescriptor descriptor, @NotNull List<String> signatures) {
+        // Private top-level declarations are only visible in their namespace, which is always recompiled as a whole
+        if (descriptor instanceof DeclarationDescriptorWithVisibility &&
+            ((DeclarationDescriptorWithVisibility) descriptor).getVisibility() == Visibilities.PRIVATE) {
+            return;
+        }
+
+        signatures.add(DescriptorRenderer.TEXT.render(descriptor));
+
+        if (descriptor instanceof ClassDescriptor) {
+            ClassDescriptor classDescriptor = (ClassDescriptor) descriptor;
+            for (DeclarationDescriptor member : classDescriptor.getDefaultType().getMemberScope().getAllDescriptors()) {
+                addSignatures(member, signatures);
+            }
+            ClassDescriptor classObject = classDescriptor.getClassObjectDescriptor();
+            if (classObject != null) {
+                addSignatures(classObject, signatures);
+            }
+        }
+    }
+
+    @NotNull
+    private static Set<String> referencedNamespaces(@NotNull JetFile file, @NotNull final BindingContext bindingContext) {
+        final Set<String> result = Sets.newHashSet();
+        file.accept(new JetTreeVisitorVoid() {
+            @Override
+            public void visitExpression(JetExpression expression) {
+                if (expression instanceof JetReferenceExpression) {
+                    DeclarationDescriptor target = bindingContext.get(BindingContext.REFERENCE_TARGET, (JetReferenceExpression) expression);
+                    if (target != null) {
+                        addNamespace(target, result);
+                    }
+                }
+
+                // Calls made by conventions (iterator(), component1(), etc) are only visible through the types of their receivers
+                JetType type = bindingContext.get(BindingContext.EXPRESSION_TYPE, expression);
+                if (type != null) {
+                    addNamespaces(type, result);
+                }
+
+                super.visitExpression(expression);
+            }
+        });
+        return result;
+    }
+
+    private static void addNamespaces(@NotNull JetType type, @NotNull Set<String> result) {
+        ClassifierDescriptor classifier = type.getConstructor().getDeclarationDescriptor();
+        if (classifier != null) {
+            addNamespace(classifier, result);
+        }
+        for (TypeProjection argument : type.getArguments()) {
+            addNamespaces(argument.getType(), result);
+        }
+    }
+
+    private static void addNamespace(@NotNull DeclarationDescriptor descriptor, @NotNull Set<String> result) {
+        NamespaceDescriptor namespace = DescriptorUtils.getParentOfType(descriptor, NamespaceDescriptor.class, false);
+        if (namespace != null) {
+            result.add(namespace.getFqName().getFqName());
+        }
+    }
+
+    @NotNull
+    private static String toPath(@NotNull File file) {
+        return FileUtil.toCanonicalPath(file.getAbsolutePath());
+    }
+
+    @NotNull
+    private static String environmentHash(@NotNull CompilerConfiguration configuration) {
+        StringBuilder builder = new StringBuilder();
+        for (File file : configuration.getList(JVMConfigurationKeys.CLASSPATH_KEY)) {
+            builder.append(file.getAbsolutePath()).append(':').append(file.length()).append(':').append(file.lastModified()).append('\n');
+        }
+        for (File file : configuration.getList(JVMConfigurationKeys.ANNOTATIONS_PATH_KEY)) {
+            builder.append(file.getAbsolutePath()).append(':').append(file.lastModified()).append('\n');
+        }
+        builder.append(configuration.get(JVMConfigurationKeys.BUILTIN_TO_JAVA_TYPES_MAPPING_KEY)).append('\n');
+        builder.append(configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_ASSERTIONS, false)).append('\n');
+        builder.append(configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_PARAMETER_ASSERTIONS, false)).append('\n');
+        builder.append(configuration.get(JVMConfigurationKeys.STUBS, false)).append('\n');
+        return IncrementalCache.hash(builder.toString().getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Sorted tables of the packages and the class files of a jar, stored next to each other in a file which is memory mapped
+ * on load. Names are internal ("java/util/Map$Entry"), class names are without the ".class" extension.
+ * <p/>
+ * The index file is keyed by the path of the jar, its size and modification time: when either changes, the index is rebuilt.
+ */
+public class JarIndex {
+    private static final int VERSION = 1;
+    private static final String CHARSET = "UTF-8";
+
+    private static final Comparator<String> UNSIGNED_BYTES_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String s1, String s2) {
+            byte[] bytes1 = toBytes(s1);
+            byte[] bytes2 = toBytes(s2);
+            for (int i = 0; i < bytes1.length && i < bytes2.length; i++) {
+                int difference = (bytes1[i] & 0xFF) - (bytes2[i] & 0xFF);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return bytes1.length - bytes2.length;
+        }
+    };
+
+    @NotNull
+    private final ByteBuffer buffer;
+    private final int packagesTableOffset;
+    private final int packageCount;
+    private final int classesTableOffset;
+    private final int classCount;
+
+    private JarIndex(@NotNull ByteBuffer buffer) {
+        this.buffer = buffer;
+        // VERSION, jar size, jar modification time
+        int position = 4 + 8 + 8;
+        packageCount = buffer.getInt(position);
+        packagesTableOffset = position + 4;
+        position = packagesTableOffset + packageCount * 4;
+        classCount = buffer.getInt(position);
+        classesTableOffset = position + 4;
+    }
+
+    /**
+     * @return null if the jar can't be read
+     */
+    @Nullable
+    public static JarIndex load(@NotNull File jar, @NotNull File indexDir) {
+        File indexFile = new File(indexDir, IncrementalCache.hash(jar.getAbsolutePath().getBytes()) + ".idx");
+        try {
+            if (!isUpToDate(indexFile, jar)) {
+                write(jar, indexFile);
+            }
+            return new JarIndex(map(indexFile));
+        }
+        catch (IOException e) {
+            FileUtil.delete(indexFile);
+            return null;
+        }
+    }
+
+    public boolean containsPackage(@NotNull String internalName) {
+        return find(packagesTableOffset, packageCount, internalName);
+    }
+
+    public boolean containsClass(@NotNull String internalName) {
+        return find(classesTableOffset, classCount, internalName);
+    }
+
+    private boolean find(int tableOffset, int count, @NotNull String name) {
+        byte[] key = toBytes(name);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = compareEntry(buffer.getInt(tableOffset + middle * 4), key);
+            if (compare < 0) {
+                low = middle + 1;
+            }
+            else if (compare > 0) {
+                high = middle - 1;
+            }
+            else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Entries are stored as a short length followed by the UTF-8 bytes, and are compared as unsigned bytes
+    private int compareEntry(int offset, @NotNull byte[] key) {
+        int length = buffer.getShort(offset) & 0xFFFF;
+        int start = offset + 2;
+        for (int i = 0; i < length && i < key.length; i++) {
+            int difference = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    private static boolean isUpToDate(@NotNull File indexFile, @NotNull File jar) throws IOException {
+        if (!indexFile.exists()) {
+            return false;
+        }
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            return input.readInt() == VERSION && input.readLong() == jar.length() && input.readLong() == jar.lastModified();
+        }
+        catch (EOFException e) {
+            return false;
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    private static void write(@NotNull File jar, @NotNull File indexFile) throws IOException {
+        SortedSet<String> packages = new TreeSet<String>(UNSIGNED_BYTES_ORDER);
+        SortedSet<String> classes = new TreeSet<String>(UNSIGNED_BYTES_ORDER);
+        ZipFile zipFile = new ZipFile(jar);
+        try {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                int lastSlash = name.lastIndexOf('/');
+                for (int slash = lastSlash; slash > 0; slash = name.lastIndexOf('/', slash - 1)) {
+                    if (!packages.add(name.substring(0, slash))) break;
+                }
+                if (name.endsWith(".class")) {
+                    classes.add(name.substring(0, name.length() - ".class".length()));
+                }
+            }
+        }
+        finally {
+            zipFile.close();
+        }
+        packages.add("");
+
+        // Write to a temporary file first, so that an interrupted build doesn't leave a broken index
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        FileUtil.createParentDirs(tempFile);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            output.writeInt(VERSION);
+            output.writeLong(jar.length());
+            output.writeLong(jar.lastModified());
+
+            int headerSize = 4 + 8 + 8 + 4 + packages.size() * 4 + 4 + classes.size() * 4;
+            int offset = headerSize;
+            output.writeInt(packages.size());
+            for (String name : packages) {
+                output.writeInt(offset);
+                offset += 2 + toBytes(name).length;
+            }
+            output.writeInt(classes.size());
+            for (String name : classes) {
+                output.writeInt(offset);
+                offset += 2 + toBytes(name).length;
+            }
+
+            for (String name : packages) {
+                writeEntry(output, name);
+            }
+            for (String name : classes) {
+                writeEntry(output, name);
+            }
+        }
+        finally {
+            output.close();
+        }
+        FileUtil.rename(tempFile, indexFile);
+    }
+
+    private static void writeEntry(@NotNull DataOutputStream output, @NotNull String name) throws IOException {
+        byte[] bytes = toBytes(name);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    @NotNull
+    private static MappedByteBuffer map(@NotNull File indexFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+        try {
+            // The mapping stays valid after the channel is closed
+            return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    @NotNull
+    private static byte[] toBytes(@NotNull String name) {
+        try {
+            return name.getBytes(CHARSET);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
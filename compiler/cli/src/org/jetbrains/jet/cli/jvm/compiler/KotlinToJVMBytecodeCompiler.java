@@ -21,6 +21,7 @@ import com.google.common.base.Predicates;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.psi.PsiFile;
 import jet.Function0;
 import jet.modules.AllModules;
@@ -54,7 +55,6 @@ import org.jetbrains.jet.utils.KotlinPaths;
 import org.jetbrains.jet.utils.PathUtil;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
@@ -72,10 +72,48 @@ public class KotlinToJVMBytecodeCompiler {
 
     @Nullable
     public static ClassFileFactory compileModule(CompilerConfiguration configuration, Module moduleBuilder, File directory) {
+        return compileModule(configuration, moduleBuilder, directory, null);
+    }
+
+    /**
+     * @param sink if not null, all the generated classes are written to it before this method returns
+     */
+    @Nullable
+    public static ClassFileFactory compileModule(
+            CompilerConfiguration configuration,
+            Module moduleBuilder,
+            File directory,
+            @Nullable ClassFileSink sink
+    ) {
         if (moduleBuilder.getSourceFiles().isEmpty()) {
             throw new CompileEnvironmentException("No source files where defined in module " + moduleBuilder.getModuleName());
         }
 
+        CompilerConfiguration compilerConfiguration = createModuleConfiguration(configuration, moduleBuilder, directory);
+
+        Disposable parentDisposable = CompileEnvironmentUtil.createMockDisposable();
+        JetCoreEnvironment moduleEnvironment = null;
+        try {
+            moduleEnvironment = new JetCoreEnvironment(parentDisposable, compilerConfiguration);
+
+
+            GenerationState generationState = analyzeAndGenerate(moduleEnvironment, sink);
+            if (generationState == null) {
+                return null;
+            }
+            if (sink != null) {
+                generationState.getFactory().done();
+            }
+            return generationState.getFactory();
+        } finally {
+            if (moduleEnvironment != null) {
+                Disposer.dispose(parentDisposable);
+            }
+        }
+    }
+
+    @NotNull
+    private static CompilerConfiguration createModuleConfiguration(CompilerConfiguration configuration, Module moduleBuilder, File directory) {
         CompilerConfiguration compilerConfiguration = configuration.copy();
         for (String sourceFile : moduleBuilder.getSourceFiles()) {
             File source = new File(sourceFile);
@@ -98,22 +136,7 @@ public class KotlinToJVMBytecodeCompiler {
             compilerConfiguration.add(JVMConfigurationKeys.ANNOTATIONS_PATH_KEY, new File(annotationsRoot));
         }
 
-        Disposable parentDisposable = CompileEnvironmentUtil.createMockDisposable();
-        JetCoreEnvironment moduleEnvironment = null;
-        try {
-            moduleEnvironment = new JetCoreEnvironment(parentDisposable, compilerConfiguration);
-
-
-            GenerationState generationState = analyzeAndGenerate(moduleEnvironment);
-            if (generationState == null) {
-                return null;
-            }
-            return generationState.getFactory();
-        } finally {
-            if (moduleEnvironment != null) {
-                Disposer.dispose(parentDisposable);
-            }
-        }
+        return compilerConfiguration;
     }
 
     public static boolean compileModules(
@@ -124,36 +147,91 @@ public class KotlinToJVMBytecodeCompiler {
             @Nullable File outputDir,
             boolean jarRuntime) {
 
+        File incrementalCacheDir = configuration.get(JVMConfigurationKeys.INCREMENTAL_CACHE_DIR);
         for (Module moduleBuilder : modules) {
-            ClassFileFactory moduleFactory = compileModule(configuration, moduleBuilder, directory);
-            if (moduleFactory == null) {
-                return false;
+            if (outputDir != null && incrementalCacheDir != null) {
+                CompilerConfiguration moduleConfiguration = createModuleConfiguration(configuration, moduleBuilder, directory);
+                File moduleCacheDir = new File(incrementalCacheDir, moduleBuilder.getModuleName());
+                if (!IncrementalCompiler.compile(moduleConfiguration, outputDir, moduleCacheDir)) {
+                    return false;
+                }
             }
-            if (outputDir != null) {
-                CompileEnvironmentUtil.writeToOutputDirectory(moduleFactory, outputDir);
+            else if (outputDir != null) {
+                ClassFileSink sink = CompileEnvironmentUtil.createOutputDirectorySink(outputDir);
+                if (compileModule(configuration, moduleBuilder, directory, sink) == null) {
+                    return false;
+                }
             }
             else {
                 File path = jarPath != null ? jarPath : new File(directory, moduleBuilder.getModuleName() + ".jar");
-                FileOutputStream outputStream = null;
-                try {
-                    outputStream = new FileOutputStream(path);
-                    CompileEnvironmentUtil.writeToJar(moduleFactory, outputStream, null, jarRuntime);
-                    outputStream.close();
-                }
-                catch (FileNotFoundException e) {
-                    throw new CompileEnvironmentException("Invalid jar path " + path, e);
-                }
-                catch (IOException e) {
-                    throw ExceptionUtils.rethrow(e);
-                }
-                finally {
-                    ExceptionUtils.closeQuietly(outputStream);
+                if (!compileModuleToJar(configuration, moduleBuilder, directory, path, jarRuntime)) {
+                    return false;
                 }
             }
         }
         return true;
     }
 
+    private static boolean compileModuleToJar(
+            final CompilerConfiguration configuration,
+            final Module moduleBuilder,
+            final File directory,
+            File jar,
+            boolean jarRuntime
+    ) {
+        return writeJar(jar, null, jarRuntime, new JarContentsGenerator() {
+            @Override
+            public boolean generate(@NotNull ClassFileSink sink) {
+                return compileModule(configuration, moduleBuilder, directory, sink) != null;
+            }
+        });
+    }
+
+    private interface JarContentsGenerator {
+        boolean generate(@NotNull ClassFileSink sink);
+    }
+
+    // Classes are written while they are generated, so they go to a temporary file next to the jar, which replaces the jar
+    // only if the compilation succeeds: a failed compilation leaves the previous jar as it was
+    private static boolean writeJar(
+            @NotNull File jar,
+            @Nullable FqName mainClass,
+            boolean includeRuntime,
+            @NotNull JarContentsGenerator generator
+    ) {
+        File tempFile;
+        try {
+            tempFile = File.createTempFile(jar.getName(), ".tmp", jar.getAbsoluteFile().getParentFile());
+        }
+        catch (IOException e) {
+            throw new CompileEnvironmentException("Invalid jar path " + jar, e);
+        }
+
+        FileOutputStream outputStream = null;
+        boolean success = false;
+        try {
+            outputStream = new FileOutputStream(tempFile);
+            CompileEnvironmentUtil.JarSink sink = new CompileEnvironmentUtil.JarSink(outputStream, mainClass);
+            if (!generator.generate(sink)) {
+                return false;
+            }
+            sink.finish(includeRuntime);
+            outputStream.close();
+            FileUtil.rename(tempFile, jar);
+            success = true;
+            return true;
+        }
+        catch (IOException e) {
+            throw ExceptionUtils.rethrow(e);
+        }
+        finally {
+            ExceptionUtils.closeQuietly(outputStream);
+            if (!success) {
+                FileUtil.delete(tempFile);
+            }
+        }
+    }
+
     @Nullable
     private static FqName findMainClass(@NotNull List<JetFile> files) {
         FqName mainClass = null;
@@ -171,7 +249,7 @@ public class KotlinToJVMBytecodeCompiler {
     }
 
     public static boolean compileBunchOfSources(
-            JetCoreEnvironment environment,
+            final JetCoreEnvironment environment,
             @Nullable File jar,
             @Nullable File outputDir,
             boolean includeRuntime
@@ -179,36 +257,35 @@ public class KotlinToJVMBytecodeCompiler {
 
         FqName mainClass = findMainClass(environment.getSourceFiles());
 
-        GenerationState generationState = analyzeAndGenerate(environment);
+        if (jar != null) {
+            return writeJar(jar, mainClass, includeRuntime, new JarContentsGenerator() {
+                @Override
+                public boolean generate(@NotNull ClassFileSink sink) {
+                    return generateToSink(environment, sink);
+                }
+            });
+        }
+        else if (outputDir != null) {
+            return generateToSink(environment, CompileEnvironmentUtil.createOutputDirectorySink(outputDir));
+        }
+        else {
+            GenerationState generationState = analyzeAndGenerate(environment);
+            if (generationState == null) {
+                return false;
+            }
+            generationState.destroy();
+            throw new CompileEnvironmentException("Output directory or jar file is not specified - no files will be saved to the disk");
+        }
+    }
+
+    private static boolean generateToSink(@NotNull JetCoreEnvironment environment, @NotNull ClassFileSink sink) {
+        GenerationState generationState = analyzeAndGenerate(environment, sink);
         if (generationState == null) {
             return false;
         }
 
         try {
-            ClassFileFactory factory = generationState.getFactory();
-            if (jar != null) {
-                FileOutputStream os = null;
-                try {
-                    os = new FileOutputStream(jar);
-                    CompileEnvironmentUtil.writeToJar(factory, new FileOutputStream(jar), mainClass, includeRuntime);
-                    os.close();
-                }
-                catch (FileNotFoundException e) {
-                    throw new CompileEnvironmentException("Invalid jar path " + jar, e);
-                }
-                catch (IOException e) {
-                    throw ExceptionUtils.rethrow(e);
-                }
-                finally {
-                    ExceptionUtils.closeQuietly(os);
-                }
-            }
-            else if (outputDir != null) {
-                CompileEnvironmentUtil.writeToOutputDirectory(factory, outputDir);
-            }
-            else {
-                throw new CompileEnvironmentException("Output directory or jar file is not specified - no files will be saved to the disk");
-            }
+            generationState.getFactory().done();
             return true;
         }
         finally {
@@ -247,7 +324,7 @@ public class KotlinToJVMBytecodeCompiler {
         GeneratedClassLoader classLoader = null;
         try {
             ClassFileFactory factory = generationState.getFactory();
-            classLoader = new GeneratedClassLoader(factory,
+            classLoader = new GeneratedClassLoader(factory, true,
                     new URLClassLoader(new URL[] {
                         // TODO: add all classpath
                         paths.getRuntimePath().toURI().toURL()
@@ -270,8 +347,13 @@ public class KotlinToJVMBytecodeCompiler {
 
     @Nullable
     public static GenerationState analyzeAndGenerate(JetCoreEnvironment environment) {
+        return analyzeAndGenerate(environment, null);
+    }
+
+    @Nullable
+    public static GenerationState analyzeAndGenerate(JetCoreEnvironment environment, @Nullable ClassFileSink sink) {
         return analyzeAndGenerate(environment, environment.getConfiguration().get(JVMConfigurationKeys.STUBS, false),
-                                  environment.getConfiguration().getList(JVMConfigurationKeys.SCRIPT_PARAMETERS));
+                                  environment.getConfiguration().getList(JVMConfigurationKeys.SCRIPT_PARAMETERS), sink);
     }
 
     @Nullable
@@ -288,6 +370,16 @@ public class KotlinToJVMBytecodeCompiler {
             JetCoreEnvironment environment,
             boolean stubs,
             List<AnalyzerScriptParameter> scriptParameters
+    ) {
+        return analyzeAndGenerate(environment, stubs, scriptParameters, null);
+    }
+
+    @Nullable
+    private static GenerationState analyzeAndGenerate(
+            JetCoreEnvironment environment,
+            boolean stubs,
+            List<AnalyzerScriptParameter> scriptParameters,
+            @Nullable ClassFileSink sink
     ) {
         AnalyzeExhaust exhaust = analyze(environment, scriptParameters, stubs);
 
@@ -297,7 +389,7 @@ public class KotlinToJVMBytecodeCompiler {
 
         exhaust.throwIfError();
 
-        return generate(environment, exhaust, stubs);
+        return generate(environment, exhaust, stubs, sink);
     }
 
     @Nullable
@@ -334,7 +426,8 @@ public class KotlinToJVMBytecodeCompiler {
     private static GenerationState generate(
             JetCoreEnvironment environment,
             AnalyzeExhaust exhaust,
-            boolean stubs) {
+            boolean stubs,
+            @Nullable ClassFileSink sink) {
         Project project = environment.getProject();
         final CompilerConfiguration configuration = environment.getConfiguration();
         Progress backendProgress = new Progress() {
@@ -356,8 +449,10 @@ public class KotlinToJVMBytecodeCompiler {
                 configuration.get(JVMConfigurationKeys.BUILTIN_TO_JAVA_TYPES_MAPPING_KEY, BuiltinToJavaTypesMapping.ENABLED),
                 configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_ASSERTIONS, false),
                 configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_PARAMETER_ASSERTIONS, false),
-                /*generateDeclaredClasses = */true
+                /*generateDeclaredClasses = */true,
+                configuration.get(JVMConfigurationKeys.PARALLEL_CLASS_WRITING, false)
         );
+        generationState.getFactory().setSink(sink);
         KotlinCodegenFacade.compileCorrectFiles(generationState, CompilationErrorHandler.THROW_EXCEPTION);
 
         CompilerPluginContext context = new CompilerPluginContext(project, exhaust.getBindingContext(), environment.getSourceFiles());
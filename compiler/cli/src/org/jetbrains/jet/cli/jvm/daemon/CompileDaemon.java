@@ -0,0 +1,369 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.daemon;
+
+import com.google.common.collect.Maps;
+import com.intellij.core.JavaCoreApplicationEnvironment;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.Consumer;
+import com.sampullara.cli.Args;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.cli.common.messages.MessageCollectorPlainTextToStream;
+import org.jetbrains.jet.cli.common.messages.MessageRenderer;
+import org.jetbrains.jet.cli.jvm.JVMConfigurationKeys;
+import org.jetbrains.jet.cli.jvm.K2JVMCompiler;
+import org.jetbrains.jet.cli.jvm.K2JVMCompilerArguments;
+import org.jetbrains.jet.cli.jvm.compiler.CompileEnvironmentUtil;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.config.CompilerConfiguration;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+
+/**
+ * Long-lived compiler process which serves compilation requests of {@link CompileDaemonClient}.
+ * <p/>
+ * The application environment (and, through it, the opened jars of the classpath) and the built-ins are kept between
+ * the compilations, so that only the first request pays for their initialization. When the heap is close to the limit
+ * after a compilation, the application environment is dropped and recreated on the next request. It is also recreated when
+ * a jar it has opened changes, since the jar file system never forgets the contents of the jars.
+ * <p/>
+ * Every request must carry a secret token, which the daemon writes to a file readable only by the user who started it
+ * (see {@link #getDefaultTokenFile(int)}). Anyone able to connect to the port could otherwise make the daemon read and
+ * write files on behalf of that user.
+ * <p/>
+ * Usage: java -cp kotlin-compiler.jar org.jetbrains.jet.cli.jvm.daemon.CompileDaemon [port [idle timeout in minutes]]
+ */
+public class CompileDaemon {
+    public static final int DEFAULT_PORT = 17031;
+    private static final int DEFAULT_IDLE_TIMEOUT_MINUTES = 120;
+
+    static final int PROTOCOL_VERSION = 2;
+    static final byte MESSAGE_RECORD = 0;
+    static final byte EXIT_RECORD = 1;
+
+    private static final int MAX_TOKEN_LENGTH = 1024;
+
+    // Fraction of the maximum heap size, used memory above which makes the daemon drop the application environment
+    private static final double EVICTION_THRESHOLD = 0.7;
+
+    private final int port;
+    private final int idleTimeoutMillis;
+    @NotNull
+    private final File tokenFile;
+    // Messages of the daemon itself, as opposed to the ones of the compilations which are sent to the clients
+    @NotNull
+    private final MessageCollector log;
+    @Nullable
+    private byte[] token;
+
+    @Nullable
+    private Disposable applicationDisposable;
+    @Nullable
+    private JavaCoreApplicationEnvironment applicationEnvironment;
+    // Modification time and length of the jars on the classpaths compiled against with the current application environment
+    private final Map<File, Pair<Long, Long>> openedJars = Maps.newHashMap();
+
+    public CompileDaemon(int port, int idleTimeoutMillis) {
+        this(port, idleTimeoutMillis, getDefaultTokenFile(port));
+    }
+
+    public CompileDaemon(int port, int idleTimeoutMillis, @NotNull File tokenFile) {
+        this(port, idleTimeoutMillis, tokenFile, MessageCollectorPlainTextToStream.PLAIN_TEXT_TO_SYSTEM_ERR);
+    }
+
+    public CompileDaemon(int port, int idleTimeoutMillis, @NotNull File tokenFile, @NotNull MessageCollector log) {
+        this.port = port;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.tokenFile = tokenFile;
+        this.log = log;
+    }
+
+    @NotNull
+    public static File getDefaultTokenFile(int port) {
+        return new File(System.getProperty("user.home"), ".kotlin-daemon" + File.separator + port + ".token");
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int idleTimeoutMinutes = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_IDLE_TIMEOUT_MINUTES;
+        new CompileDaemon(port, idleTimeoutMinutes * 60 * 1000).run();
+    }
+
+    /**
+     * Serves requests one at a time until no request comes during the idle timeout
+     */
+    public void run() throws IOException {
+        // Only local clients are served: the daemon reads and writes files on their behalf
+        ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getByName(null));
+        try {
+            writeTokenFile();
+            serverSocket.setSoTimeout(idleTimeoutMillis);
+            log("Kotlin compile daemon is listening on port " + serverSocket.getLocalPort());
+            while (true) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                }
+                catch (SocketTimeoutException e) {
+                    log("No requests for " + idleTimeoutMillis / 1000 + " seconds, shutting down");
+                    break;
+                }
+                try {
+                    serve(socket);
+                }
+                catch (IOException e) {
+                    // The client has gone, keep serving the others
+                    log.report(CompilerMessageSeverity.EXCEPTION, MessageRenderer.PLAIN.renderException(e),
+                               CompilerMessageLocation.NO_LOCATION);
+                }
+                finally {
+                    socket.close();
+                }
+                evictIfLowOnMemory();
+            }
+        }
+        finally {
+            serverSocket.close();
+            FileUtil.delete(tokenFile);
+            disposeApplicationEnvironment();
+        }
+    }
+
+    private void writeTokenFile() throws IOException {
+        token = new BigInteger(128, new SecureRandom()).toString(16).getBytes("UTF-8");
+
+        // The token is written to a temporary file first, so that clients never read a partially written one
+        FileUtil.createParentDirs(tokenFile);
+        File temporaryFile = new File(tokenFile.getPath() + ".tmp");
+        FileUtil.delete(temporaryFile);
+        if (!temporaryFile.createNewFile()) {
+            throw new IOException("Can't create the compile daemon token file " + temporaryFile);
+        }
+        // Java can't change the permissions of a file on Windows, where the files in the user's home are private anyway
+        boolean restricted = temporaryFile.setReadable(false, false) && temporaryFile.setWritable(false, false) &&
+                             temporaryFile.setReadable(true, true) && temporaryFile.setWritable(true, true);
+        if (!restricted && !SystemInfo.isWindows) {
+            FileUtil.delete(temporaryFile);
+            throw new IOException("Can't make the compile daemon token file private: " + temporaryFile);
+        }
+        FileUtil.writeToFile(temporaryFile, token);
+
+        FileUtil.delete(tokenFile);
+        if (!temporaryFile.renameTo(tokenFile)) {
+            FileUtil.delete(temporaryFile);
+            throw new IOException("Can't create the compile daemon token file " + tokenFile);
+        }
+    }
+
+    private void serve(@NotNull Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        if (input.readInt() != PROTOCOL_VERSION) {
+            writeMessage(output, CompilerMessageSeverity.ERROR, "Incompatible compile daemon protocol version",
+                         CompilerMessageLocation.NO_LOCATION);
+            writeExitCode(output, ExitCode.INTERNAL_ERROR);
+            output.flush();
+            return;
+        }
+
+        int tokenLength = input.readInt();
+        if (tokenLength < 0 || tokenLength > MAX_TOKEN_LENGTH) {
+            throw new IOException("Wrong length of the compile daemon token: " + tokenLength);
+        }
+        byte[] clientToken = new byte[tokenLength];
+        input.readFully(clientToken);
+        if (!MessageDigest.isEqual(clientToken, token)) {
+            writeMessage(output, CompilerMessageSeverity.ERROR, "Wrong compile daemon token", CompilerMessageLocation.NO_LOCATION);
+            writeExitCode(output, ExitCode.INTERNAL_ERROR);
+            output.flush();
+            return;
+        }
+
+        String[] args = new String[input.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = input.readUTF();
+        }
+
+        MessageCollector messageCollector = new MessageCollector() {
+            @Override
+            public void report(@NotNull CompilerMessageSeverity severity, @NotNull String message, @NotNull CompilerMessageLocation location) {
+                try {
+                    writeMessage(output, severity, message, location);
+                }
+                catch (IOException e) {
+                    // The client has gone, nobody is interested in the messages anymore
+                }
+            }
+        };
+
+        writeExitCode(output, compile(args, messageCollector));
+        output.flush();
+    }
+
+    @NotNull
+    private ExitCode compile(@NotNull String[] args, @NotNull MessageCollector messageCollector) {
+        K2JVMCompilerArguments arguments = new K2JVMCompilerArguments();
+        try {
+            arguments.freeArgs = Args.parse(arguments, args);
+        }
+        catch (IllegalArgumentException e) {
+            messageCollector.report(CompilerMessageSeverity.ERROR, e.getMessage(), CompilerMessageLocation.NO_LOCATION);
+            return ExitCode.INTERNAL_ERROR;
+        }
+        catch (Throwable t) {
+            messageCollector.report(CompilerMessageSeverity.EXCEPTION, MessageRenderer.PLAIN.renderException(t),
+                                    CompilerMessageLocation.NO_LOCATION);
+            return ExitCode.INTERNAL_ERROR;
+        }
+
+        if (arguments.script || (arguments.module == null && arguments.src == null && arguments.freeArgs.isEmpty())) {
+            messageCollector.report(CompilerMessageSeverity.ERROR, "Scripts and REPL are not supported by the compile daemon",
+                                    CompilerMessageLocation.NO_LOCATION);
+            return ExitCode.INTERNAL_ERROR;
+        }
+
+        if (haveOpenedJarsChanged()) {
+            // A jar handler would keep serving the contents the jar had when it was opened
+            log("Jars on the classpath have changed, dropping the cached application environment");
+            disposeApplicationEnvironment();
+        }
+
+        return new DaemonCompiler(getApplicationEnvironment()).exec(messageCollector, arguments);
+    }
+
+    private boolean haveOpenedJarsChanged() {
+        for (Map.Entry<File, Pair<Long, Long>> entry : openedJars.entrySet()) {
+            if (!entry.getValue().equals(getStamp(entry.getKey()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rememberOpenedJar(@NotNull File file) {
+        // Directories are not cached, and their modification time changes with every file added
+        if (file.isFile() && !openedJars.containsKey(file)) {
+            openedJars.put(file, getStamp(file));
+        }
+    }
+
+    @NotNull
+    private static Pair<Long, Long> getStamp(@NotNull File file) {
+        return Pair.create(file.lastModified(), file.length());
+    }
+
+    @NotNull
+    private JavaCoreApplicationEnvironment getApplicationEnvironment() {
+        if (applicationEnvironment == null) {
+            applicationDisposable = CompileEnvironmentUtil.createMockDisposable();
+            applicationEnvironment = JetCoreEnvironment.createApplicationEnvironment(applicationDisposable);
+        }
+        return applicationEnvironment;
+    }
+
+    private void disposeApplicationEnvironment() {
+        if (applicationDisposable != null) {
+            Disposer.dispose(applicationDisposable);
+            applicationDisposable = null;
+            applicationEnvironment = null;
+        }
+        openedJars.clear();
+    }
+
+    private void log(@NotNull String message) {
+        log.report(CompilerMessageSeverity.INFO, message, CompilerMessageLocation.NO_LOCATION);
+    }
+
+    private void evictIfLowOnMemory() {
+        if (isLowOnMemory()) {
+            System.gc();
+            if (isLowOnMemory()) {
+                log("Memory usage is high, dropping the cached application environment");
+                disposeApplicationEnvironment();
+            }
+        }
+    }
+
+    private static boolean isLowOnMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used > runtime.maxMemory() * EVICTION_THRESHOLD;
+    }
+
+    private static void writeMessage(
+            @NotNull DataOutputStream output,
+            @NotNull CompilerMessageSeverity severity,
+            @NotNull String message,
+            @NotNull CompilerMessageLocation location
+    ) throws IOException {
+        output.writeByte(MESSAGE_RECORD);
+        output.writeUTF(severity.name());
+        // Messages (e.g. stack traces) may not fit into the limit of writeUTF
+        byte[] bytes = message.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        String path = location.getPath();
+        output.writeUTF(path != null ? path : "");
+        output.writeInt(location.getLine());
+        output.writeInt(location.getColumn());
+    }
+
+    private static void writeExitCode(@NotNull DataOutputStream output, @NotNull ExitCode exitCode) throws IOException {
+        output.writeByte(EXIT_RECORD);
+        output.writeUTF(exitCode.name());
+    }
+
+    private class DaemonCompiler extends K2JVMCompiler {
+        @NotNull
+        private final JavaCoreApplicationEnvironment applicationEnvironment;
+
+        private DaemonCompiler(@NotNull JavaCoreApplicationEnvironment applicationEnvironment) {
+            this.applicationEnvironment = applicationEnvironment;
+        }
+
+        @Override
+        protected void configureEnvironment(@NotNull CompilerConfiguration configuration, @NotNull K2JVMCompilerArguments arguments) {
+            super.configureEnvironment(configuration, arguments);
+            configuration.put(JVMConfigurationKeys.APPLICATION_ENVIRONMENT, applicationEnvironment);
+            configuration.put(JVMConfigurationKeys.CLASSPATH_ENTRY_CONSUMER, new Consumer<File>() {
+                @Override
+                public void consume(File file) {
+                    rememberOpenedJar(file);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.daemon;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.sampullara.cli.Argument;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.cli.jvm.K2JVMCompilerArguments;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sends compilation requests to a {@link CompileDaemon} running on the same machine.
+ * All the paths in the arguments should be absolute, since the daemon has its own working directory.
+ */
+public class CompileDaemonClient {
+    // Arguments whose values are paths, or lists of paths separated with File.pathSeparator
+    private static final Set<String> PATH_ARGUMENTS = ImmutableSet.of(
+            "jar", "src", "classpath", "annotations", "incrementalCache", "classpathIndex", "output", "module", "kotlinHome");
+
+    private CompileDaemonClient() {
+    }
+
+    /**
+     * @return exit code of the compilation, or null if there is no daemon listening on the port, in which case
+     *         the caller is supposed to compile in process
+     * @throws IOException if the connection is lost during the compilation, when the caller can't tell which messages
+     *         have already been reported
+     */
+    @Nullable
+    public static ExitCode compile(int port, @NotNull String[] args, @NotNull MessageCollector messageCollector) throws IOException {
+        return compile(port, CompileDaemon.getDefaultTokenFile(port), args, messageCollector);
+    }
+
+    /**
+     * @param tokenFile the file the daemon has written its token to
+     */
+    @Nullable
+    public static ExitCode compile(int port, @NotNull File tokenFile, @NotNull String[] args, @NotNull MessageCollector messageCollector)
+            throws IOException {
+        if (!tokenFile.isFile()) {
+            return null;
+        }
+        byte[] token = FileUtil.loadFileBytes(tokenFile);
+
+        Socket socket;
+        try {
+            socket = new Socket(InetAddress.getByName(null), port);
+        }
+        catch (ConnectException e) {
+            return null;
+        }
+
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.writeInt(CompileDaemon.PROTOCOL_VERSION);
+            output.writeInt(token.length);
+            output.write(token);
+            output.writeInt(args.length);
+            for (String arg : args) {
+                output.writeUTF(arg);
+            }
+            output.flush();
+
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                byte record = input.readByte();
+                if (record == CompileDaemon.EXIT_RECORD) {
+                    return ExitCode.valueOf(input.readUTF());
+                }
+                if (record != CompileDaemon.MESSAGE_RECORD) {
+                    throw new IOException("Unexpected compile daemon response: " + record);
+                }
+
+                CompilerMessageSeverity severity = CompilerMessageSeverity.valueOf(input.readUTF());
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                String path = input.readUTF();
+                int line = input.readInt();
+                int column = input.readInt();
+                messageCollector.report(severity, new String(bytes, "UTF-8"),
+                                        CompilerMessageLocation.create(path.isEmpty() ? null : path, line, column));
+            }
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Converts the arguments back to the command line form understood by the daemon. Relative paths are resolved against
+     * the working directory of this process
+     *
+     * @return null if the arguments can't be passed to another process (e.g. compiler plugins are set)
+     */
+    @Nullable
+    public static String[] toCommandLine(@NotNull K2JVMCompilerArguments arguments) {
+        if (!arguments.getCompilerPlugins().isEmpty()) {
+            return null;
+        }
+
+        List<String> result = Lists.newArrayList();
+        try {
+            for (Field field : K2JVMCompilerArguments.class.getFields()) {
+                Argument argument = field.getAnnotation(Argument.class);
+                if (argument == null) continue;
+
+                String name = "-" + argument.value();
+                Object value = field.get(arguments);
+                if (value instanceof Boolean) {
+                    if ((Boolean) value) {
+                        result.add(name);
+                    }
+                }
+                else if (value != null) {
+                    result.add(name);
+                    result.add(PATH_ARGUMENTS.contains(argument.value()) ? toAbsolutePaths(value.toString()) : value.toString());
+                }
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+
+        List<String> sourceDirs = arguments.getSourceDirs();
+        if (sourceDirs != null) {
+            if (arguments.src != null) {
+                // Source directories override -src in K2JVMCompiler, and there's no way to pass both
+                return null;
+            }
+            result.add("-src");
+            result.add(toAbsolutePaths(StringUtil.join(sourceDirs, File.pathSeparator)));
+        }
+        else {
+            for (String sourceFile : arguments.freeArgs) {
+                result.add(new File(sourceFile).getAbsolutePath());
+            }
+        }
+
+        return result.toArray(new String[result.size()]);
+    }
+
+    @NotNull
+    private static String toAbsolutePaths(@NotNull String paths) {
+        List<String> result = Lists.newArrayList();
+        for (String path : StringUtil.split(paths, File.pathSeparator)) {
+            result.add(new File(path).getAbsolutePath());
+        }
+        return StringUtil.join(result, File.pathSeparator);
+    }
+}
@@ -23,11 +23,27 @@ import org.jetbrains.asm4.ClassReader;
 import org.jetbrains.asm4.util.TraceClassVisitor;
 
 import java.io.PrintWriter;
+import java.lang.reflect.Method;
 import java.util.Map;
 
 public class ReplClassLoader extends ClassLoader {
+    static {
+        // See GeneratedClassLoader
+        try {
+            Method method = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            method.setAccessible(true);
+            method.invoke(null);
+        }
+        catch (NoSuchMethodException e) {
+            // Java 6: class loading is synchronized on the class loader
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-    private Map<JvmClassName, byte[]> classes = Maps.newLinkedHashMap();
+    // Keys are internal names, looked up without creating a JvmClassName for every requested class
+    private final Map<String, byte[]> classes = Maps.newLinkedHashMap();
 
     public ReplClassLoader(@NotNull ClassLoader parent) {
         super(parent);
@@ -38,7 +54,10 @@ public class ReplClassLoader extends ClassLoader {
 
     @Override
     protected Class<?> findClass(String name) throws ClassNotFoundException {
-        byte[] classBytes = classes.get(JvmClassName.byFqNameWithoutInnerClasses(name));
+        byte[] classBytes;
+        synchronized (classes) {
+            classBytes = classes.get(name.replace('.', '/'));
+        }
         if (classBytes != null) {
             return defineClass(name, classBytes, 0, classBytes.length);
         }
@@ -48,15 +67,20 @@ public class ReplClassLoader extends ClassLoader {
     }
 
     public void addClass(@NotNull JvmClassName className, @NotNull byte[] bytes) {
-        byte[] oldBytes = classes.put(className, bytes);
+        byte[] oldBytes;
+        synchronized (classes) {
+            oldBytes = classes.put(className.getInternalName(), bytes);
+        }
         if (oldBytes != null) {
             throw new IllegalStateException("Rewrite at key " + className);
         }
     }
 
     public void dumpClasses(@NotNull PrintWriter writer) {
-        for (byte[] classBytes : classes.values()) {
-            new ClassReader(classBytes).accept(new TraceClassVisitor(writer), 0);
+        synchronized (classes) {
+            for (byte[] classBytes : classes.values()) {
+                new ClassReader(classBytes).accept(new TraceClassVisitor(writer), 0);
+            }
         }
     }
 
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.repl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.lang.resolve.scopes.JetScope;
+import org.jetbrains.jet.lang.resolve.scopes.JetScopeImpl;
+
+import java.util.*;
+
+/**
+ * Declarations and imports of all the lines evaluated so far, flattened into a single scope.
+ * <p/>
+ * Previously every line was analyzed in a scope importing the scope of the line before it, so lookups walked a chain
+ * as long as the session, and the chain kept the scopes of all the lines alive. Here the interpreter adds a line
+ * once it has been evaluated, and in between the scope is only read: the latest declaration of a variable or a classifier
+ * wins, functions are accumulated (the latest first) for the overload resolution to choose.
+ */
+public class ReplEarlierLinesScope extends JetScopeImpl {
+    @NotNull
+    private final DeclarationDescriptor containingDeclaration;
+
+    private final Map<Name, ClassifierDescriptor> classifiers = Maps.newHashMap();
+    private final Map<Name, VariableDescriptor> variables = Maps.newHashMap();
+    private final Map<Name, List<FunctionDescriptor>> functions = Maps.newHashMap();
+    // Receivers of the earlier scripts, in the order of the lines
+    private final List<ReceiverParameterDescriptor> implicitReceivers = Lists.newArrayList();
+    // Only the lines having import directives contribute a scope here, the latest first
+    private final List<JetScope> importScopes = Lists.newArrayList();
+
+    public ReplEarlierLinesScope(@NotNull DeclarationDescriptor containingDeclaration) {
+        this.containingDeclaration = containingDeclaration;
+    }
+
+    public void addScript(@NotNull ScriptDescriptor scriptDescriptor) {
+        classifiers.put(scriptDescriptor.getClassDescriptor().getName(), scriptDescriptor.getClassDescriptor());
+        implicitReceivers.add(scriptDescriptor.getThisAsReceiverParameter());
+    }
+
+    public void addClassifier(@NotNull ClassifierDescriptor classifier) {
+        classifiers.put(classifier.getName(), classifier);
+    }
+
+    public void addVariable(@NotNull VariableDescriptor variable) {
+        variables.put(variable.getName(), variable);
+    }
+
+    public void addFunction(@NotNull FunctionDescriptor function) {
+        List<FunctionDescriptor> overloads = functions.get(function.getName());
+        if (overloads == null) {
+            overloads = Lists.newArrayList();
+            functions.put(function.getName(), overloads);
+        }
+        overloads.add(0, function);
+    }
+
+    /**
+     * @param importScope a scope which won't change anymore
+     */
+    public void addImports(@NotNull JetScope importScope) {
+        importScopes.add(0, importScope);
+    }
+
+    @Nullable
+    @Override
+    public ClassifierDescriptor getClassifier(@NotNull Name name) {
+        ClassifierDescriptor classifier = classifiers.get(name);
+        if (classifier != null) return classifier;
+
+        for (JetScope importScope : importScopes) {
+            classifier = importScope.getClassifier(name);
+            if (classifier != null) return classifier;
+        }
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public ClassDescriptor getObjectDescriptor(@NotNull Name name) {
+        for (JetScope importScope : importScopes) {
+            ClassDescriptor objectDescriptor = importScope.getObjectDescriptor(name);
+            if (objectDescriptor != null) return objectDescriptor;
+        }
+        return null;
+    }
+
+    @NotNull
+    @Override
+    public Set<ClassDescriptor> getObjectDescriptors() {
+        Set<ClassDescriptor> result = Sets.newLinkedHashSet();
+        for (JetScope importScope : importScopes) {
+            result.addAll(importScope.getObjectDescriptors());
+        }
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public NamespaceDescriptor getNamespace(@NotNull Name name) {
+        for (JetScope importScope : importScopes) {
+            NamespaceDescriptor namespace = importScope.getNamespace(name);
+            if (namespace != null) return namespace;
+        }
+        return null;
+    }
+
+    @NotNull
+    @Override
+    public Collection<VariableDescriptor> getProperties(@NotNull Name name) {
+        if (importScopes.isEmpty()) return Collections.emptySet();
+
+        Set<VariableDescriptor> result = Sets.newLinkedHashSet();
+        for (JetScope importScope : importScopes) {
+            result.addAll(importScope.getProperties(name));
+        }
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public VariableDescriptor getLocalVariable(@NotNull Name name) {
+        VariableDescriptor variable = variables.get(name);
+        if (variable != null) return variable;
+
+        for (JetScope importScope : importScopes) {
+            variable = importScope.getLocalVariable(name);
+            if (variable != null) return variable;
+        }
+        return null;
+    }
+
+    @NotNull
+    @Override
+    public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
+        List<FunctionDescriptor> overloads = functions.get(name);
+        if (importScopes.isEmpty()) {
+            return overloads != null ? Collections.unmodifiableList(overloads) : Collections.<FunctionDescriptor>emptyList();
+        }
+
+        Set<FunctionDescriptor> result = Sets.newLinkedHashSet();
+        if (overloads != null) {
+            result.addAll(overloads);
+        }
+        for (JetScope importScope : importScopes) {
+            result.addAll(importScope.getFunctions(name));
+        }
+        return result;
+    }
+
+    @NotNull
+    @Override
+    public DeclarationDescriptor getContainingDeclaration() {
+        return containingDeclaration;
+    }
+
+    @NotNull
+    @Override
+    public Collection<DeclarationDescriptor> getAllDescriptors() {
+        List<DeclarationDescriptor> result = Lists.newArrayList();
+        result.addAll(classifiers.values());
+        result.addAll(variables.values());
+        for (List<FunctionDescriptor> overloads : functions.values()) {
+            result.addAll(overloads);
+        }
+        for (JetScope importScope : importScopes) {
+            result.addAll(importScope.getAllDescriptors());
+        }
+        return result;
+    }
+
+    @NotNull
+    @Override
+    public List<ReceiverParameterDescriptor> getImplicitReceiversHierarchy() {
+        // The closest receiver goes first
+        return Collections.unmodifiableList(Lists.reverse(implicitReceivers));
+    }
+
+    @Override
+    public String toString() {
+        return "Earlier REPL lines scope for " + containingDeclaration;
+    }
+}
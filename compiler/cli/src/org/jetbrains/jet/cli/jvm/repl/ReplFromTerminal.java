@@ -34,6 +34,7 @@ public class ReplFromTerminal {
     private ReplInterpreter replInterpreter;
     private Throwable replInitializationFailed;
     private final Object waitRepl = new Object();
+    private boolean showTimings = false;
 
     private final ConsoleReader consoleReader;
 
@@ -152,6 +153,9 @@ public class ReplFromTerminal {
         else {
             throw new IllegalStateException("unknown line result type: " + lineResult);
         }
+        if (showTimings && lineResult.getType() != ReplInterpreter.LineResultType.INCOMPLETE) {
+            System.out.println("(" + getReplInterpreter().getLastLineTimings() + ")");
+        }
         return lineResult.getType();
     }
 
@@ -164,6 +168,12 @@ public class ReplFromTerminal {
             System.out.println(":quit                   exit the interpreter");
             System.out.println(":dump bytecode          dump classes to terminal");
             System.out.println(":load <file>            load script from specified file");
+            System.out.println(":timings                toggle printing of analyze, codegen and eval times of every line");
+            return true;
+        }
+        else if (split.size() >= 1 && split.get(0).equals("timings")) {
+            showTimings = !showTimings;
+            System.out.println("Timings are " + (showTimings ? "on" : "off"));
             return true;
         }
         else if (split.size() >= 2 && split.get(0).equals("dump") && split.get(1).equals("bytecode")) {
@@ -16,9 +16,11 @@
 
 package org.jetbrains.jet.cli.jvm.repl;
 
+import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
@@ -40,20 +42,22 @@ import org.jetbrains.jet.codegen.CompilationErrorHandler;
 import org.jetbrains.jet.codegen.state.GenerationState;
 import org.jetbrains.jet.config.CompilerConfiguration;
 import org.jetbrains.jet.di.InjectorForTopDownAnalyzerForJvm;
-import org.jetbrains.jet.lang.descriptors.ModuleDescriptorImpl;
-import org.jetbrains.jet.lang.descriptors.ScriptDescriptor;
+import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.descriptors.impl.NamespaceDescriptorImpl;
 import org.jetbrains.jet.lang.descriptors.impl.NamespaceLikeBuilderDummy;
-import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.*;
 import org.jetbrains.jet.lang.resolve.*;
 import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
 import org.jetbrains.jet.lang.resolve.java.JvmClassName;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
+import org.jetbrains.jet.lang.resolve.scopes.RedeclarationHandler;
 import org.jetbrains.jet.lang.resolve.scopes.WritableScope;
 import org.jetbrains.jet.lang.resolve.scopes.WritableScopeImpl;
+import org.jetbrains.jet.lang.types.DeferredType;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 import org.jetbrains.jet.plugin.JetLanguage;
+import org.jetbrains.jet.util.Box;
 import org.jetbrains.jet.utils.ExceptionUtils;
 
 import java.io.File;
@@ -65,13 +69,21 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 public class ReplInterpreter {
 
+    // The records about the expressions of the analyzed lines are dropped from the trace once per this many lines,
+    // so that the trace doesn't have to be scanned on every line
+    private static final int TRACE_COMPACTION_INTERVAL = 64;
+
     private int lineNumber = 0;
-    @Nullable
-    private JetScope lastLineScope;
+    @NotNull
+    private final ReplEarlierLinesScope earlierLinesScope;
     private List<EarlierLine> earlierLines = Lists.newArrayList();
+    private final Set<JetFile> linesToCompact = Sets.newHashSet();
+    @NotNull
+    private LineTimings lastLineTimings = new LineTimings();
     private List<String> previousIncompleteLines = Lists.newArrayList();
     private final ReplClassLoader classLoader;
 
@@ -96,6 +108,7 @@ public class ReplInterpreter {
                 Collections.<AnalyzerScriptParameter>emptyList());
         injector = new InjectorForTopDownAnalyzerForJvm(project, topDownAnalysisParameters, trace, module);
         module.setModuleConfiguration(injector.getJavaBridgeConfiguration());
+        earlierLinesScope = new ReplEarlierLinesScope(module);
 
         List<URL> classpath = Lists.newArrayList();
 
@@ -177,10 +190,44 @@ public class ReplInterpreter {
         }
     }
 
+    /**
+     * Time spent in the phases of the evaluation of a line, zero for the phases which weren't reached
+     */
+    public static class LineTimings {
+        private long analyzeNanos;
+        private long codegenNanos;
+        private long evalNanos;
+
+        public long getAnalyzeNanos() {
+            return analyzeNanos;
+        }
+
+        public long getCodegenNanos() {
+            return codegenNanos;
+        }
+
+        public long getEvalNanos() {
+            return evalNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "analyze: " + analyzeNanos / 1000000 + " ms, codegen: " + codegenNanos / 1000000 + " ms, eval: " + evalNanos / 1000000 + " ms";
+        }
+    }
+
+    @NotNull
+    public LineTimings getLastLineTimings() {
+        return lastLineTimings;
+    }
+
     @NotNull
     public LineResult eval(@NotNull String line) {
         ++lineNumber;
 
+        LineTimings timings = new LineTimings();
+        lastLineTimings = timings;
+
         JvmClassName scriptClassName = JvmClassName.byInternalName("Line" + lineNumber);
 
         StringBuilder fullText = new StringBuilder();
@@ -209,12 +256,19 @@ public class ReplInterpreter {
             return LineResult.error(errorCollector.getString());
         }
 
+        long analyzeStart = System.nanoTime();
+
         injector.getTopDownAnalyzer().prepareForTheNextReplLine();
         trace.clearDiagnostics();
+        if (linesToCompact.size() >= TRACE_COMPACTION_INTERVAL) {
+            compactTrace();
+        }
 
         psiFile.getScript().putUserData(ScriptHeaderResolver.PRIORITY_KEY, lineNumber);
 
         ScriptDescriptor scriptDescriptor = doAnalyze(psiFile, errorCollector);
+        linesToCompact.add(psiFile);
+        timings.analyzeNanos = System.nanoTime() - analyzeStart;
         if (scriptDescriptor == null) {
             return LineResult.error(errorCollector.getString());
         }
@@ -225,6 +279,8 @@ public class ReplInterpreter {
             earierScripts.add(Pair.create(earlierLine.getScriptDescriptor(), earlierLine.getClassName()));
         }
 
+        long codegenStart = System.nanoTime();
+
         BindingContext bindingContext = AnalyzeExhaust.success(trace.getBindingContext(), module).getBindingContext();
         GenerationState generationState = new GenerationState(psiFile.getProject(), ClassBuilderFactories.binaries(false),
                                                               bindingContext, Collections.singletonList(psiFile));
@@ -235,6 +291,9 @@ public class ReplInterpreter {
             classLoader.addClass(JvmClassName.byInternalName(file.replaceFirst("\\.class$", "")), generationState.getFactory().asBytes(file));
         }
 
+        timings.codegenNanos = System.nanoTime() - codegenStart;
+
+        long evalStart = System.nanoTime();
         try {
             Class<?> scriptClass = classLoader.loadClass(scriptClassName.getFqName().getFqName());
 
@@ -253,11 +312,15 @@ public class ReplInterpreter {
             } catch (Throwable e) {
                 return LineResult.error(Throwables.getStackTraceAsString(e));
             }
+            finally {
+                timings.evalNanos = System.nanoTime() - evalStart;
+            }
             Field rvField = scriptClass.getDeclaredField("rv");
             rvField.setAccessible(true);
             Object rv = rvField.get(scriptInstance);
 
             earlierLines.add(new EarlierLine(line, scriptDescriptor, scriptClass, scriptInstance, scriptClassName));
+            addToEarlierLinesScope(psiFile.getScript(), scriptDescriptor);
 
             return LineResult.successful(rv, scriptDescriptor.getReturnType().equals(KotlinBuiltIns.getInstance().getUnitType()));
         } catch (Throwable e) {
@@ -286,9 +349,7 @@ public class ReplInterpreter {
         // This makes the namespaces visible at all, does not import themselves
         scope.importScope(rootNs.getMemberScope());
 
-        if (lastLineScope != null) {
-            scope.importScope(lastLineScope);
-        }
+        scope.importScope(earlierLinesScope);
 
         scope.changeLockLevel(WritableScope.LockLevel.READING);
 
@@ -301,13 +362,81 @@ public class ReplInterpreter {
             return null;
         }
 
-        ScriptDescriptor scriptDescriptor = injector.getTopDownAnalysisContext().getScripts().get(psiFile.getScript());
-        lastLineScope = trace.get(BindingContext.SCRIPT_SCOPE, scriptDescriptor);
-        if (lastLineScope == null) {
+        return injector.getTopDownAnalysisContext().getScripts().get(psiFile.getScript());
+    }
+
+    private void addToEarlierLinesScope(@NotNull JetScript script, @NotNull ScriptDescriptor scriptDescriptor) {
+        JetScope lineScope = trace.get(BindingContext.SCRIPT_SCOPE, scriptDescriptor);
+        if (lineScope == null) {
             throw new IllegalStateException("last line scope is not initialized");
         }
 
-        return scriptDescriptor;
+        earlierLinesScope.addScript(scriptDescriptor);
+
+        // Variables and classes, functions aren't accessible by simple name
+        for (DeclarationDescriptor descriptor : lineScope.getOwnDeclaredDescriptors()) {
+            if (descriptor instanceof VariableDescriptor) {
+                earlierLinesScope.addVariable((VariableDescriptor) descriptor);
+            }
+            else if (descriptor instanceof ClassifierDescriptor) {
+                earlierLinesScope.addClassifier((ClassifierDescriptor) descriptor);
+            }
+        }
+        for (JetDeclaration declaration : script.getDeclarations()) {
+            if (declaration instanceof JetNamedFunction) {
+                SimpleFunctionDescriptor function = trace.get(BindingContext.FUNCTION, declaration);
+                if (function != null) {
+                    earlierLinesScope.addFunction(function);
+                }
+            }
+        }
+
+        List<JetImportDirective> importDirectives = script.getImportDirectives();
+        if (!importDirectives.isEmpty()) {
+            earlierLinesScope.addImports(resolveImports(importDirectives));
+        }
+    }
+
+    // The imports of the line have been resolved into its script scope, which isn't kept, so they are resolved once again
+    // into a scope of their own
+    @NotNull
+    private JetScope resolveImports(@NotNull List<JetImportDirective> importDirectives) {
+        WritableScopeImpl importScope = new WritableScopeImpl(
+                JetScope.EMPTY, module, RedeclarationHandler.DO_NOTHING, "Imports of REPL line " + lineNumber);
+        importScope.changeLockLevel(WritableScope.LockLevel.BOTH);
+
+        JetScope rootScope = injector.getNamespaceFactory().createNamespaceDescriptorPathIfNeeded(FqName.ROOT).getMemberScope();
+        Importer.StandardImporter importer = new Importer.StandardImporter(importScope);
+        // Everything has been reported and recorded when the line was analyzed
+        TemporaryBindingTrace temporaryTrace = TemporaryBindingTrace.create(trace, "imports of an evaluated REPL line");
+        QualifiedExpressionResolver qualifiedExpressionResolver = new QualifiedExpressionResolver();
+        for (JetImportDirective importDirective : importDirectives) {
+            qualifiedExpressionResolver.processImportReference(importDirective, rootScope, importScope, importer, temporaryTrace, module,
+                                                               QualifiedExpressionResolver.LookupMode.EVERYTHING);
+        }
+
+        importScope.changeLockLevel(WritableScope.LockLevel.READING);
+        return importScope;
+    }
+
+    // Keeps the declarations of the lines: the descriptors refer to them, and the code of the later lines refers to the descriptors
+    private void compactTrace() {
+        final Set<JetFile> files = Sets.newHashSet(linesToCompact);
+        linesToCompact.clear();
+        trace.removeRecords(new Predicate<Object>() {
+            @Override
+            public boolean apply(@Nullable Object key) {
+                if (key instanceof JetElement) {
+                    return !(key instanceof JetDeclaration) && !(key instanceof JetFile) && files.contains(((JetElement) key).getContainingFile());
+                }
+                if (key instanceof Box) {
+                    // Otherwise all the deferred types of the session are looked through when analyzing every line
+                    Object data = ((Box<?>) key).getData();
+                    return data instanceof DeferredType && ((DeferredType) data).isComputed();
+                }
+                return false;
+            }
+        });
     }
 
     public void dumpClasses(@NotNull PrintWriter out) {
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+/**
+ * Optional project service which knows the contents of the classpath without building PSI for it.
+ * {@link PsiClassFinderImpl} consults it to skip the lookups which can't succeed.
+ */
+public abstract class ClassPathIndex {
+    @Nullable
+    public static ClassPathIndex getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, ClassPathIndex.class);
+    }
+
+    /**
+     * @return false if there's definitely no class with this name on the classpath
+     */
+    public abstract boolean mayContainClass(@NotNull FqName fqName);
+
+    /**
+     * @return false if there's definitely no package with this name on the classpath
+     */
+    public abstract boolean mayContainPackage(@NotNull FqName fqName);
+}
@@ -48,6 +48,8 @@ public class PsiClassFinderImpl implements PsiClassFinder {
 
     private GlobalSearchScope javaSearchScope;
     private JavaPsiFacadeKotlinHacks javaFacade;
+    @Nullable
+    private ClassPathIndex classPathIndex;
 
     @Inject
     public void setProject(@NotNull Project project) {
@@ -80,12 +82,17 @@ public class PsiClassFinderImpl implements PsiClassFinder {
             }
         };
         javaFacade = new JavaPsiFacadeKotlinHacks(project);
+        classPathIndex = ClassPathIndex.getInstance(project);
     }
 
 
     @Override
     @Nullable
     public PsiClass findPsiClass(@NotNull FqName qualifiedName, @NotNull RuntimeClassesHandleMode runtimeClassesHandleMode) {
+        if (classPathIndex != null && !classPathIndex.mayContainClass(qualifiedName)) {
+            return null;
+        }
+
         PsiClass original = javaFacade.findClass(qualifiedName.getFqName(), javaSearchScope);
 
         if (original != null) {
@@ -131,6 +138,9 @@ public class PsiClassFinderImpl implements PsiClassFinder {
     @Override
     @Nullable
     public PsiPackage findPsiPackage(@NotNull FqName qualifiedName) {
+        if (classPathIndex != null && !classPathIndex.mayContainPackage(qualifiedName)) {
+            return null;
+        }
         return javaFacade.findPackage(qualifiedName.getFqName());
     }
 
@@ -18,11 +18,11 @@ package org.jetbrains.jet.lang.cfg;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.cfg.pseudocode.*;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -57,11 +57,6 @@ public class PseudocodeTraverser {
         return traversalOrder == FORWARD ? instruction.getPreviousInstructions() : instruction.getNextInstructions();
     }
 
-    private static boolean isStartInstruction(@NotNull Instruction instruction, @NotNull TraversalOrder traversalOrder) {
-        return traversalOrder == FORWARD ? instruction instanceof SubroutineEnterInstruction
-                                         : instruction instanceof SubroutineSinkInstruction;
-    }
-
     public static enum LookInsideStrategy {
         ANALYSE_LOCAL_DECLARATIONS,
         SKIP_LOCAL_DECLARATIONS
@@ -71,6 +66,14 @@ public class PseudocodeTraverser {
         return lookInside == LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS && instruction instanceof LocalDeclarationInstruction;
     }
 
+    /**
+     * Computes the data on the edges of all the instructions, starting with the given values and merging the data of the
+     * previous instructions until nothing changes.
+     * <p/>
+     * After a first pass over all the instructions, the ones to visit again are kept in a worklist ordered by their
+     * reverse postorder number, so an instruction is usually visited after all its predecessors have been, and only
+     * the successors of the instructions whose data has changed are visited.
+     */
     public static <D> Map<Instruction, Edges<D>> collectData(
             @NotNull Pseudocode pseudocode, TraversalOrder traversalOrder, LookInsideStrategy lookInside,
             @NotNull D initialDataValue, @NotNull D initialDataValueForEnterInstruction,
@@ -80,16 +83,92 @@ public class PseudocodeTraverser {
         initializeEdgesMap(pseudocode, lookInside, edgesMap, initialDataValue);
         edgesMap.put(getStartInstruction(pseudocode, traversalOrder), Edges.create(initialDataValueForEnterInstruction, initialDataValueForEnterInstruction));
 
-        boolean[] changed = new boolean[1];
-        changed[0] = true;
-        while (changed[0]) {
-            changed[0] = false;
-            collectDataFromSubgraph(pseudocode, traversalOrder, lookInside, edgesMap, instructionDataMergeStrategy,
-                                    Collections.<Instruction>emptyList(), changed, false);
+        InstructionGraph graph = new InstructionGraph(pseudocode, traversalOrder, lookInside);
+        int size = graph.instructions.size();
+
+        // The first pass goes in the pseudocode order, like the passes of the whole pseudocode used to, so that the data
+        // on the unreachable instructions (which don't converge the same way in any order) is left unchanged
+        BitSet worklist = new BitSet(size);
+        BitSet visited = new BitSet(size);
+        visited.set(0);
+        for (int index : graph.pseudocodeOrder) {
+            if (index == 0) continue;
+            visited.set(index);
+            if (updateEdges(graph, index, edgesMap, instructionDataMergeStrategy)) {
+                for (int successor : graph.successors[index]) {
+                    if (visited.get(successor)) {
+                        worklist.set(successor);
+                    }
+                }
+            }
+        }
+
+        // Unreachable instructions only depend on each other, they are swept in the pseudocode order until nothing changes
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int index = graph.reachableCount; index < size; index++) {
+                if (updateEdges(graph, index, edgesMap, instructionDataMergeStrategy)) {
+                    changed = true;
+                    for (int successor : graph.successors[index]) {
+                        worklist.set(successor);
+                    }
+                }
+            }
+        }
+        worklist.clear(graph.reachableCount, size);
+
+        // The start instruction is numbered 0 and keeps its initial data
+        worklist.clear(0);
+        for (int index = worklist.nextSetBit(0); index >= 0; index = worklist.nextSetBit(0)) {
+            worklist.clear(index);
+            if (updateEdges(graph, index, edgesMap, instructionDataMergeStrategy)) {
+                for (int successor : graph.successors[index]) {
+                    if (successor != 0) {
+                        worklist.set(successor);
+                    }
+                }
+            }
         }
         return edgesMap;
     }
 
+    /**
+     * @return whether the data on the edges of the instruction has changed
+     */
+    private static <D> boolean updateEdges(
+            @NotNull InstructionGraph graph, int index,
+            @NotNull Map<Instruction, Edges<D>> edgesMap,
+            @NotNull InstructionDataMergeStrategy<D> instructionDataMergeStrategy) {
+
+        Instruction instruction = graph.instructions.get(index);
+        Edges<D> newValue = computeEdges(graph, index, edgesMap, instructionDataMergeStrategy);
+        if (newValue.equals(edgesMap.get(instruction))) return false;
+
+        edgesMap.put(instruction, newValue);
+        return true;
+    }
+
+    @NotNull
+    private static <D> Edges<D> computeEdges(
+            @NotNull InstructionGraph graph, int index,
+            @NotNull Map<Instruction, Edges<D>> edgesMap,
+            @NotNull InstructionDataMergeStrategy<D> instructionDataMergeStrategy) {
+
+        Instruction dataSource = graph.dataSources.get(index);
+        if (dataSource != null) {
+            return edgesMap.get(dataSource);
+        }
+        Collection<D> incomingEdgesData = Lists.newArrayList();
+        for (Instruction previousInstruction : graph.predecessors.get(index)) {
+            Edges<D> previousData = edgesMap.get(previousInstruction);
+            if (previousData != null) {
+                incomingEdgesData.add(previousData.out);
+            }
+        }
+        return instructionDataMergeStrategy.execute(graph.instructions.get(index), incomingEdgesData);
+    }
+
     private static <D> void initializeEdgesMap(
             @NotNull Pseudocode pseudocode, LookInsideStrategy lookInside,
             @NotNull Map<Instruction, Edges<D>> edgesMap,
@@ -104,61 +183,155 @@ public class PseudocodeTraverser {
         }
     }
 
-    private static <D> void collectDataFromSubgraph(
-            @NotNull Pseudocode pseudocode, TraversalOrder traversalOrder,
-            LookInsideStrategy lookInside,
-            @NotNull Map<Instruction, Edges<D>> edgesMap,
-            @NotNull InstructionDataMergeStrategy<D> instructionDataMergeStrategy,
-            @NotNull Collection<Instruction> previousSubGraphInstructions,
-            boolean[] changed, boolean isLocal) {
+    /**
+     * The instructions of a pseudocode, including the ones of the analysed local declarations, numbered in the reverse
+     * postorder of the traversal starting from the start instruction. The unreachable instructions go last, in the
+     * pseudocode order.
+     * <p/>
+     * The start instruction of an analysed local declaration also merges the data of the instructions previous to the
+     * declaration, and the declaration itself takes the data of the last instruction of its body.
+     */
+    private static class InstructionGraph {
+        final List<Instruction> instructions = Lists.newArrayList();
+        final List<Collection<Instruction>> predecessors = Lists.newArrayList();
+        final List<Instruction> dataSources = Lists.newArrayList();
+        final int[][] successors;
+        final int reachableCount;
+        // Numbers of the instructions in the pseudocode order, where an analysed local declaration follows its body
+        final int[] pseudocodeOrder;
+
+        InstructionGraph(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder, @NotNull LookInsideStrategy lookInside) {
+            List<Instruction> found = Lists.newArrayList();
+            Map<Instruction, Collection<Instruction>> foundPredecessors = Maps.newHashMap();
+            Map<Instruction, Instruction> foundDataSources = Maps.newHashMap();
+            collectInstructions(pseudocode, traversalOrder, lookInside, Collections.<Instruction>emptyList(),
+                                found, foundPredecessors, foundDataSources);
+
+            int size = found.size();
+            Map<Instruction, Integer> foundIndices = Maps.newHashMap();
+            for (int i = 0; i < size; i++) {
+                foundIndices.put(found.get(i), i);
+            }
+            List<List<Integer>> foundSuccessors = Lists.newArrayListWithCapacity(size);
+            for (int i = 0; i < size; i++) {
+                foundSuccessors.add(Lists.<Integer>newArrayList());
+            }
+            for (int i = 0; i < size; i++) {
+                Instruction instruction = found.get(i);
+                Instruction dataSource = foundDataSources.get(instruction);
+                Collection<Instruction> dependencies = dataSource != null
+                                                       ? Collections.singletonList(dataSource)
+                                                       : foundPredecessors.get(instruction);
+                for (Instruction dependency : dependencies) {
+                    Integer dependencyIndex = foundIndices.get(dependency);
+                    if (dependencyIndex != null) {
+                        foundSuccessors.get(dependencyIndex).add(i);
+                    }
+                }
+            }
 
-        List<Instruction> instructions = getInstructions(pseudocode, traversalOrder);
-        Instruction startInstruction = getStartInstruction(pseudocode, traversalOrder);
+            int[] order = new int[size];
+            reachableCount = reversePostorder(foundIndices.get(getStartInstruction(pseudocode, traversalOrder)), foundSuccessors, order);
+            int[] numbers = new int[size];
+            for (int number = 0; number < size; number++) {
+                numbers[order[number]] = number;
+            }
 
-        for (Instruction instruction : instructions) {
-            boolean isStart = isStartInstruction(instruction, traversalOrder);
-            if (!isLocal && isStart) continue;
+            pseudocodeOrder = numbers;
+            successors = new int[size][];
+            for (int number = 0; number < size; number++) {
+                Instruction instruction = found.get(order[number]);
+                instructions.add(instruction);
+                predecessors.add(foundPredecessors.get(instruction));
+                dataSources.add(foundDataSources.get(instruction));
+
+                List<Integer> instructionSuccessors = foundSuccessors.get(order[number]);
+                successors[number] = new int[instructionSuccessors.size()];
+                for (int i = 0; i < instructionSuccessors.size(); i++) {
+                    successors[number][i] = numbers[instructionSuccessors.get(i)];
+                }
+            }
+        }
 
-            Collection<Instruction> allPreviousInstructions;
-            Collection<Instruction> previousInstructions = getPreviousInstruction(instruction, traversalOrder);
+        private static void collectInstructions(
+                @NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder, @NotNull LookInsideStrategy lookInside,
+                @NotNull Collection<Instruction> previousSubGraphInstructions,
+                @NotNull List<Instruction> found,
+                @NotNull Map<Instruction, Collection<Instruction>> foundPredecessors,
+                @NotNull Map<Instruction, Instruction> foundDataSources
+        ) {
+            Instruction startInstruction = getStartInstruction(pseudocode, traversalOrder);
+            for (Instruction instruction : getInstructions(pseudocode, traversalOrder)) {
+                Collection<Instruction> previousInstructions = getPreviousInstruction(instruction, traversalOrder);
+                if (instruction == startInstruction && !previousSubGraphInstructions.isEmpty()) {
+                    Collection<Instruction> allPreviousInstructions = Lists.newArrayList(previousInstructions);
+                    allPreviousInstructions.addAll(previousSubGraphInstructions);
+                    foundPredecessors.put(instruction, allPreviousInstructions);
+                }
+                else {
+                    foundPredecessors.put(instruction, previousInstructions);
+                }
 
-            if (instruction == startInstruction && !previousSubGraphInstructions.isEmpty()) {
-                allPreviousInstructions = Lists.newArrayList(previousInstructions);
-                allPreviousInstructions.addAll(previousSubGraphInstructions);
-            }
-            else {
-                allPreviousInstructions = previousInstructions;
+                if (shouldLookInside(instruction, lookInside)) {
+                    Pseudocode subroutinePseudocode = ((LocalDeclarationInstruction) instruction).getBody();
+                    collectInstructions(subroutinePseudocode, traversalOrder, lookInside, previousInstructions,
+                                        found, foundPredecessors, foundDataSources);
+                    foundDataSources.put(instruction, getLastInstruction(subroutinePseudocode, traversalOrder));
+                }
+                found.add(instruction);
             }
+        }
 
-            if (shouldLookInside(instruction, lookInside)) {
-                Pseudocode subroutinePseudocode = ((LocalDeclarationInstruction) instruction).getBody();
-                collectDataFromSubgraph(subroutinePseudocode, traversalOrder, lookInside, edgesMap, instructionDataMergeStrategy,
-                                        previousInstructions,
-                                        changed, true);
-                Instruction lastInstruction = getLastInstruction(subroutinePseudocode, traversalOrder);
-                Edges<D> previousValue = edgesMap.get(instruction);
-                Edges<D> newValue = edgesMap.get(lastInstruction);
-                if (!previousValue.equals(newValue)) {
-                    changed[0] = true;
-                    edgesMap.put(instruction, newValue);
+        /**
+         * Fills the order with the nodes in the reverse postorder from the start node, followed by the unreachable nodes
+         *
+         * @return the number of the reachable nodes
+         */
+        private static int reversePostorder(int start, @NotNull List<List<Integer>> successors, @NotNull int[] order) {
+            int size = successors.size();
+            int[] postorder = new int[size];
+            int postorderSize = 0;
+
+            boolean[] visited = new boolean[size];
+            // Each frame of the depth-first search is a node and the position of the next successor to visit
+            int[] nodeStack = new int[size];
+            int[] positionStack = new int[size];
+            int depth = 0;
+
+            visited[start] = true;
+            nodeStack[0] = start;
+            positionStack[0] = 0;
+            depth++;
+            while (depth > 0) {
+                int node = nodeStack[depth - 1];
+                List<Integer> nodeSuccessors = successors.get(node);
+                int position = positionStack[depth - 1];
+                if (position < nodeSuccessors.size()) {
+                    positionStack[depth - 1]++;
+                    int successor = nodeSuccessors.get(position);
+                    if (!visited[successor]) {
+                        visited[successor] = true;
+                        nodeStack[depth] = successor;
+                        positionStack[depth] = 0;
+                        depth++;
+                    }
+                }
+                else {
+                    postorder[postorderSize++] = node;
+                    depth--;
                 }
-                continue;
             }
-            Edges<D> previousDataValue = edgesMap.get(instruction);
 
-            Collection<D> incomingEdgesData = Sets.newHashSet();
-
-            for (Instruction previousInstruction : allPreviousInstructions) {
-                Edges<D> previousData = edgesMap.get(previousInstruction);
-                if (previousData != null) {
-                    incomingEdgesData.add(previousData.out);
-                }
+            for (int i = 0; i < postorderSize; i++) {
+                order[i] = postorder[postorderSize - 1 - i];
             }
-            Edges<D> mergedData = instructionDataMergeStrategy.execute(instruction, incomingEdgesData);
-            if (!mergedData.equals(previousDataValue)) {
-                changed[0] = true;
-                edgesMap.put(instruction, mergedData);
+            int orderSize = postorderSize;
+            for (int node = 0; node < size; node++) {
+                if (!visited[node]) {
+                    order[orderSize++] = node;
+                }
             }
+            return postorderSize;
         }
     }
 
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.cfg;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.jetbrains.annotations.NotNull;
@@ -28,10 +29,7 @@ import org.jetbrains.jet.lang.psi.JetDeclaration;
 import org.jetbrains.jet.lang.psi.JetProperty;
 import org.jetbrains.jet.lang.resolve.BindingContext;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS;
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.SKIP_LOCAL_DECLARATIONS;
@@ -45,6 +43,10 @@ public class PseudocodeVariablesData {
     private final Map<Pseudocode, Set<VariableDescriptor>> declaredVariablesForDeclaration = Maps.newHashMap();
     private final Map<Pseudocode, Set<VariableDescriptor>> usedVariablesForDeclaration = Maps.newHashMap();
 
+    // Variables are numbered densely, so that their states on an edge are packed into a few bit sets
+    private final List<VariableDescriptor> variables = Lists.newArrayList();
+    private final Map<VariableDescriptor, Integer> variableNumbers = Maps.newHashMap();
+
     public PseudocodeVariablesData(@NotNull Pseudocode pseudocode, @NotNull BindingContext bindingContext) {
         this.pseudocode = pseudocode;
         this.bindingContext = bindingContext;
@@ -129,7 +131,7 @@ public class PseudocodeVariablesData {
 
         Set<VariableDescriptor> usedVariables = getUsedVariables(pseudocode);
         Set<VariableDescriptor> declaredVariables = getDeclaredVariables(pseudocode, false);
-        Map<VariableDescriptor, VariableInitState> initialMap = Collections.emptyMap();
+        Map<VariableDescriptor, VariableInitState> initialMap = new VariableInitStates(noStates(VariableInitStates.BIT_SET_COUNT));
         Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = prepareInitializersMapForStartInstruction(
                 usedVariables, declaredVariables);
 
@@ -140,10 +142,10 @@ public class PseudocodeVariablesData {
             public Edges<Map<VariableDescriptor, VariableInitState>> execute(
                     @NotNull Instruction instruction, @NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData) {
 
-                Map<VariableDescriptor, VariableInitState> enterInstructionData = mergeIncomingEdgesDataForInitializers(incomingEdgesData);
-                Map<VariableDescriptor, VariableInitState> exitInstructionData =
+                VariableInitStates enterInstructionData = new VariableInitStates(mergeBits(incomingEdgesData, VariableInitStates.BIT_SET_COUNT));
+                VariableInitStates exitInstructionData =
                         addVariableInitStateFromCurrentInstructionIfAny(instruction, enterInstructionData);
-                return Edges.create(enterInstructionData, exitInstructionData);
+                return Edges.<Map<VariableDescriptor, VariableInitState>>create(enterInstructionData, exitInstructionData);
             }
         });
 
@@ -168,47 +170,24 @@ public class PseudocodeVariablesData {
             @NotNull Collection<VariableDescriptor> usedVariables,
             @NotNull Collection<VariableDescriptor> declaredVariables) {
 
-        Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = Maps.newHashMap();
+        VariableInitStates initialMapForStartInstruction = new VariableInitStates(noStates(VariableInitStates.BIT_SET_COUNT));
         VariableInitState initializedForExternalVariable = VariableInitState.create(true);
         VariableInitState notInitializedForDeclaredVariable = VariableInitState.create(false);
 
         for (VariableDescriptor variable : usedVariables) {
             if (declaredVariables.contains(variable)) {
-                initialMapForStartInstruction.put(variable, notInitializedForDeclaredVariable);
+                initialMapForStartInstruction = initialMapForStartInstruction.with(variable, notInitializedForDeclaredVariable);
             }
             else {
-                initialMapForStartInstruction.put(variable, initializedForExternalVariable);
+                initialMapForStartInstruction = initialMapForStartInstruction.with(variable, initializedForExternalVariable);
             }
         }
         return initialMapForStartInstruction;
     }
 
     @NotNull
-    private Map<VariableDescriptor, VariableInitState> mergeIncomingEdgesDataForInitializers(
-            @NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData) {
-
-        Set<VariableDescriptor> variablesInScope = Sets.newHashSet();
-        for (Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData) {
-            variablesInScope.addAll(edgeData.keySet());
-        }
-
-        Map<VariableDescriptor, VariableInitState> enterInstructionData = Maps.newHashMap();
-        for (VariableDescriptor variable : variablesInScope) {
-            Set<VariableInitState> edgesDataForVariable = Sets.newHashSet();
-            for (Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData) {
-                VariableInitState initState = edgeData.get(variable);
-                if (initState != null) {
-                    edgesDataForVariable.add(initState);
-                }
-            }
-            enterInstructionData.put(variable, VariableInitState.create(edgesDataForVariable));
-        }
-        return enterInstructionData;
-    }
-
-    @NotNull
-    private Map<VariableDescriptor, VariableInitState> addVariableInitStateFromCurrentInstructionIfAny(
-            @NotNull Instruction instruction, @NotNull Map<VariableDescriptor, VariableInitState> enterInstructionData) {
+    private VariableInitStates addVariableInitStateFromCurrentInstructionIfAny(
+            @NotNull Instruction instruction, @NotNull VariableInitStates enterInstructionData) {
 
         if (!(instruction instanceof WriteValueInstruction) && !(instruction instanceof VariableDeclarationInstruction)) {
             return enterInstructionData;
@@ -217,31 +196,30 @@ public class PseudocodeVariablesData {
         if (variable == null) {
             return enterInstructionData;
         }
-        Map<VariableDescriptor, VariableInitState> exitInstructionData = Maps.newHashMap(enterInstructionData);
         if (instruction instanceof WriteValueInstruction) {
             VariableInitState enterInitState = enterInstructionData.get(variable);
             VariableInitState initializationAtThisElement =
                     VariableInitState.create(((WriteValueInstruction) instruction).getElement() instanceof JetProperty, enterInitState);
-            exitInstructionData.put(variable, initializationAtThisElement);
+            return enterInstructionData.with(variable, initializationAtThisElement);
         }
         else { // instruction instanceof VariableDeclarationInstruction
             VariableInitState enterInitState = enterInstructionData.get(variable);
             if (enterInitState == null || !enterInitState.isInitialized || !enterInitState.isDeclared) {
                 boolean isInitialized = enterInitState != null && enterInitState.isInitialized;
                 VariableInitState variableDeclarationInfo = VariableInitState.create(isInitialized, true);
-                exitInstructionData.put(variable, variableDeclarationInfo);
+                return enterInstructionData.with(variable, variableDeclarationInfo);
             }
+            return enterInstructionData;
         }
-        return exitInstructionData;
     }
 
 // variable use
 
     @NotNull
     public Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> getVariableUseStatusData() {
-        Map<VariableDescriptor, VariableUseState> sinkInstructionData = Maps.newHashMap();
+        VariableUseStates sinkInstructionData = new VariableUseStates(noStates(VariableUseStates.BIT_SET_COUNT));
         for (VariableDescriptor usedVariable : getUsedVariables(pseudocode)) {
-            sinkInstructionData.put(usedVariable, VariableUseState.UNUSED);
+            sinkInstructionData = sinkInstructionData.with(usedVariable, VariableUseState.UNUSED);
         }
         InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>> collectVariableUseStatusStrategy =
                 new InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>>() {
@@ -251,23 +229,17 @@ public class PseudocodeVariablesData {
                             @NotNull Collection<Map<VariableDescriptor, VariableUseState>> incomingEdgesData
                     ) {
 
-                        Map<VariableDescriptor, VariableUseState> enterResult = Maps.newHashMap();
-                        for (Map<VariableDescriptor, VariableUseState> edgeData : incomingEdgesData) {
-                            for (Map.Entry<VariableDescriptor, VariableUseState> entry : edgeData.entrySet()) {
-                                VariableDescriptor variableDescriptor = entry.getKey();
-                                VariableUseState variableUseState = entry.getValue();
-                                enterResult.put(variableDescriptor, variableUseState.merge(enterResult.get(variableDescriptor)));
-                            }
-                        }
+                        VariableUseStates enterResult =
+                                new VariableUseStates(mergeBits(incomingEdgesData, VariableUseStates.BIT_SET_COUNT));
                         VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true,
                                                                                                               bindingContext);
                         if (variableDescriptor == null ||
                             (!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))) {
-                            return Edges.create(enterResult, enterResult);
+                            return Edges.<Map<VariableDescriptor, VariableUseState>>create(enterResult, enterResult);
                         }
-                        Map<VariableDescriptor, VariableUseState> exitResult = Maps.newHashMap(enterResult);
+                        VariableUseStates exitResult;
                         if (instruction instanceof ReadValueInstruction) {
-                            exitResult.put(variableDescriptor, VariableUseState.LAST_READ);
+                            exitResult = enterResult.with(variableDescriptor, VariableUseState.LAST_READ);
                         }
                         else { //instruction instanceof WriteValueInstruction
                             VariableUseState variableUseState = enterResult.get(variableDescriptor);
@@ -277,21 +249,191 @@ public class PseudocodeVariablesData {
                             switch (variableUseState) {
                                 case UNUSED:
                                 case ONLY_WRITTEN_NEVER_READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.ONLY_WRITTEN_NEVER_READ);
+                                    exitResult = enterResult.with(variableDescriptor, VariableUseState.ONLY_WRITTEN_NEVER_READ);
                                     break;
-                                case LAST_WRITTEN:
-                                case LAST_READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.LAST_WRITTEN);
+                                default: // LAST_WRITTEN, LAST_READ
+                                    exitResult = enterResult.with(variableDescriptor, VariableUseState.LAST_WRITTEN);
                             }
                         }
-                        return Edges.create(enterResult, exitResult);
+                        return Edges.<Map<VariableDescriptor, VariableUseState>>create(enterResult, exitResult);
                     }
                 };
         return PseudocodeTraverser.collectData(pseudocode, BACKWARD, ANALYSE_LOCAL_DECLARATIONS,
-                                               Collections.<VariableDescriptor, VariableUseState>emptyMap(),
+                                               new VariableUseStates(noStates(VariableUseStates.BIT_SET_COUNT)),
                                                sinkInstructionData, collectVariableUseStatusStrategy);
     }
 
+    private int getVariableNumber(@NotNull VariableDescriptor variable) {
+        Integer number = variableNumbers.get(variable);
+        if (number == null) {
+            number = variables.size();
+            variables.add(variable);
+            variableNumbers.put(variable, number);
+        }
+        return number;
+    }
+
+    @NotNull
+    private static BitSet[] noStates(int bitSetCount) {
+        BitSet[] bits = new BitSet[bitSetCount];
+        for (int i = 0; i < bitSetCount; i++) {
+            bits[i] = new BitSet();
+        }
+        return bits;
+    }
+
+    @NotNull
+    private static BitSet[] mergeBits(@NotNull Collection<? extends Map<VariableDescriptor, ?>> incomingEdgesData, int bitSetCount) {
+        if (incomingEdgesData.size() == 1) {
+            // The bit sets are shared, as they are never modified
+            return ((PackedVariableStates<?>) incomingEdgesData.iterator().next()).bits;
+        }
+        BitSet[] bits = noStates(bitSetCount);
+        for (Map<VariableDescriptor, ?> edgeData : incomingEdgesData) {
+            BitSet[] edgeBits = ((PackedVariableStates<?>) edgeData).bits;
+            for (int i = 0; i < bitSetCount; i++) {
+                bits[i].or(edgeBits[i]);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * States of the variables on an edge, as bit sets indexed by the numbers of the variables. The first bit set tells
+     * which variables have a state, the others encode the states so that merging the data of several edges is a union.
+     * <p/>
+     * The bit sets are never modified once the states are created.
+     */
+    private abstract class PackedVariableStates<S> extends AbstractMap<VariableDescriptor, S> {
+        protected final BitSet[] bits;
+
+        protected PackedVariableStates(@NotNull BitSet[] bits) {
+            this.bits = bits;
+        }
+
+        @NotNull
+        protected abstract S decode(int number);
+
+        @NotNull
+        protected BitSet[] copyBitsWithState(@NotNull VariableDescriptor variable, int encodedState) {
+            int number = getVariableNumber(variable);
+            BitSet[] newBits = new BitSet[bits.length];
+            for (int i = 0; i < bits.length; i++) {
+                newBits[i] = (BitSet) bits[i].clone();
+                newBits[i].set(number, i == 0 || (encodedState & (1 << (i - 1))) != 0);
+            }
+            return newBits;
+        }
+
+        @Override
+        public S get(Object key) {
+            Integer number = variableNumbers.get(key);
+            if (number == null || !bits[0].get(number)) return null;
+            return decode(number);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            Integer number = variableNumbers.get(key);
+            return number != null && bits[0].get(number);
+        }
+
+        @NotNull
+        @Override
+        public Set<Entry<VariableDescriptor, S>> entrySet() {
+            return new AbstractSet<Entry<VariableDescriptor, S>>() {
+                @NotNull
+                @Override
+                public Iterator<Entry<VariableDescriptor, S>> iterator() {
+                    return new Iterator<Entry<VariableDescriptor, S>>() {
+                        private int number = bits[0].nextSetBit(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return number >= 0;
+                        }
+
+                        @Override
+                        public Entry<VariableDescriptor, S> next() {
+                            if (number < 0) throw new NoSuchElementException();
+                            Entry<VariableDescriptor, S> entry = new SimpleImmutableEntry<VariableDescriptor, S>(variables.get(number), decode(number));
+                            number = bits[0].nextSetBit(number + 1);
+                            return entry;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return bits[0].cardinality();
+                }
+            };
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o != null && o.getClass() == getClass()) {
+                return Arrays.equals(bits, ((PackedVariableStates) o).bits);
+            }
+            return super.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode();
+        }
+    }
+
+    private class VariableInitStates extends PackedVariableStates<VariableInitState> {
+        // Which variables have a state, which are not initialized, which are not declared
+        private static final int BIT_SET_COUNT = 3;
+
+        private VariableInitStates(@NotNull BitSet[] bits) {
+            super(bits);
+        }
+
+        @NotNull
+        private VariableInitStates with(@NotNull VariableDescriptor variable, @NotNull VariableInitState state) {
+            return new VariableInitStates(copyBitsWithState(variable, (state.isInitialized ? 0 : 1) | (state.isDeclared ? 0 : 2)));
+        }
+
+        @NotNull
+        @Override
+        protected VariableInitState decode(int number) {
+            return VariableInitState.create(!bits[1].get(number), !bits[2].get(number));
+        }
+    }
+
+    private class VariableUseStates extends PackedVariableStates<VariableUseState> {
+        // Which variables have a state, and which have a state at least as important as 1, 2 and 3
+        private static final int BIT_SET_COUNT = 4;
+
+        private VariableUseStates(@NotNull BitSet[] bits) {
+            super(bits);
+        }
+
+        @NotNull
+        private VariableUseStates with(@NotNull VariableDescriptor variable, @NotNull VariableUseState state) {
+            // 1 -> 001, 2 -> 011, 3 -> 111
+            return new VariableUseStates(copyBitsWithState(variable, (1 << state.importance) - 1));
+        }
+
+        @NotNull
+        @Override
+        protected VariableUseState decode(int number) {
+            if (bits[3].get(number)) return VariableUseState.LAST_READ;
+            if (bits[2].get(number)) return VariableUseState.LAST_WRITTEN;
+            if (bits[1].get(number)) return VariableUseState.ONLY_WRITTEN_NEVER_READ;
+            return VariableUseState.UNUSED;
+        }
+    }
+
     public static class VariableInitState {
         public final boolean isInitialized;
         public final boolean isDeclared;
@@ -323,20 +465,6 @@ public class PseudocodeVariablesData {
         private static VariableInitState create(boolean isDeclaredHere, @Nullable VariableInitState mergedEdgesData) {
             return create(true, isDeclaredHere || (mergedEdgesData != null && mergedEdgesData.isDeclared));
         }
-
-        private static VariableInitState create(@NotNull Set<VariableInitState> edgesData) {
-            boolean isInitialized = true;
-            boolean isDeclared = true;
-            for (VariableInitState edgeData : edgesData) {
-                if (!edgeData.isInitialized) {
-                    isInitialized = false;
-                }
-                if (!edgeData.isDeclared) {
-                    isDeclared = false;
-                }
-            }
-            return create(isInitialized, isDeclared);
-        }
     }
 
     public static enum VariableUseState {
@@ -351,11 +479,6 @@ public class PseudocodeVariablesData {
             this.importance = importance;
         }
 
-        private VariableUseState merge(@Nullable VariableUseState variableUseState) {
-            if (variableUseState == null || importance > variableUseState.importance) return this;
-            return variableUseState;
-        }
-
         public static boolean isUsed(@Nullable VariableUseState variableUseState) {
             return variableUseState != null && variableUseState != UNUSED;
         }
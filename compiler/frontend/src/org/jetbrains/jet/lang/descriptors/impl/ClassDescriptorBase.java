@@ -22,6 +22,7 @@ import org.jetbrains.jet.lang.descriptors.DeclarationDescriptorVisitor;
 import org.jetbrains.jet.lang.descriptors.TypeParameterDescriptor;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
 import org.jetbrains.jet.lang.resolve.scopes.SubstitutingScope;
+import org.jetbrains.jet.lang.resolve.scopes.SubstitutingScopeCache;
 import org.jetbrains.jet.lang.types.*;
 
 import java.util.List;
@@ -31,6 +32,8 @@ public abstract class ClassDescriptorBase implements ClassDescriptor {
 
     protected JetType defaultType;
 
+    private final SubstitutingScopeCache memberScopes = new SubstitutingScopeCache();
+
     protected abstract JetScope getScopeForMemberLookup();
 
     @NotNull
@@ -41,6 +44,9 @@ public abstract class ClassDescriptorBase implements ClassDescriptor {
                                                                                      + " for " + getTypeConstructor() + " " + getTypeConstructor().getParameters();
         if (typeArguments.isEmpty()) return getScopeForMemberLookup();
 
+        SubstitutingScope cachedScope = memberScopes.get(getScopeForMemberLookup(), typeArguments);
+        if (cachedScope != null) return cachedScope;
+
         List<TypeParameterDescriptor> typeParameters = getTypeConstructor().getParameters();
         Map<TypeConstructor, TypeProjection> substitutionContext = SubstitutionUtils.buildSubstitutionContext(typeParameters, typeArguments);
 
@@ -48,7 +54,7 @@ public abstract class ClassDescriptorBase implements ClassDescriptor {
         // all the types are written explicitly in the code already, they can not get infinite.
         // One exception is *-projections, but they need to be handled separately anyways.
         TypeSubstitutor substitutor = TypeSubstitutor.createUnsafe(substitutionContext);
-        return new SubstitutingScope(getScopeForMemberLookup(), substitutor);
+        return memberScopes.put(typeArguments, new SubstitutingScope(getScopeForMemberLookup(), substitutor));
     }
 
     @NotNull
@@ -24,6 +24,7 @@ import org.jetbrains.jet.lang.resolve.DescriptorResolver;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
 import org.jetbrains.jet.lang.resolve.scopes.SubstitutingScope;
+import org.jetbrains.jet.lang.resolve.scopes.SubstitutingScopeCache;
 import org.jetbrains.jet.lang.types.*;
 
 import java.util.Collection;
@@ -42,6 +43,7 @@ public class ClassDescriptorImpl extends DeclarationDescriptorNonRootImpl implem
     private ClassDescriptor classObjectDescriptor;
     private final ClassKind kind;
     private boolean isInner;
+    private final SubstitutingScopeCache memberScopes = new SubstitutingScopeCache();
 
     public ClassDescriptorImpl(
         @NotNull DeclarationDescriptor containingDeclaration,
@@ -102,9 +104,13 @@ public class ClassDescriptorImpl extends DeclarationDescriptorNonRootImpl implem
         if (typeConstructor.getParameters().isEmpty()) {
             return  memberDeclarations;
         }
+        SubstitutingScope cachedScope = memberScopes.get(memberDeclarations, typeArguments);
+        if (cachedScope != null) {
+            return cachedScope;
+        }
         Map<TypeConstructor, TypeProjection> substitutionContext = SubstitutionUtils
                 .buildSubstitutionContext(typeConstructor.getParameters(), typeArguments);
-        return new SubstitutingScope(memberDeclarations, TypeSubstitutor.create(substitutionContext));
+        return memberScopes.put(typeArguments, new SubstitutingScope(memberDeclarations, TypeSubstitutor.create(substitutionContext)));
     }
 
     @NotNull
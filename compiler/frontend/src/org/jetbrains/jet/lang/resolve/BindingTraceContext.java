@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import org.jetbrains.annotations.NotNull;
@@ -71,6 +72,14 @@ public class BindingTraceContext implements BindingTrace {
         diagnostics.clear();
     }
 
+    /**
+     * Forgets everything recorded about the keys satisfying the predicate, in all slices.
+     * Meant for long-lived traces (e.g. in REPL) to drop the information about code which won't be analyzed again.
+     */
+    public void removeRecords(@NotNull Predicate<Object> keyPredicate) {
+        map.removeKeys(keyPredicate);
+    }
+
     @Override
     public BindingContext getBindingContext() {
         return bindingContext;
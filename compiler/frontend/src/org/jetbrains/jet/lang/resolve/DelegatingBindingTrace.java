@@ -29,15 +29,22 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Keeps the records made through it on top of the parent context, most of these traces (e.g. the ones for the candidates of
+ * a call) are thrown away after a few records, so the maps are only created when needed.
+ */
 public class DelegatingBindingTrace implements BindingTrace {
     private final BindingContext parentContext;
-    private final MutableSlicedMap map = SlicedMapImpl.create();
-    private final List<Diagnostic> diagnostics = Lists.newArrayList();
+    // null until something is recorded
+    private MutableSlicedMap map = null;
+    private List<Diagnostic> diagnostics = null;
     private final String name;
 
     private final BindingContext bindingContext = new BindingContext() {
         @Override
         public Collection<Diagnostic> getDiagnostics() {
+            if (diagnostics == null) return parentContext.getDiagnostics();
+
             ArrayList<Diagnostic> mergedDiagnostics = new ArrayList<Diagnostic>(diagnostics);
             mergedDiagnostics.addAll(parentContext.getDiagnostics());
             return mergedDiagnostics;
@@ -60,7 +67,10 @@ public class DelegatingBindingTrace implements BindingTrace {
         @Override
         public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
             ImmutableMap<K, V> parentContents = parentContext.getSliceContents(slice);
+            if (map == null) return parentContents;
             ImmutableMap<K, V> currentContents = map.getSliceContents(slice);
+            if (currentContents.isEmpty()) return parentContents;
+            if (parentContents.isEmpty()) return currentContents;
             return ImmutableMap.<K, V>builder().putAll(parentContents).putAll(currentContents).build();
         }
     };
@@ -82,6 +92,9 @@ public class DelegatingBindingTrace implements BindingTrace {
 
     @Override
     public <K, V> void record(WritableSlice<K, V> slice, K key, V value) {
+        if (map == null) {
+            map = SlicedMapImpl.create();
+        }
         map.put(slice, key, value);
     }
 
@@ -92,6 +105,8 @@ public class DelegatingBindingTrace implements BindingTrace {
 
     @Override
     public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        if (map == null) return parentContext.get(slice, key);
+
         V value = map.get(slice, key);
         if (slice instanceof Slices.SetSlice) {
             assert value != null;
@@ -107,8 +122,9 @@ public class DelegatingBindingTrace implements BindingTrace {
     @NotNull
     @Override
     public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
-        Collection<K> keys = map.getKeys(slice);
         Collection<K> fromParent = parentContext.getKeys(slice);
+        if (map == null) return fromParent;
+        Collection<K> keys = map.getKeys(slice);
         if (keys.isEmpty()) return fromParent;
         if (fromParent.isEmpty()) return keys;
 
@@ -122,11 +138,46 @@ public class DelegatingBindingTrace implements BindingTrace {
     }
 
     public void moveAllMyDataTo(@NotNull BindingTrace trace) {
-        addAllMyDataTo(trace, null, true);
+        moveAllMyDataTo(trace, null, true);
+    }
+
+    public void moveAllMyDataTo(@NotNull BindingTrace trace, @Nullable TraceEntryFilter filter, boolean commitDiagnostics) {
+        if (filter == null && commitDiagnostics && canTakeOverData(trace)) {
+            DelegatingBindingTrace delegatingTrace = (DelegatingBindingTrace) trace;
+            if (delegatingTrace.map == null && delegatingTrace.diagnostics == null) {
+                // Nothing to merge with, the data is simply handed over
+                delegatingTrace.map = map;
+                delegatingTrace.diagnostics = diagnostics;
+                map = null;
+                diagnostics = null;
+                return;
+            }
+        }
+        addAllMyDataTo(trace, filter, commitDiagnostics);
         clear();
     }
 
+    // Subclasses may do more than store the data recorded or reported to them
+    private static boolean canTakeOverData(@NotNull BindingTrace trace) {
+        Class<? extends BindingTrace> traceClass = trace.getClass();
+        return traceClass == DelegatingBindingTrace.class ||
+               traceClass == TemporaryBindingTrace.class ||
+               traceClass == ChainedTemporaryBindingTrace.class;
+    }
+
     public void addAllMyDataTo(@NotNull BindingTrace trace, @Nullable TraceEntryFilter filter, boolean commitDiagnostics) {
+        if (map != null) {
+            addAllMyRecordsTo(trace, filter);
+        }
+
+        if (!commitDiagnostics || diagnostics == null) return;
+
+        for (Diagnostic diagnostic : diagnostics) {
+            trace.report(diagnostic);
+        }
+    }
+
+    private void addAllMyRecordsTo(@NotNull BindingTrace trace, @Nullable TraceEntryFilter filter) {
         for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
             SlicedMapKey slicedMapKey = entry.getKey();
 
@@ -139,21 +190,18 @@ public class DelegatingBindingTrace implements BindingTrace {
                 trace.record(slice, key, value);
             }
         }
-
-        if (!commitDiagnostics) return;
-
-        for (Diagnostic diagnostic : diagnostics) {
-            trace.report(diagnostic);
-        }
     }
 
     public void clear() {
-        map.clear();
-        diagnostics.clear();
+        map = null;
+        diagnostics = null;
     }
 
     @Override
     public void report(@NotNull Diagnostic diagnostic) {
+        if (diagnostics == null) {
+            diagnostics = Lists.newArrayList();
+        }
         diagnostics.add(diagnostic);
     }
 
@@ -34,6 +34,7 @@ import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
 import org.jetbrains.jet.lang.resolve.scopes.WritableScope;
 import org.jetbrains.jet.lang.resolve.scopes.WritableScopeImpl;
+import org.jetbrains.jet.lang.types.checker.SubtypingCache;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 
 import javax.inject.Inject;
@@ -121,16 +122,26 @@ public class TopDownAnalyzer {
 //        context.enableDebugOutput();
         context.debug("Enter");
 
-        typeHierarchyResolver.process(outerScope, owner, declarations);
-        declarationResolver.process(outerScope);
-        overrideResolver.process();
+        // Subtyping can't be cached until the supertypes and the bounds of the declarations being processed are resolved.
+        // Local classes are processed while the bodies of the outer declarations are, so the outer cache is suspended
+        SubtypingCache outerSubtypingCache = SubtypingCache.setCurrent(null);
+        try {
+            typeHierarchyResolver.process(outerScope, owner, declarations);
+            declarationResolver.process(outerScope);
 
-        lockScopes();
+            SubtypingCache.setCurrent(outerSubtypingCache != null ? outerSubtypingCache : new SubtypingCache());
+            overrideResolver.process();
 
-        overloadResolver.process();
+            lockScopes();
 
-        if (!topDownAnalysisParameters.isAnalyzingBootstrapLibrary()) {
-            bodyResolver.resolveBodies();
+            overloadResolver.process();
+
+            if (!topDownAnalysisParameters.isAnalyzingBootstrapLibrary()) {
+                bodyResolver.resolveBodies();
+            }
+        }
+        finally {
+            SubtypingCache.setCurrent(outerSubtypingCache);
         }
 
         context.debug("Exit");
@@ -17,6 +17,7 @@
 package org.jetbrains.jet.lang.resolve.calls;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
@@ -39,6 +40,7 @@ import org.jetbrains.jet.lang.resolve.scopes.JetScope;
 import org.jetbrains.jet.lang.resolve.scopes.receivers.ReceiverValue;
 import org.jetbrains.jet.lang.types.ErrorUtils;
 import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeConstructor;
 import org.jetbrains.jet.lang.types.expressions.ExpressionTypingServices;
 import org.jetbrains.jet.lang.types.expressions.ExpressionTypingUtils;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
@@ -498,25 +500,21 @@ public class CallResolver {
             @NotNull CallTransformer<D, F> callTransformer,
             @NotNull BindingTrace traceForResolutionCache) {
 
+        // The failed candidates don't matter if some other one succeeds, so the ones which can only fail because of the type
+        // of their receiver are resolved only if none does, together with all the others in their order, to report the same errors
+        Map<TypeConstructor, Set<TypeConstructor>> supertypeConstructors = Maps.newHashMap();
+        boolean someCandidatesSkipped = false;
         for (ResolutionCandidate<D> resolutionCandidate : task.getCandidates()) {
-            TemporaryBindingTrace candidateTrace = TemporaryBindingTrace.create(
-                    task.trace, "trace to resolve candidate");
-            Collection<CallCandidateResolutionContext<D>> contexts = callTransformer.createCallContexts(resolutionCandidate, task, candidateTrace);
-            for (CallCandidateResolutionContext<D> context : contexts) {
-
-                candidateResolver.performResolutionForCandidateCall(context, task);
-
-                /* important for 'variable as function case': temporary bind reference to descriptor (will be rewritten)
-                to have a binding to variable while 'invoke' call resolve */
-                task.tracing.bindReference(context.candidateCall.getTrace(), context.candidateCall);
-
-                Collection<ResolvedCallWithTrace<F>> calls = callTransformer.transformCall(context, this, task);
-
-                for (ResolvedCallWithTrace<F> call : calls) {
-                    task.tracing.bindReference(call.getTrace(), call);
-                    task.tracing.bindResolvedCall(call.getTrace(), call);
-                    task.getResolvedCalls().add(call);
-                }
+            if (TaskPrioritizer.hasMismatchedReceiver(resolutionCandidate, supertypeConstructors)) {
+                someCandidatesSkipped = true;
+                continue;
+            }
+            performResolutionForCandidate(task, callTransformer, resolutionCandidate);
+        }
+        if (someCandidatesSkipped && !hasSuccessfulOrIncompleteCalls(task.getResolvedCalls())) {
+            task.getResolvedCalls().clear();
+            for (ResolutionCandidate<D> resolutionCandidate : task.getCandidates()) {
+                performResolutionForCandidate(task, callTransformer, resolutionCandidate);
             }
         }
 
@@ -527,4 +525,38 @@ public class CallResolver {
         }
         return results;
     }
+
+    private <D extends CallableDescriptor, F extends D> void performResolutionForCandidate(
+            @NotNull ResolutionTask<D, F> task,
+            @NotNull CallTransformer<D, F> callTransformer,
+            @NotNull ResolutionCandidate<D> resolutionCandidate
+    ) {
+        TemporaryBindingTrace candidateTrace = TemporaryBindingTrace.create(
+                task.trace, "trace to resolve candidate");
+        Collection<CallCandidateResolutionContext<D>> contexts = callTransformer.createCallContexts(resolutionCandidate, task, candidateTrace);
+        for (CallCandidateResolutionContext<D> context : contexts) {
+
+            candidateResolver.performResolutionForCandidateCall(context, task);
+
+            /* important for 'variable as function case': temporary bind reference to descriptor (will be rewritten)
+            to have a binding to variable while 'invoke' call resolve */
+            task.tracing.bindReference(context.candidateCall.getTrace(), context.candidateCall);
+
+            Collection<ResolvedCallWithTrace<F>> calls = callTransformer.transformCall(context, this, task);
+
+            for (ResolvedCallWithTrace<F> call : calls) {
+                task.tracing.bindReference(call.getTrace(), call);
+                task.tracing.bindResolvedCall(call.getTrace(), call);
+                task.getResolvedCalls().add(call);
+            }
+        }
+    }
+
+    private static <F extends CallableDescriptor> boolean hasSuccessfulOrIncompleteCalls(@NotNull Collection<ResolvedCallWithTrace<F>> calls) {
+        for (ResolvedCallWithTrace<F> call : calls) {
+            ResolutionStatus status = call.getStatus();
+            if (status.isSuccess() || status == ResolutionStatus.INCOMPLETE_TYPE_INFERENCE) return true;
+        }
+        return false;
+    }
 }
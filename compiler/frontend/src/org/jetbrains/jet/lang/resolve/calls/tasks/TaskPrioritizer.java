@@ -17,6 +17,7 @@
 package org.jetbrains.jet.lang.resolve.calls.tasks;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -33,12 +34,13 @@ import org.jetbrains.jet.lang.resolve.scopes.JetScopeUtils;
 import org.jetbrains.jet.lang.resolve.scopes.receivers.ExpressionReceiver;
 import org.jetbrains.jet.lang.resolve.scopes.receivers.ReceiverValue;
 import org.jetbrains.jet.lang.types.ErrorUtils;
+import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.jet.lang.types.NamespaceType;
+import org.jetbrains.jet.lang.types.TypeConstructor;
 import org.jetbrains.jet.lang.types.checker.JetTypeChecker;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 import static org.jetbrains.jet.lang.resolve.DescriptorUtils.isClassObject;
 import static org.jetbrains.jet.lang.resolve.scopes.receivers.ReceiverValue.NO_RECEIVER;
@@ -250,6 +252,50 @@ public class TaskPrioritizer {
         return false;
     }
 
+    /**
+     * Tells if the type of the receiver argument of the candidate can't be a subtype of the type of its receiver parameter,
+     * because none of its supertypes has the constructor of the latter, so the resolution of the candidate can only fail.
+     * Only the functions with no type parameters are checked, so that the status of their resolution is never affected by
+     * type inference.
+     *
+     * @param supertypeConstructors the constructors of the supertypes of the receiver types already met, to be filled
+     */
+    public static boolean hasMismatchedReceiver(
+            @NotNull ResolutionCandidate<?> candidate,
+            @NotNull Map<TypeConstructor, Set<TypeConstructor>> supertypeConstructors
+    ) {
+        CallableDescriptor descriptor = candidate.getDescriptor();
+        if (!(descriptor instanceof FunctionDescriptor) || ErrorUtils.isError(descriptor)) return false;
+        if (!descriptor.getTypeParameters().isEmpty()) return false;
+
+        ReceiverParameterDescriptor receiverParameter = descriptor.getReceiverParameter();
+        ReceiverValue receiverArgument = candidate.getReceiverArgument();
+        if (receiverParameter == null || !receiverArgument.exists()) return false;
+
+        JetType parameterType = receiverParameter.getType();
+        JetType argumentType = receiverArgument.getType();
+        if (ErrorUtils.isErrorType(parameterType) || ErrorUtils.isErrorType(argumentType)) return false;
+        if (KotlinBuiltIns.getInstance().isNothingOrNullableNothing(argumentType)) return false;
+        // Type parameters of the containing declarations are checked against their bounds
+        if (!(parameterType.getConstructor().getDeclarationDescriptor() instanceof ClassDescriptor)) return false;
+
+        TypeConstructor argumentConstructor = argumentType.getConstructor();
+        Set<TypeConstructor> constructors = supertypeConstructors.get(argumentConstructor);
+        if (constructors == null) {
+            constructors = Sets.newHashSet();
+            collectSupertypeConstructors(argumentConstructor, constructors);
+            supertypeConstructors.put(argumentConstructor, constructors);
+        }
+        return !constructors.contains(parameterType.getConstructor());
+    }
+
+    private static void collectSupertypeConstructors(@NotNull TypeConstructor constructor, @NotNull Set<TypeConstructor> result) {
+        if (!result.add(constructor)) return;
+        for (JetType supertype : constructor.getSupertypes()) {
+            collectSupertypeConstructors(supertype.getConstructor(), result);
+        }
+    }
+
     private TaskPrioritizer() {
     }
 }
@@ -35,6 +35,8 @@ import org.jetbrains.jet.lang.resolve.lazy.declarations.DeclarationProviderFacto
 import org.jetbrains.jet.lang.resolve.lazy.declarations.PackageMemberDeclarationProvider;
 import org.jetbrains.jet.lang.resolve.lazy.descriptors.LazyClassDescriptor;
 import org.jetbrains.jet.lang.resolve.lazy.descriptors.LazyPackageDescriptor;
+import org.jetbrains.jet.lang.resolve.lazy.storage.LockBasedStorageManager;
+import org.jetbrains.jet.lang.resolve.lazy.storage.LockPerKeyStorageManager;
 import org.jetbrains.jet.lang.resolve.lazy.storage.StorageManager;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.FqNameUnsafe;
@@ -54,6 +56,9 @@ public class ResolveSession implements KotlinCodeAnalyzer {
         }
     };
 
+    // When set to "true", the lazy values of the sessions are computed under separate locks, see LockPerKeyStorageManager
+    public static final String LOCK_PER_KEY_PROPERTY = "kotlin.lazy.resolve.lock.per.key";
+
     private final StorageManager storageManager;
 
     private final ModuleDescriptor module;
@@ -120,6 +125,14 @@ public class ResolveSession implements KotlinCodeAnalyzer {
         this.declarationProviderFactory = declarationProviderFactory;
     }
 
+    @NotNull
+    public static StorageManager createStorageManager() {
+        if ("true".equals(System.getProperty(LOCK_PER_KEY_PROPERTY))) {
+            return new LockPerKeyStorageManager();
+        }
+        return new LockBasedStorageManager();
+    }
+
     @NotNull
     public InjectorForLazyResolve getInjector() {
         return injector;
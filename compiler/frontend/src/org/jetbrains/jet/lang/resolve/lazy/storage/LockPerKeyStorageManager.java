@@ -0,0 +1,322 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.lazy.storage;
+
+import com.intellij.openapi.util.Computable;
+import com.intellij.util.Consumer;
+import com.intellij.util.Function;
+import com.intellij.util.containers.ConcurrentWeakValueHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.BindingTrace;
+import org.jetbrains.jet.utils.Nulls;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A storage manager that guards every lazy value and every key of a memoized function with its own lock,
+ * so that independent computations may run on different threads at the same time.
+ *
+ * A computation may re-enter itself on the same thread, just like with {@link LockBasedStorageManager}. Computations
+ * on different threads that wait for each other in a cycle are detected and reported by {@link CycleDetectedException}
+ * instead of hanging.
+ *
+ * NOTE: unlike {@link LockBasedStorageManager}, this manager does not serialize computations, so the code performing them
+ *       must not rely on a global lock to protect other shared state
+ */
+public class LockPerKeyStorageManager implements StorageManager {
+    private static final long CYCLE_CHECK_INTERVAL_MS = 10;
+
+    private final ConcurrentMap<Thread, ComputationLock> waitingThreads = new ConcurrentHashMap<Thread, ComputationLock>();
+
+    private final ReadWriteLock traceLock = new ReentrantReadWriteLock();
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(
+            @NotNull Function<K, V> compute, @NotNull ReferenceKind valuesReferenceKind
+    ) {
+        ConcurrentMap<K, Object> map = createConcurrentMap(valuesReferenceKind);
+        return new MapBasedMemoizedFunctionToNotNull<K, V>(this, map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(
+            @NotNull Function<K, V> compute, @NotNull ReferenceKind valuesReferenceKind
+    ) {
+        ConcurrentMap<K, Object> map = createConcurrentMap(valuesReferenceKind);
+        return new MapBasedMemoizedFunction<K, V>(this, map, compute);
+    }
+
+    private static <K, V> ConcurrentMap<K, V> createConcurrentMap(ReferenceKind referenceKind) {
+        return (referenceKind == ReferenceKind.WEAK) ? new ConcurrentWeakValueHashMap<K, V>() : new ConcurrentHashMap<K, V>();
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValue(@NotNull Computable<T> computable) {
+        return new LockPerValueNotNullLazyValue<T>(this, computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValueWithPostCompute(@NotNull Computable<T> computable, @NotNull final Consumer<T> postCompute) {
+        return new LockPerValueNotNullLazyValue<T>(this, computable) {
+            @Override
+            protected void postCompute(@NotNull T value) {
+                postCompute.consume(value);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValue(@NotNull Computable<T> computable) {
+        return new LockPerValueLazyValue<T>(this, computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValueWithPostCompute(
+            @NotNull Computable<T> computable, @NotNull final Consumer<T> postCompute
+    ) {
+        return new LockPerValueLazyValue<T>(this, computable) {
+            @Override
+            protected void postCompute(@Nullable T value) {
+                postCompute.consume(value);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public BindingTrace createSafeTrace(@NotNull BindingTrace originalTrace) {
+        // No other locks are acquired inside the trace operations, so a single lock for all of them can not cause a deadlock.
+        // The trace itself is not thread-safe, so only the reads may run concurrently
+        return new ReadWriteLockProtectedTrace(traceLock, originalTrace);
+    }
+
+    private void acquire(@NotNull ComputationLock lock) {
+        // Succeeds at once when this thread already holds the lock, so a computation may re-enter itself
+        if (lock.tryLock()) return;
+
+        Thread currentThread = Thread.currentThread();
+        boolean interrupted = false;
+        waitingThreads.put(currentThread, lock);
+        try {
+            while (true) {
+                try {
+                    if (lock.tryLock(CYCLE_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)) return;
+                }
+                catch (InterruptedException e) {
+                    // Computations are not interruptible, just like the ones guarded by a monitor
+                    interrupted = true;
+                }
+                checkForCycle(currentThread, lock);
+            }
+        }
+        finally {
+            waitingThreads.remove(currentThread);
+            if (interrupted) {
+                currentThread.interrupt();
+            }
+        }
+    }
+
+    private void checkForCycle(@NotNull Thread currentThread, @NotNull ComputationLock awaitedLock) {
+        ComputationLock lock = awaitedLock;
+        // Every thread waits for at most one lock, so a chain longer than the number of waiting threads can not be a simple path
+        for (int steps = waitingThreads.size(); steps >= 0; steps--) {
+            Thread owner = lock.getOwnerThread();
+            if (owner == null) return;
+            if (owner == currentThread) {
+                throw new CycleDetectedException("Computation of " + awaitedLock.getComputation() +
+                                                 " waits for itself through other threads");
+            }
+            lock = waitingThreads.get(owner);
+            if (lock == null) return;
+        }
+    }
+
+    public static class CycleDetectedException extends IllegalStateException {
+        public CycleDetectedException(String message) {
+            super(message);
+        }
+    }
+
+    private static class ComputationLock extends ReentrantLock {
+        private final Object computation;
+
+        public ComputationLock(@NotNull Object computation) {
+            this.computation = computation;
+        }
+
+        @NotNull
+        public Object getComputation() {
+            return computation;
+        }
+
+        @Nullable
+        public Thread getOwnerThread() {
+            return getOwner();
+        }
+    }
+
+    private static class LockPerValueLazyValue<T> implements NullableLazyValue<T> {
+        private final LockPerKeyStorageManager storageManager;
+        private final ComputationLock lock;
+        private final Computable<T> computable;
+
+        @Nullable
+        private volatile Object value = null;
+
+        public LockPerValueLazyValue(@NotNull LockPerKeyStorageManager storageManager, @NotNull Computable<T> computable) {
+            this.storageManager = storageManager;
+            this.lock = new ComputationLock(computable);
+            this.computable = computable;
+        }
+
+        @Override
+        public T compute() {
+            Object _value = value;
+            if (_value != null) return Nulls.unescape(_value);
+
+            storageManager.acquire(lock);
+            try {
+                _value = value;
+                if (_value != null) return Nulls.unescape(_value);
+
+                T typedValue = computable.compute();
+                value = Nulls.escape(typedValue);
+
+                postCompute(typedValue);
+
+                return typedValue;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        protected void postCompute(T value) {
+            // Doing something in post-compute helps prevent infinite recursion
+        }
+    }
+
+    private static class LockPerValueNotNullLazyValue<T> extends LockPerValueLazyValue<T> implements NotNullLazyValue<T> {
+
+        public LockPerValueNotNullLazyValue(@NotNull LockPerKeyStorageManager storageManager, @NotNull Computable<T> computable) {
+            super(storageManager, computable);
+        }
+
+        @Override
+        @NotNull
+        public T compute() {
+            T result = super.compute();
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+
+    private static class MapBasedMemoizedFunction<K, V> implements MemoizedFunctionToNullable<K, V> {
+        private final LockPerKeyStorageManager storageManager;
+        private final ConcurrentMap<K, Object> cache;
+        private final Function<K, V> compute;
+
+        // Locks are removed once the values for their keys are stored. After a failed computation the lock stays, so that
+        // the threads retrying it are still serialized
+        private final ConcurrentMap<K, ComputationLock> locks = new ConcurrentHashMap<K, ComputationLock>();
+
+        public MapBasedMemoizedFunction(
+                @NotNull LockPerKeyStorageManager storageManager,
+                @NotNull ConcurrentMap<K, Object> map,
+                @NotNull Function<K, V> compute
+        ) {
+            this.storageManager = storageManager;
+            this.cache = map;
+            this.compute = compute;
+        }
+
+        @Override
+        @Nullable
+        public V fun(@NotNull K input) {
+            Object value = cache.get(input);
+            if (value != null) return Nulls.unescape(value);
+
+            ComputationLock lock = locks.get(input);
+            if (lock == null) {
+                ComputationLock newLock = new ComputationLock(input);
+                lock = locks.putIfAbsent(input, newLock);
+                if (lock == null) {
+                    lock = newLock;
+                }
+            }
+
+            storageManager.acquire(lock);
+            boolean stored = false;
+            try {
+                value = cache.get(input);
+                if (value != null) {
+                    stored = true;
+                    return Nulls.unescape(value);
+                }
+
+                V typedValue = compute.fun(input);
+
+                // The computation may have re-entered this function for the same key and stored the value already;
+                // a weakly referenced value may also have been collected and recomputed under a newer lock for the same key
+                Object oldValue = cache.putIfAbsent(input, Nulls.escape(typedValue));
+                stored = true;
+                if (oldValue != null) return Nulls.unescape(oldValue);
+
+                return typedValue;
+            }
+            finally {
+                if (stored) {
+                    // Threads still waiting for this lock will find the value in the cache
+                    locks.remove(input, lock);
+                }
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class MapBasedMemoizedFunctionToNotNull<K, V> extends MapBasedMemoizedFunction<K, V> implements MemoizedFunctionToNotNull<K, V> {
+
+        public MapBasedMemoizedFunctionToNotNull(
+                @NotNull LockPerKeyStorageManager storageManager,
+                @NotNull ConcurrentMap<K, Object> map,
+                @NotNull Function<K, V> compute
+        ) {
+            super(storageManager, map, compute);
+        }
+
+        @NotNull
+        @Override
+        public V fun(@NotNull K input) {
+            V result = super.fun(input);
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+}
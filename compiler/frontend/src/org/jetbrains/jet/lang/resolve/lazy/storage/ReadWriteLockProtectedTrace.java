@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.lazy.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.diagnostics.Diagnostic;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.BindingTrace;
+import org.jetbrains.jet.util.slicedmap.ReadOnlySlice;
+import org.jetbrains.jet.util.slicedmap.WritableSlice;
+
+import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Lets any number of threads read the trace at once, while records and reports are exclusive
+ */
+/* package */ class ReadWriteLockProtectedTrace implements BindingTrace {
+    private final Lock readLock;
+    private final Lock writeLock;
+    private final BindingTrace trace;
+
+    public ReadWriteLockProtectedTrace(@NotNull ReadWriteLock lock, @NotNull BindingTrace trace) {
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+        this.trace = trace;
+    }
+
+    @Override
+    public BindingContext getBindingContext() {
+        readLock.lock();
+        try {
+            return trace.getBindingContext();
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public <K, V> void record(WritableSlice<K, V> slice, K key, V value) {
+        writeLock.lock();
+        try {
+            trace.record(slice, key, value);
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public <K> void record(WritableSlice<K, Boolean> slice, K key) {
+        writeLock.lock();
+        try {
+            trace.record(slice, key);
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    @Nullable
+    public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        readLock.lock();
+        try {
+            return trace.get(slice, key);
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    @NotNull
+    public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+        readLock.lock();
+        try {
+            return trace.getKeys(slice);
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void report(@NotNull Diagnostic diagnostic) {
+        writeLock.lock();
+        try {
+            trace.report(diagnostic);
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -30,7 +30,7 @@ public class FqName extends FqNameBase {
         return new FqName(fqName);
     }
 
-    public static final FqName ROOT = new FqName("");
+    public static final FqName ROOT = FqNameUnsafe.ROOT.toSafe();
 
     @NotNull
     private final FqNameUnsafe fqName;
@@ -50,13 +50,6 @@ public class FqName extends FqNameBase {
         validateFqName();
     }
 
-    private FqName(@NotNull FqNameUnsafe fqName, FqName parent) {
-        this.fqName = fqName;
-        this.parent = parent;
-
-        validateFqName();
-    }
-
 
     private void validateFqName() {
         if (!isValidAfterUnsafeCheck(fqName.getFqName())) {
@@ -94,14 +87,14 @@ public class FqName extends FqNameBase {
             throw new IllegalStateException("root");
         }
 
-        parent = new FqName(fqName.parent());
+        parent = fqName.parent().toSafe();
 
         return parent;
     }
 
     @NotNull
     public FqName child(@NotNull Name name) {
-        return new FqName(fqName.child(name), this);
+        return fqName.child(name).toSafe();
     }
 
     @NotNull
@@ -121,8 +114,7 @@ public class FqName extends FqNameBase {
         fqName.walk(new FqNameUnsafe.WalkCallback() {
             @Override
             public void segment(@NotNull Name shortName, @NotNull FqNameUnsafe fqName) {
-                // TODO: do not validate
-                path.add(new FqName(fqName));
+                path.add(fqName.toSafe());
             }
         });
         return path;
@@ -144,7 +136,7 @@ public class FqName extends FqNameBase {
 
     @NotNull
     public static FqName topLevel(@NotNull Name shortName) {
-        return new FqName(FqNameUnsafe.topLevel(shortName));
+        return FqNameUnsafe.topLevel(shortName).toSafe();
     }
 
 
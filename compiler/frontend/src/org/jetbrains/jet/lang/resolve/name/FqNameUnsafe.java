@@ -17,18 +17,27 @@
 package org.jetbrains.jet.lang.resolve.name;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Like {@link FqName} but allows '<' and '>' characters in name.
+ * <p/>
+ * The names made by {@link #child(Name)}, {@link #parent()} and {@link #topLevel(Name)} are nodes of a trie rooted at
+ * {@link #ROOT}: each node points to its parent and to its interned short name, and there is a single node for each name.
+ * Names made from strings are equal to the nodes and share their parents, so the strings are split only once.
+ * A node is kept only while it is referenced: by a name equal to it, or as the parent of another node.
  */
 public class FqNameUnsafe extends FqNameBase {
 
     public static final Name ROOT_NAME = Name.special("<root>");
 
+    /*package*/ static final FqNameUnsafe ROOT = new FqNameUnsafe("", null, null);
+
     @NotNull
     private final String fqName;
 
@@ -36,6 +45,10 @@ public class FqNameUnsafe extends FqNameBase {
     private transient FqName safe;
     private transient FqNameUnsafe parent;
     private transient Name shortName;
+    // the node of the trie equal to this name
+    private transient volatile FqNameUnsafe node;
+    // children of a node, created on demand, weakly referenced
+    private transient volatile ConcurrentMap<Name, FqNameUnsafe> children;
 
     FqNameUnsafe(@NotNull String fqName, @NotNull FqName safe) {
         this.fqName = fqName;
@@ -50,10 +63,12 @@ public class FqNameUnsafe extends FqNameBase {
         validateFqName();
     }
 
-    private FqNameUnsafe(@NotNull String fqName, FqNameUnsafe parent, Name shortName) {
+    // Creates a node of the trie
+    private FqNameUnsafe(@NotNull String fqName, @Nullable FqNameUnsafe parent, @Nullable Name shortName) {
         this.fqName = fqName;
         this.parent = parent;
         this.shortName = shortName;
+        this.node = this;
 
         validateFqName();
     }
@@ -70,16 +85,52 @@ public class FqNameUnsafe extends FqNameBase {
         return qualifiedName != null && qualifiedName.indexOf('/') < 0 && qualifiedName.indexOf('*') < 0;
     }
 
-    private void compute() {
-        int lastDot = fqName.lastIndexOf('.');
-        if (lastDot >= 0) {
-            shortName = Name.guess(fqName.substring(lastDot + 1));
-            parent = new FqNameUnsafe(fqName.substring(0, lastDot));
+    @NotNull
+    private FqNameUnsafe node() {
+        FqNameUnsafe node = this.node;
+        if (node != null) {
+            return node;
         }
-        else {
-            shortName = Name.guess(fqName);
-            parent = FqName.ROOT.toUnsafe();
+
+        FqNameUnsafe result = ROOT;
+        if (!isRoot()) {
+            int start = 0;
+            while (true) {
+                int dot = fqName.indexOf('.', start);
+                if (dot < 0) {
+                    result = result.nodeChild(Name.guess(fqName.substring(start)));
+                    break;
+                }
+                result = result.nodeChild(Name.guess(fqName.substring(start, dot)));
+                start = dot + 1;
+            }
         }
+        this.node = result;
+        return result;
+    }
+
+    @NotNull
+    private FqNameUnsafe nodeChild(@NotNull Name name) {
+        ConcurrentMap<Name, FqNameUnsafe> children = this.children;
+        if (children == null) {
+            synchronized (this) {
+                children = this.children;
+                if (children == null) {
+                    children = new MapMaker().weakValues().makeMap();
+                    this.children = children;
+                }
+            }
+        }
+
+        FqNameUnsafe child = children.get(name);
+        if (child == null) {
+            FqNameUnsafe newChild = new FqNameUnsafe(isRoot() ? name.getName() : fqName + "." + name.getName(), this, name);
+            child = children.putIfAbsent(name, newChild);
+            if (child == null) {
+                child = newChild;
+            }
+        }
+        return child;
     }
 
 
@@ -106,7 +157,7 @@ public class FqNameUnsafe extends FqNameBase {
     }
 
     public boolean isRoot() {
-        return fqName.equals("");
+        return fqName.length() == 0;
     }
 
     @NotNull
@@ -119,21 +170,14 @@ public class FqNameUnsafe extends FqNameBase {
             throw new IllegalStateException("root");
         }
 
-        compute();
+        parent = node().parent;
 
         return parent;
     }
 
     @NotNull
     public FqNameUnsafe child(@NotNull Name name) {
-        String childFqName;
-        if (isRoot()) {
-            childFqName = name.getName();
-        }
-        else {
-            childFqName = fqName + "." + name.getName();
-        }
-        return new FqNameUnsafe(childFqName, this, name);
+        return node().nodeChild(name);
     }
 
     @NotNull
@@ -146,7 +190,7 @@ public class FqNameUnsafe extends FqNameBase {
             throw new IllegalStateException("root");
         }
 
-        compute();
+        shortName = node().shortName;
 
         return shortName;
     }
@@ -168,7 +212,7 @@ public class FqNameUnsafe extends FqNameBase {
     @NotNull
     public List<FqNameUnsafe> path() {
         final List<FqNameUnsafe> path = Lists.newArrayList();
-        path.add(FqName.ROOT.toUnsafe());
+        path.add(ROOT);
         walk(new WalkCallback() {
             @Override
             public void segment(@NotNull Name shortName, @NotNull FqNameUnsafe fqName) {
@@ -192,46 +236,12 @@ public class FqNameUnsafe extends FqNameBase {
 
 
     void walk(@NotNull WalkCallback callback) {
-        if (isRoot()) {
-            return;
-        }
-
-        int pos = fqName.indexOf('.');
-
-        if (pos < 0) {
-            if (this.parent == null) {
-                this.parent = FqName.ROOT.toUnsafe();
-            }
-            if (this.shortName == null) {
-                this.shortName = Name.guess(fqName);
-            }
-            callback.segment(shortName, this);
-            return;
+        List<FqNameUnsafe> nodes = Lists.newArrayList();
+        for (FqNameUnsafe node = node(); !node.isRoot(); node = node.parent) {
+            nodes.add(node);
         }
-
-        Name firstSegment = Name.guess(fqName.substring(0, pos));
-        FqNameUnsafe last = new FqNameUnsafe(firstSegment.getName(), FqName.ROOT.toUnsafe(), firstSegment);
-        callback.segment(firstSegment, last);
-
-        while (true) {
-            int next = fqName.indexOf('.', pos + 1);
-            if (next < 0) {
-                if (this.parent == null) {
-                    this.parent = last;
-                }
-                Name shortName = Name.guess(fqName.substring(pos + 1));
-                if (this.shortName == null) {
-                    this.shortName = shortName;
-                }
-                callback.segment(shortName, this);
-                return;
-            }
-
-            Name shortName = Name.guess(fqName.substring(pos + 1, next));
-            last = new FqNameUnsafe(fqName.substring(0, next), last, shortName);
-            callback.segment(shortName, last);
-
-            pos = next;
+        for (FqNameUnsafe node : Lists.reverse(nodes)) {
+            callback.segment(node.shortName, node);
         }
     }
 
@@ -239,22 +249,25 @@ public class FqNameUnsafe extends FqNameBase {
         if (isRoot()) {
             return false;
         }
-        List<Name> pathSegments = pathSegments();
-        return pathSegments.get(0).equals(segment);
+        FqNameUnsafe first = node();
+        while (!first.parent.isRoot()) {
+            first = first.parent;
+        }
+        return first.shortName == segment;
     }
 
     public boolean lastSegmentIs(@NotNull Name segment) {
         if (isRoot()) {
             return false;
         }
-        return shortName().equals(segment);
+        return shortName() == segment;
     }
 
 
 
     @NotNull
     public static FqNameUnsafe topLevel(@NotNull Name shortName) {
-        return new FqNameUnsafe(shortName.getName(), FqName.ROOT.toUnsafe(), shortName);
+        return ROOT.nodeChild(shortName);
     }
 
 
@@ -265,20 +278,19 @@ public class FqNameUnsafe extends FqNameBase {
 
     @Override
     public boolean equals(Object o) {
-        // generated by Idea
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
         FqNameUnsafe that = (FqNameUnsafe) o;
 
-        if (fqName != null ? !fqName.equals(that.fqName) : that.fqName != null) return false;
+        // There's a single node for each name
+        if (node == this && that.node == that) return false;
 
-        return true;
+        return fqName.equals(that.fqName);
     }
 
     @Override
     public int hashCode() {
-        // generated by Idea
-        return fqName != null ? fqName.hashCode() : 0;
+        return fqName.hashCode();
     }
 }
@@ -16,16 +16,31 @@
 
 package org.jetbrains.jet.lang.resolve.name;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * Names are interned: there is a single instance of each name in use, so equal names are usually the same instance.
+ * The names which are no longer referenced are collected.
+ */
 public final class Name implements Comparable<Name> {
+    private static final Interner<Name> NAMES = Interners.newWeakInterner();
+
     @NotNull
     private final String name;
     private final boolean special;
+    private final int hashCode;
 
     private Name(@NotNull String name, boolean special) {
         this.name = name;
         this.special = special;
+        this.hashCode = 31 * name.hashCode() + (special ? 1 : 0);
+    }
+
+    @NotNull
+    private static Name intern(@NotNull String name, boolean special) {
+        return NAMES.intern(new Name(name, special));
     }
 
     @NotNull
@@ -53,13 +68,13 @@ public final class Name implements Comparable<Name> {
     @NotNull
     public static Name identifier(@NotNull String name) {
         NameUtils.requireIdentifier(name);
-        return new Name(name, false);
+        return intern(name, false);
     }
 
     /** Must be validated by caller */
     @NotNull
     public static Name identifierNoValidate(@NotNull String name) {
-        return new Name(name, false);
+        return intern(name, false);
     }
 
     @NotNull
@@ -67,7 +82,7 @@ public final class Name implements Comparable<Name> {
         if (!name.startsWith("<")) {
             throw new IllegalArgumentException("special name must start with '<': " + name);
         }
-        return new Name(name, true);
+        return intern(name, true);
     }
 
     // TODO: wrong
@@ -91,18 +106,12 @@ public final class Name implements Comparable<Name> {
         if (this == o) return true;
         if (!(o instanceof Name)) return false;
 
-        Name name1 = (Name) o;
-
-        if (special != name1.special) return false;
-        if (!name.equals(name1.name)) return false;
-
-        return true;
+        Name that = (Name) o;
+        return hashCode == that.hashCode && special == that.special && name.equals(that.name);
     }
 
     @Override
     public int hashCode() {
-        int result = name.hashCode();
-        result = 31 * result + (special ? 1 : 0);
-        return result;
+        return hashCode;
     }
 }
@@ -27,16 +27,19 @@ import org.jetbrains.jet.lang.types.TypeSubstitutor;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 public class SubstitutingScope implements JetScope {
 
     private final JetScope workerScope;
     private final TypeSubstitutor substitutor;
 
-    private Map<DeclarationDescriptor, DeclarationDescriptor> substitutedDescriptors = null;
-    private Collection<DeclarationDescriptor> allDescriptors = null;
+    // The scopes of class types are shared between threads (see SubstitutingScopeCache), so the maps are concurrent
+    private volatile ConcurrentMap<DeclarationDescriptor, DeclarationDescriptor> substitutedDescriptors = null;
+    private volatile ConcurrentMap<Name, SubstitutedMembers<FunctionDescriptor>> functionsByName = null;
+    private volatile ConcurrentMap<Name, SubstitutedMembers<VariableDescriptor>> propertiesByName = null;
+    private volatile Collection<DeclarationDescriptor> allDescriptors = null;
 
     public SubstitutingScope(JetScope workerScope, @NotNull TypeSubstitutor substitutor) {
         this.workerScope = workerScope;
@@ -48,16 +51,19 @@ public class SubstitutingScope implements JetScope {
         if (descriptor == null) return null;
         if (substitutor.isEmpty()) return descriptor;
 
-        if (substitutedDescriptors == null) {
-            substitutedDescriptors = Maps.newHashMap();
-        }
+        ConcurrentMap<DeclarationDescriptor, DeclarationDescriptor> substitutedDescriptors = getSubstitutedDescriptors();
 
         DeclarationDescriptor substituted = substitutedDescriptors.get(descriptor);
-        if (substituted == null && !substitutedDescriptors.containsKey(descriptor)) {
+        if (substituted == null) {
             substituted = descriptor.substitute(substitutor);
+            // Descriptors that can't be substituted are not remembered, a concurrent map can't hold nulls
+            if (substituted == null) return null;
 
-            //noinspection ConstantConditions
-            substitutedDescriptors.put(descriptor, substituted);
+            // A descriptor substituted by another thread meanwhile wins, so that every caller gets the same one
+            DeclarationDescriptor existing = substitutedDescriptors.putIfAbsent(descriptor, substituted);
+            if (existing != null) {
+                substituted = existing;
+            }
         }
 
         //noinspection unchecked
@@ -80,10 +86,69 @@ public class SubstitutingScope implements JetScope {
         return result;
     }
 
+    @NotNull
+    private <D extends DeclarationDescriptor> Collection<D> substituteMembers(
+            @NotNull ConcurrentMap<Name, SubstitutedMembers<D>> membersByName,
+            @NotNull Name name,
+            @NotNull Collection<D> descriptors
+    ) {
+        if (substitutor.isEmpty()) return descriptors;
+
+        // The members of a class being analyzed change (e.g. fake overrides are added to its scope until it's locked),
+        // so the members substituted before are reused only if the worker scope still returns the same ones
+        SubstitutedMembers<D> members = membersByName.get(name);
+        if (members == null || !members.isSubstitutionOf(descriptors)) {
+            members = new SubstitutedMembers<D>(descriptors, substitute(descriptors));
+            membersByName.put(name, members);
+        }
+        return members.substituted;
+    }
+
+    @NotNull
+    private ConcurrentMap<DeclarationDescriptor, DeclarationDescriptor> getSubstitutedDescriptors() {
+        if (substitutedDescriptors == null) {
+            synchronized (this) {
+                if (substitutedDescriptors == null) {
+                    substitutedDescriptors = Maps.newConcurrentMap();
+                }
+            }
+        }
+        return substitutedDescriptors;
+    }
+
+    @NotNull
+    private ConcurrentMap<Name, SubstitutedMembers<FunctionDescriptor>> getFunctionsByName() {
+        if (functionsByName == null) {
+            synchronized (this) {
+                if (functionsByName == null) {
+                    functionsByName = Maps.newConcurrentMap();
+                }
+            }
+        }
+        return functionsByName;
+    }
+
+    @NotNull
+    private ConcurrentMap<Name, SubstitutedMembers<VariableDescriptor>> getPropertiesByName() {
+        if (propertiesByName == null) {
+            synchronized (this) {
+                if (propertiesByName == null) {
+                    propertiesByName = Maps.newConcurrentMap();
+                }
+            }
+        }
+        return propertiesByName;
+    }
+
+    @NotNull
+    /*package*/ JetScope getWorkerScope() {
+        return workerScope;
+    }
+
     @NotNull
     @Override
     public Collection<VariableDescriptor> getProperties(@NotNull Name name) {
-        return substitute(workerScope.getProperties(name));
+        return substituteMembers(getPropertiesByName(), name, workerScope.getProperties(name));
     }
 
     @Override
@@ -110,7 +175,7 @@ public class SubstitutingScope implements JetScope {
     @NotNull
     @Override
     public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
-        return substitute(workerScope.getFunctions(name));
+        return substituteMembers(getFunctionsByName(), name, workerScope.getFunctions(name));
     }
 
     @Override
@@ -144,10 +209,12 @@ public class SubstitutingScope implements JetScope {
     @NotNull
     @Override
     public Collection<DeclarationDescriptor> getAllDescriptors() {
-        if (allDescriptors == null) {
-            allDescriptors = substitute(workerScope.getAllDescriptors());
+        Collection<DeclarationDescriptor> descriptors = allDescriptors;
+        if (descriptors == null) {
+            descriptors = substitute(workerScope.getAllDescriptors());
+            allDescriptors = descriptors;
         }
-        return allDescriptors;
+        return descriptors;
     }
 
     @NotNull
@@ -155,4 +222,18 @@ public class SubstitutingScope implements JetScope {
     public Collection<DeclarationDescriptor> getOwnDeclaredDescriptors() {
         return substitute(workerScope.getOwnDeclaredDescriptors());
     }
+
+    private static class SubstitutedMembers<D> {
+        private final Set<D> workerMembers;
+        private final Collection<D> substituted;
+
+        private SubstitutedMembers(@NotNull Collection<D> workerMembers, @NotNull Collection<D> substituted) {
+            this.workerMembers = Sets.newHashSet(workerMembers);
+            this.substituted = substituted;
+        }
+
+        private boolean isSubstitutionOf(@NotNull Collection<D> descriptors) {
+            return workerMembers.size() == descriptors.size() && workerMembers.containsAll(descriptors);
+        }
+    }
 }
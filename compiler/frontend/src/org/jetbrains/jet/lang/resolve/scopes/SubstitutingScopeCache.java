@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.scopes;
+
+import com.google.common.collect.Lists;
+import com.intellij.util.containers.ConcurrentWeakValueHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.types.DeferredType;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeProjection;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Member scopes of the types made of a class with different type arguments, so that the types with the same arguments
+ * share a {@link SubstitutingScope} along with the descriptors substituted in it. A scope is kept while it's in use.
+ */
+public class SubstitutingScopeCache {
+    private final Map<List<TypeProjection>, SubstitutingScope> scopes = new ConcurrentWeakValueHashMap<List<TypeProjection>, SubstitutingScope>();
+
+    /**
+     * @return the scope substituting the given type arguments into the given member scope of the class, if it was cached
+     */
+    @Nullable
+    public SubstitutingScope get(@NotNull JetScope workerScope, @NotNull List<TypeProjection> typeArguments) {
+        if (!canBeKey(typeArguments)) return null;
+
+        SubstitutingScope scope = scopes.get(typeArguments);
+        // The member scope of a class being analyzed can be replaced
+        return scope != null && scope.getWorkerScope() == workerScope ? scope : null;
+    }
+
+    @NotNull
+    public SubstitutingScope put(@NotNull List<TypeProjection> typeArguments, @NotNull SubstitutingScope scope) {
+        if (canBeKey(typeArguments)) {
+            scopes.put(Lists.newArrayList(typeArguments), scope);
+        }
+        return scope;
+    }
+
+    // Comparing deferred types would compute them, which may be too early
+    private static boolean canBeKey(@NotNull List<TypeProjection> typeArguments) {
+        for (TypeProjection typeArgument : typeArguments) {
+            JetType type = typeArgument.getType();
+            if (type instanceof DeferredType || !canBeKey(type.getArguments())) return false;
+        }
+        return true;
+    }
+}
@@ -32,10 +32,18 @@ public class JetTypeChecker {
 
     public boolean isSubtypeOf(@NotNull JetType subtype, @NotNull JetType supertype) {
 //        return new TypeCheckingProcedure().run(subtype, supertype);
+        SubtypingCache cache = SubtypingCache.getCurrent();
+        if (cache != null && cache.isEnabled()) {
+            return cache.isSubtypeOf(subtype, supertype, TYPE_CHECKER);
+        }
         return TYPE_CHECKER.isSubtypeOf(subtype, supertype);
     }
 
     public boolean equalTypes(@NotNull JetType a, @NotNull JetType b) {
+        SubtypingCache cache = SubtypingCache.getCurrent();
+        if (cache != null && cache.isEnabled()) {
+            return cache.equalTypes(a, b, TYPE_CHECKER);
+        }
         return TYPE_CHECKER.equalTypes(a, b);
     }
 
@@ -61,6 +69,8 @@ public class JetTypeChecker {
     private static class TypeCheckerTypingConstraints implements TypingConstraints {
         @Override
         public boolean assertEqualTypes(@NotNull JetType a, @NotNull JetType b, @NotNull TypeCheckingProcedure typeCheckingProcedure) {
+            // The checks of the arguments are cached too, unless the procedure has equality axioms
+            if (typeCheckingProcedure == TYPE_CHECKER) return INSTANCE.equalTypes(a, b);
             return typeCheckingProcedure.equalTypes(a, b);
 //            return TypeUtils.equalTypes(a, b);
         }
@@ -72,6 +82,7 @@ public class JetTypeChecker {
 
         @Override
         public boolean assertSubtype(@NotNull JetType subtype, @NotNull JetType supertype, @NotNull TypeCheckingProcedure typeCheckingProcedure) {
+            if (typeCheckingProcedure == TYPE_CHECKER) return INSTANCE.isSubtypeOf(subtype, supertype);
             return typeCheckingProcedure.isSubtypeOf(subtype, supertype);
         }
 
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.types.checker;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.types.ErrorUtils;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeConstructor;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Results of the subtyping and type equality checks made by {@link JetTypeChecker}, keyed by the identity of the types,
+ * together with the closures of the supertypes of the type constructors met, so that a check against a type whose
+ * constructor is not among the supertypes fails without walking the hierarchy.
+ * <p/>
+ * The results only stay valid while the supertypes don't change, so a cache is made current on a thread for the phases
+ * of an analysis when the hierarchy of the classes being analyzed is complete (see TopDownAnalyzer). The checks with
+ * custom typing constraints are never cached. A cache is not thread-safe.
+ */
+public class SubtypingCache {
+    // The cache is simply dropped once this many results are kept, not to hold on to the types of a large analysis
+    private static final int MAX_RESULT_COUNT = 100000;
+
+    private static final ThreadLocal<SubtypingCache> CURRENT = new ThreadLocal<SubtypingCache>();
+
+    /**
+     * Keeps nothing, the analyses run while it's current (including the nested ones) are not cached
+     */
+    public static final SubtypingCache DISABLED = new SubtypingCache(false);
+
+    private final boolean enabled;
+
+    private final Map<TypePair, Boolean> subtypeResults = Maps.newHashMap();
+    private final Map<TypePair, Boolean> equalTypesResults = Maps.newHashMap();
+    private final Map<TypeConstructor, Set<TypeConstructor>> supertypeClosures = Maps.newHashMap();
+
+    private int hitCount;
+    private int missCount;
+
+    public SubtypingCache() {
+        this(true);
+    }
+
+    private SubtypingCache(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Nullable
+    public static SubtypingCache getCurrent() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes the given cache current on this thread, or stops caching if it's {@code null}
+     *
+     * @return the cache which was current before, to be restored when done
+     */
+    @Nullable
+    public static SubtypingCache setCurrent(@Nullable SubtypingCache cache) {
+        SubtypingCache previous = CURRENT.get();
+        if (cache != null) {
+            CURRENT.set(cache);
+        }
+        else {
+            CURRENT.remove();
+        }
+        return previous;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    public int getMissCount() {
+        return missCount;
+    }
+
+    boolean isSubtypeOf(@NotNull JetType subtype, @NotNull JetType supertype, @NotNull TypeCheckingProcedure procedure) {
+        if (subtype == supertype) return true;
+
+        TypePair key = new TypePair(subtype, supertype);
+        Boolean result = subtypeResults.get(key);
+        if (result != null) {
+            hitCount++;
+            return result;
+        }
+        missCount++;
+
+        if (isDefinitelyNotSubtype(subtype, supertype)) {
+            result = false;
+        }
+        else {
+            result = procedure.isSubtypeOf(subtype, supertype);
+        }
+        if (subtypeResults.size() >= MAX_RESULT_COUNT) {
+            subtypeResults.clear();
+        }
+        subtypeResults.put(key, result);
+        return result;
+    }
+
+    boolean equalTypes(@NotNull JetType a, @NotNull JetType b, @NotNull TypeCheckingProcedure procedure) {
+        if (a == b) return true;
+
+        TypePair key = new TypePair(a, b);
+        Boolean result = equalTypesResults.get(key);
+        if (result != null) {
+            hitCount++;
+            return result;
+        }
+        missCount++;
+
+        result = procedure.equalTypes(a, b);
+        if (equalTypesResults.size() >= MAX_RESULT_COUNT) {
+            equalTypesResults.clear();
+        }
+        equalTypesResults.put(key, result);
+        return result;
+    }
+
+    // TypeCheckingProcedure.findCorrespondingSupertype() would find nothing, and the check would fail
+    private boolean isDefinitelyNotSubtype(@NotNull JetType subtype, @NotNull JetType supertype) {
+        if (ErrorUtils.isErrorType(subtype) || ErrorUtils.isErrorType(supertype)) return false;
+        if (KotlinBuiltIns.getInstance().isNothingOrNullableNothing(subtype)) return false;
+        return !getSupertypeClosure(subtype.getConstructor()).contains(supertype.getConstructor());
+    }
+
+    @NotNull
+    private Set<TypeConstructor> getSupertypeClosure(@NotNull TypeConstructor constructor) {
+        Set<TypeConstructor> closure = supertypeClosures.get(constructor);
+        if (closure != null) return closure;
+
+        closure = Sets.newHashSet();
+        closure.add(constructor);
+        List<TypeConstructor> queue = Lists.newArrayList(constructor);
+        for (int i = 0; i < queue.size(); i++) {
+            for (JetType supertype : queue.get(i).getSupertypes()) {
+                TypeConstructor supertypeConstructor = supertype.getConstructor();
+                if (closure.add(supertypeConstructor)) {
+                    queue.add(supertypeConstructor);
+                }
+            }
+        }
+        supertypeClosures.put(constructor, closure);
+        return closure;
+    }
+
+    @Override
+    public String toString() {
+        return "SubtypingCache: " + hitCount + " hits, " + missCount + " misses";
+    }
+
+    private static class TypePair {
+        private final JetType first;
+        private final JetType second;
+
+        private TypePair(@NotNull JetType first, @NotNull JetType second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TypePair)) return false;
+            TypePair other = (TypePair) o;
+            return first == other.first && second == other.second;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(first) + System.identityHashCode(second);
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.util.slicedmap;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.TestOnly;
@@ -26,6 +27,11 @@ public interface MutableSlicedMap extends SlicedMap {
 
     <K, V> V remove(RemovableSlice<K, V> slice, K key);
 
+    /**
+     * Removes the entries of all slices (including the collected keys of the collective slices) whose keys satisfy the predicate
+     */
+    void removeKeys(@NotNull Predicate<Object> keyPredicate);
+
     void clear();
 
     @NotNull
@@ -16,7 +16,9 @@
 
 package org.jetbrains.jet.util.slicedmap;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
@@ -100,6 +102,16 @@ public class SlicedMapImpl implements MutableSlicedMap {
         return (V) map.remove(slice.makeKey(key));
     }
 
+    @Override
+    public void removeKeys(@NotNull Predicate<Object> keyPredicate) {
+        for (Iterator<SlicedMapKey<?, ?>> iterator = map.keySet().iterator(); iterator.hasNext(); ) {
+            if (keyPredicate.apply(iterator.next().getKey())) {
+                iterator.remove();
+            }
+        }
+        Iterators.removeIf(collectiveSliceKeys.values().iterator(), keyPredicate);
+    }
+
     @Override
     public Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>> iterator() {
         //noinspection unchecked
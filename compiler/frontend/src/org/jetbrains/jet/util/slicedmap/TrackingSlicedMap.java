@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.util.slicedmap;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import org.jetbrains.annotations.NotNull;
@@ -75,6 +76,11 @@ public class TrackingSlicedMap implements MutableSlicedMap {
         return delegate.remove(wrapSlice(slice), key).value;
     }
 
+    @Override
+    public void removeKeys(@NotNull Predicate<Object> keyPredicate) {
+        delegate.removeKeys(keyPredicate);
+    }
+
     @Override
     public void clear() {
         delegate.clear();
@@ -22,9 +22,7 @@ import com.intellij.psi.impl.PsiModificationTrackerImpl;
 import com.intellij.psi.impl.PsiTreeChangeEventImpl;
 import com.intellij.psi.impl.PsiTreeChangePreprocessor;
 import com.intellij.psi.util.PsiModificationTracker;
-import org.jetbrains.jet.lang.psi.JetBlockExpression;
-import org.jetbrains.jet.lang.psi.JetClass;
-import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.*;
 
 public class JetCodeBlockModificationListener implements PsiTreeChangePreprocessor {
     private static final Logger LOG = Logger.getInstance("#org.jetbrains.jet.asJava.JetCodeBlockModificationListener");
@@ -73,6 +71,9 @@ public class JetCodeBlockModificationListener implements PsiTreeChangePreprocess
 
     private void processChange(PsiElement parent, PsiElement child1, PsiElement child2) {
         try {
+            // Spaces and comments between the declarations don't change them, the caches of declarations stay valid
+            if (isWhiteSpaceOrComment(child1) && isWhiteSpaceOrComment(child2) && (child1 != null || child2 != null)) return;
+
             if (!isInsideCodeBlock(parent)) {
                 if (parent != null && parent.getContainingFile() instanceof JetFile) {
                     myModificationTracker.incCounter();
@@ -91,6 +92,10 @@ public class JetCodeBlockModificationListener implements PsiTreeChangePreprocess
         }
     }
 
+    private static boolean isWhiteSpaceOrComment(PsiElement element) {
+        return element == null || element instanceof PsiWhiteSpace || element instanceof PsiComment;
+    }
+
     private static boolean containsClassesInside(PsiElement element) {
         if (element == null) return false;
         if (element instanceof PsiClass) return true;
@@ -104,6 +109,11 @@ public class JetCodeBlockModificationListener implements PsiTreeChangePreprocess
         return false;
     }
 
+    private static boolean isExpressionBody(PsiElement element) {
+        PsiElement parent = element.getParent();
+        return parent instanceof JetDeclarationWithBody && ((JetDeclarationWithBody) parent).getBodyExpression() == element;
+    }
+
     private static boolean isInsideCodeBlock(PsiElement element) {
         if (element instanceof PsiFileSystemItem) {
             return false;
@@ -120,6 +130,10 @@ public class JetCodeBlockModificationListener implements PsiTreeChangePreprocess
             if (parent instanceof JetBlockExpression) {
                 return true;
             }
+            if (isExpressionBody(parent)) {
+                // Such a body is only resolved with the declaration when its type is inferred from it
+                return !JetModifiableBlockHelper.shouldChangeModificationCount(parent);
+            }
             parent = parent.getParent();
         }
     }
@@ -0,0 +1,30 @@
+class P(val x: Int, val y: Int) {
+    fun component1() = x
+    fun component2() = y
+}
+
+fun box(): String {
+    var a = 1
+    a++
+    var (b, c) = P(2, 3)
+    b += 10
+    val before = { a + b + c }
+
+    var d = 0
+    val after = { d }
+    d = 5
+
+    val closures = java.util.ArrayList<() -> Int>()
+    for (i in 0..2) {
+        var e = i
+        e *= 10
+        closures.add({ e })
+    }
+
+    if (before() != 17) return "fail before: ${before()}"
+    if (after() != 5) return "fail after: ${after()}"
+    var sum = 0
+    for (closure in closures) sum += closure()
+    if (sum != 30) return "fail loop: $sum"
+    return "OK"
+}
@@ -0,0 +1,51 @@
+inline fun <T> Iterable<T>.each(operation: (T) -> Unit) {
+    for (element in this) operation(element)
+}
+
+inline fun <T, R> T.let2(f: (T) -> R): R = f(this)
+
+inline fun repeat2(times: Int, body: (Int) -> Unit) {
+    var i = 0
+    while (i < times) {
+        body(i)
+        i++
+    }
+}
+
+inline fun <T> callTwice(f: () -> T): T {
+    f()
+    return f()
+}
+
+inline fun combine(a: Int, b: Int, f: (Int, Int) -> Int) = f(a, b)
+
+fun box(): String {
+    val list = java.util.ArrayList<Int>()
+    list.add(1)
+    list.add(2)
+    list.add(3)
+
+    var sum = 0
+    list.each { sum += it }
+    if (sum != 6) return "fail 1: $sum"
+
+    if (5.let2 { it + 1 } != 6) return "fail 2"
+    if ("O".let2 { it + "K" } != "OK") return "fail 3"
+
+    var s = ""
+    repeat2(3) { i -> s += i }
+    if (s != "012") return "fail 4: $s"
+
+    var n = 0
+    if (callTwice { ++n } != 2) return "fail 5"
+    if (n != 2) return "fail 6"
+
+    if (combine(3, 4) { x, y -> x * y } != 12) return "fail 7"
+
+    // The literal contains another literal, so it is passed as a closure
+    var total = 0
+    repeat2(3) { i -> total += i.let2 { it * 10 } }
+    if (total != 30) return "fail 8: $total"
+
+    return "OK"
+}
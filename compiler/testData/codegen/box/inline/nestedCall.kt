@@ -0,0 +1,23 @@
+inline fun max(a: Int, b: Int): Int {
+    if (a > b) return a
+    return b
+}
+
+inline fun <T> pair(first: T, second: T) = "($first,$second)"
+
+inline fun apply2(x: Int, f: (Int) -> Int) = f(x) + x
+
+val add100 = { (x: Int) -> x + 100 }
+
+fun box(): String {
+    if (max(1, max(2, 3)) != 3) return "fail 1"
+    if (max(3, max(2, 1)) != 3) return "fail 2"
+    if (max(max(1, 5), max(4, 2)) != 5) return "fail 3"
+    if (max(1, max(2, max(7, 4))) != 7) return "fail 4"
+    if (pair("a", pair("b", "c")) != "(a,(b,c))") return "fail 5"
+
+    // The inner call is in the body of the literal, while the parameters of the outer call are bound
+    if (apply2(1) { apply2(it * 10, add100) } != 121) return "fail 6"
+
+    return "OK"
+}
@@ -0,0 +1,22 @@
+inline fun <T> keep(f: () -> T): () -> T = f
+
+inline fun <T> callAndKeep(f: () -> T): () -> T {
+    f()
+    return f
+}
+
+inline fun countdown(n: Int): Int = if (n <= 0) 0 else 1 + countdown(n - 1)
+
+fun box(): String {
+    var n = 0
+    val f = keep { ++n }
+    if (n != 0) return "fail 1"
+    if (f() != 1) return "fail 2"
+
+    val g = callAndKeep { ++n }
+    if (n != 2) return "fail 3"
+    if (g() != 3) return "fail 4"
+
+    if (countdown(5) != 5) return "fail 5"
+    return "OK"
+}
@@ -0,0 +1,36 @@
+inline fun plusOne(x: Int?): Int {
+    return 1 + (x ?: return 0)
+}
+
+inline fun firstOrMinus(x: Int?): String {
+    return "first ${x ?: return "none"}"
+}
+
+inline fun id(x: Int) = x
+
+inline fun sumOrZero(a: Int?, b: Int?): Int {
+    return id(a ?: return 0) + id(b ?: return 0)
+}
+
+inline fun sign(x: Int): Int {
+    when {
+        x > 0 -> return 1
+        x < 0 -> return -1
+        else -> for (i in 1..2) {
+            if (x == 0) return 0
+        }
+    }
+    return 2
+}
+
+fun box(): String {
+    // The calls are made with operands of the caller on the stack
+    if (10 + plusOne(5) != 16) return "fail 1"
+    if (10 + plusOne(null) != 10) return "fail 2"
+    if (firstOrMinus(1) + "!" != "first 1!") return "fail 3"
+    if (firstOrMinus(null) + "!" != "none!") return "fail 4"
+    if (100 + sumOrZero(1, 2) != 103) return "fail 5"
+    if (100 + sumOrZero(1, null) != 100) return "fail 6"
+    if (10 * sign(5) + sign(-5) + sign(0) != 9) return "fail 7"
+    return "OK"
+}
@@ -0,0 +1,42 @@
+var calls = 0
+
+fun next(): Int {
+    calls++
+    return calls
+}
+
+inline fun twice(x: Int) = x * 2
+
+inline fun sign(x: Int): Int {
+    if (x > 0) return 1
+    if (x < 0) return -1
+    return 0
+}
+
+inline fun String.exclaim(): String = this + "!"
+
+inline fun <T> T.pair(other: T): String = "$this,$other"
+
+inline fun resetCalls() {
+    if (calls == 0) return
+    calls = 0
+}
+
+fun box(): String {
+    if (twice(21) != 42) return "fail 1"
+    if (sign(5) != 1) return "fail 2"
+    if (sign(-5) != -1) return "fail 3"
+    if (sign(0) != 0) return "fail 4"
+    if ("OK".exclaim() != "OK!") return "fail 5"
+    if (1.pair(2) != "1,2") return "fail 6"
+    if ("a".pair("b") != "a,b") return "fail 7"
+
+    if (twice(next()) != 2) return "fail 8"
+    if (calls != 1) return "fail 9"
+    resetCalls()
+    if (calls != 0) return "fail 10"
+    resetCalls()
+    if (calls != 0) return "fail 11"
+
+    return "OK"
+}
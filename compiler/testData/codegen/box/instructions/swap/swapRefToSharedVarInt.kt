@@ -4,6 +4,7 @@ fun box(): String {
     fun f() {
         foo(a)
     }
+    a = 13
 
     return "OK"
 }
@@ -6,6 +6,7 @@ fun box(): String {
     fun f() {
         foo(a)
     }
+    a = 13.toLong()
 
     return "OK"
 }
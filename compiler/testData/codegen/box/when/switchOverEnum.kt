@@ -0,0 +1,23 @@
+enum class Opcode {
+    NOP
+    LOAD
+    STORE
+    JUMP
+    RETURN
+}
+
+fun cost(opcode: Opcode) = when (opcode) {
+    Opcode.NOP -> 0
+    Opcode.LOAD, Opcode.STORE -> 2
+    Opcode.JUMP -> 3
+    else -> 1
+}
+
+fun box(): String {
+    if (cost(Opcode.NOP) != 0) return "fail 1"
+    if (cost(Opcode.LOAD) != 2) return "fail 2"
+    if (cost(Opcode.STORE) != 2) return "fail 3"
+    if (cost(Opcode.JUMP) != 3) return "fail 4"
+    if (cost(Opcode.RETURN) != 1) return "fail 5"
+    return "OK"
+}
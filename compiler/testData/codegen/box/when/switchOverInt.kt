@@ -0,0 +1,49 @@
+fun dense(x: Int) = when (x) {
+    1 -> "one"
+    2, 3 -> "two or three"
+    4 -> "four"
+    2 -> "unreachable"
+    else -> "other"
+}
+
+fun sparse(x: Int) = when (x) {
+    -1000000 -> "min"
+    0 -> "zero"
+    1000000 -> "max"
+    else -> "other"
+}
+
+fun char(c: Char) = when (c) {
+    'a' -> 1
+    'b' -> 2
+    'z' -> 26
+    else -> 0
+}
+
+fun returns(x: Int): String {
+    when (x) {
+        1 -> return "1"
+        2 -> return "2"
+        3 -> return "3"
+        else -> return "none"
+    }
+}
+
+fun box(): String {
+    if (dense(1) != "one") return "fail 1"
+    if (dense(2) != "two or three") return "fail 2"
+    if (dense(3) != "two or three") return "fail 3"
+    if (dense(4) != "four") return "fail 4"
+    if (dense(5) != "other") return "fail 5"
+    if (dense(0) != "other") return "fail 6"
+    if (sparse(-1000000) != "min") return "fail 7"
+    if (sparse(0) != "zero") return "fail 8"
+    if (sparse(1000000) != "max") return "fail 9"
+    if (sparse(1) != "other") return "fail 10"
+    if (char('b') != 2) return "fail 11"
+    if (char('z') != 26) return "fail 12"
+    if (char('c') != 0) return "fail 13"
+    if (returns(3) != "3") return "fail 14"
+    if (returns(4) != "none") return "fail 15"
+    return "OK"
+}
@@ -0,0 +1,21 @@
+fun parse(s: String) = when (s) {
+    "get" -> 1
+    "put" -> 2
+    "delete", "remove" -> 3
+    // "Aa" and "BB" have the same hash code
+    "Aa" -> 4
+    "BB" -> 5
+    else -> 0
+}
+
+fun box(): String {
+    if (parse("get") != 1) return "fail 1"
+    if (parse("put") != 2) return "fail 2"
+    if (parse("delete") != 3) return "fail 3"
+    if (parse("remove") != 3) return "fail 4"
+    if (parse("Aa") != 4) return "fail 5"
+    if (parse("BB") != 5) return "fail 6"
+    if (parse("post") != 0) return "fail 7"
+    if (parse("") != 0) return "fail 8"
+    return "OK"
+}
@@ -0,0 +1,23 @@
+fun countEvents(events: List<String>): Int {
+    var count = 0
+    for (event in events) count++
+    val report = { count * 2 }
+    return report()
+}
+
+fun countInClosure(events: List<String>): Int {
+    var count = 0
+    val increment = { count++ }
+    for (event in events) increment()
+    return count
+}
+
+fun countAfterCapture(events: List<String>): Int {
+    var count = 0
+    val report = { count }
+    for (event in events) count++
+    return report()
+}
+
+// Only the vars assigned once a closure has captured them are shared
+// 2 NEW jet/runtime/SharedVar\$Int
@@ -0,0 +1,12 @@
+inline fun <T> Iterable<T>.each(operation: (T) -> Unit) {
+    for (element in this) operation(element)
+}
+
+fun sum(list: List<Int>): Int {
+    var result = 0
+    list.each { result += it }
+    return result
+}
+
+// Only the compiled each() itself invokes a function object
+// 1 jet/Function1.invoke
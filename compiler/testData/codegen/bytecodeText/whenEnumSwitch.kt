@@ -0,0 +1,15 @@
+enum class E {
+    A
+    B
+    C
+}
+
+fun foo(e: E) = when (e) {
+    E.A -> 1
+    E.B -> 2
+    E.C -> 3
+    else -> 0
+}
+
+// 1 E.ordinal
+// 1 TABLESWITCH
@@ -0,0 +1,9 @@
+fun foo(x: Int) = when (x) {
+    1 -> "a"
+    100 -> "b"
+    10000 -> "c"
+    else -> "d"
+}
+
+// 0 TABLESWITCH
+// 1 LOOKUPSWITCH
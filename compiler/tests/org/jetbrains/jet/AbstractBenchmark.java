@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a benchmark several times in one environment, so that the JIT warms up, and reports only the last round.
+ * Benchmarks are run from their {@code main} methods, they are not tests.
+ */
+public abstract class AbstractBenchmark {
+    private static final int ROUNDS = 10;
+
+    protected abstract void setUp(@NotNull JetCoreEnvironment environment) throws Exception;
+
+    protected abstract void runRound(boolean report) throws Exception;
+
+    public final void run() throws Exception {
+        Disposable disposable = Disposer.newDisposable();
+        try {
+            setUp(JetTestUtils.createEnvironmentWithMockJdkAndIdeaAnnotations(disposable));
+            for (int round = 0; round < ROUNDS; round++) {
+                runRound(round == ROUNDS - 1);
+            }
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+
+    /**
+     * @param markup the parts of the text to remove, e.g. the markup of the resolve tests
+     */
+    @NotNull
+    protected static List<JetFile> loadFiles(
+            @NotNull JetCoreEnvironment environment,
+            @NotNull File root,
+            @NotNull Pattern fileNames,
+            @Nullable Pattern markup
+    ) throws Exception {
+        List<JetFile> files = Lists.newArrayList();
+        for (File file : FileUtil.findFilesByMask(fileNames, root)) {
+            String text = FileUtil.loadFile(file);
+            if (markup != null) {
+                text = markup.matcher(text).replaceAll("");
+            }
+            files.add(JetTestUtils.createFile(file.getName(), text, environment.getProject()));
+        }
+        System.out.println(files.size() + " files loaded from " + root);
+        return files;
+    }
+
+    /**
+     * @return null if the file fails to be analyzed alone, which is expected of some of the test data
+     */
+    @Nullable
+    protected static AnalyzeExhaust analyzeAlone(@NotNull JetFile file) {
+        try {
+            AnalyzeExhaust exhaust = AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+                    file.getProject(), Collections.singletonList(file),
+                    Collections.<AnalyzerScriptParameter>emptyList(), Predicates.<PsiFile>alwaysTrue());
+            exhaust.throwIfError();
+            return exhaust;
+        }
+        catch (Throwable e) {
+            return null;
+        }
+    }
+
+    protected static void report(@NotNull String format, Object... args) {
+        System.out.println(String.format(format, args));
+    }
+}
@@ -102,6 +102,23 @@ public class FqNameTest {
         Assert.assertSame(fqName, fqName.toSafe().toUnsafe());
     }
 
+    @Test
+    public void internedNames() {
+        Assert.assertSame(Name.identifier("jet"), Name.identifier("jet"));
+        Assert.assertNotSame(Name.special("<jet>"), Name.identifierNoValidate("<jet>"));
+        Assert.assertFalse(Name.special("<jet>").equals(Name.identifierNoValidate("<jet>")));
+    }
+
+    @Test
+    public void sharedParents() {
+        FqName fqName = new FqName("com.jetbrains.jet");
+        FqName parent = FqName.ROOT.child(Name.identifier("com")).child(Name.identifier("jetbrains"));
+        Assert.assertSame(parent, fqName.parent());
+        Assert.assertSame(parent, new FqName("com.jetbrains").child(Name.identifier("jet")).parent());
+        Assert.assertSame(FqName.ROOT, fqName.parent().parent().parent());
+        Assert.assertSame(Name.identifier("jet"), fqName.shortName());
+    }
+
     @Test
     public void isValidJavaFqName() {
         Assert.assertTrue(QualifiedNamesUtil.isValidJavaFqName(""));
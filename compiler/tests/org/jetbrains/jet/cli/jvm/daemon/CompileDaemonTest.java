@@ -0,0 +1,191 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.daemon;
+
+import com.google.common.collect.Lists;
+import com.intellij.openapi.util.io.FileUtil;
+import com.sampullara.cli.Args;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.cli.jvm.K2JVMCompilerArguments;
+import org.jetbrains.jet.lang.resolve.java.PackageClassUtils;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.test.TestCaseWithTmpdir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CompileDaemonTest extends TestCaseWithTmpdir {
+    public void testArgumentsSurviveCommandLineConversion() throws Exception {
+        K2JVMCompilerArguments arguments = new K2JVMCompilerArguments();
+        arguments.setSourceDirs(Arrays.asList("a", "b"));
+        arguments.setOutputDir("out");
+        arguments.noStdlib = true;
+
+        String[] commandLine = CompileDaemonClient.toCommandLine(arguments);
+        assertNotNull(commandLine);
+
+        K2JVMCompilerArguments parsed = new K2JVMCompilerArguments();
+        parsed.freeArgs = Args.parse(parsed, commandLine);
+        // The daemon has its own working directory, so the paths are resolved by the client
+        assertEquals(new File("a").getAbsolutePath() + File.pathSeparator + new File("b").getAbsolutePath(), parsed.src);
+        assertEquals(new File("out").getAbsolutePath(), parsed.outputDir);
+        assertTrue(parsed.noStdlib);
+        assertFalse(parsed.includeRuntime);
+        assertTrue(parsed.freeArgs.isEmpty());
+    }
+
+    public void testNoDaemon() throws Exception {
+        assertNull(CompileDaemonClient.compile(findFreePort(), getTokenFile(), new String[0], new CollectingMessageCollector()));
+    }
+
+    public void testCompileTwice() throws Exception {
+        int port = findFreePort();
+        Thread daemon = startDaemon(port);
+
+        File outputDir = new File(tmpdir, "out");
+        String[] args = {"-src", new File("compiler/testData/cli/simple.kt").getAbsolutePath(), "-output", outputDir.getAbsolutePath()};
+        for (int i = 0; i < 2; i++) {
+            CollectingMessageCollector messageCollector = new CollectingMessageCollector();
+            assertEquals(messageCollector.errors.toString(), ExitCode.OK, compileWhenStarted(port, args, messageCollector));
+            File classFile = new File(outputDir, PackageClassUtils.getPackageClassName(FqName.ROOT) + ".class");
+            assertTrue(classFile.isFile());
+            assertTrue(classFile.delete());
+        }
+
+        CollectingMessageCollector messageCollector = new CollectingMessageCollector();
+        assertEquals(ExitCode.INTERNAL_ERROR, CompileDaemonClient.compile(port, getTokenFile(), new String[0], messageCollector));
+        assertEquals(1, messageCollector.errors.size());
+
+        daemon.join();
+        assertFalse(getTokenFile().exists());
+    }
+
+    public void testWrongToken() throws Exception {
+        int port = findFreePort();
+        Thread daemon = startDaemon(port);
+
+        String[] args = {"-src", new File("compiler/testData/cli/simple.kt").getAbsolutePath(), "-output", tmpdir.getAbsolutePath()};
+        assertEquals(ExitCode.OK, compileWhenStarted(port, args, new CollectingMessageCollector()));
+
+        File wrongTokenFile = new File(tmpdir, "wrong.token");
+        FileUtil.writeToFile(wrongTokenFile, "0");
+        CollectingMessageCollector messageCollector = new CollectingMessageCollector();
+        assertEquals(ExitCode.INTERNAL_ERROR, CompileDaemonClient.compile(port, wrongTokenFile, args, messageCollector));
+        assertEquals(Collections.singletonList("Wrong compile daemon token"), messageCollector.errors);
+
+        daemon.join();
+    }
+
+    public void testRebuiltJarOnClasspath() throws Exception {
+        int port = findFreePort();
+        Thread daemon = startDaemon(port);
+
+        File jar = new File(tmpdir, "lib.jar");
+        String[] classpathArgs = {"-classpath", jar.getAbsolutePath(), "-output", new File(tmpdir, "out").getAbsolutePath()};
+
+        assertEquals(ExitCode.OK, compileWhenStarted(port, sourceArgs("lib.kt", "package lib\nfun first() = 1", "-jar", jar.getAbsolutePath()),
+                                                     new CollectingMessageCollector()));
+        CollectingMessageCollector messageCollector = new CollectingMessageCollector();
+        assertEquals(messageCollector.errors.toString(), ExitCode.OK, CompileDaemonClient.compile(
+                port, getTokenFile(), sourceArgs("first.kt", "fun main(args: Array<String>) { lib.first() }", classpathArgs),
+                messageCollector));
+
+        // The same jar is rebuilt with other contents, the daemon must not see the old ones
+        assertEquals(ExitCode.OK, CompileDaemonClient.compile(
+                port, getTokenFile(), sourceArgs("lib.kt", "package lib\nfun second() = 2", "-jar", jar.getAbsolutePath()),
+                new CollectingMessageCollector()));
+        messageCollector = new CollectingMessageCollector();
+        assertEquals(messageCollector.errors.toString(), ExitCode.OK, CompileDaemonClient.compile(
+                port, getTokenFile(), sourceArgs("second.kt", "fun main(args: Array<String>) { lib.second() }", classpathArgs),
+                messageCollector));
+
+        daemon.join();
+    }
+
+    @NotNull
+    private String[] sourceArgs(@NotNull String fileName, @NotNull String text, @NotNull String... otherArgs) throws IOException {
+        File source = new File(tmpdir, fileName);
+        FileUtil.writeToFile(source, text);
+        List<String> args = Lists.newArrayList("-src", source.getAbsolutePath());
+        args.addAll(Arrays.asList(otherArgs));
+        return args.toArray(new String[args.size()]);
+    }
+
+    @NotNull
+    private File getTokenFile() {
+        return new File(tmpdir, "daemon.token");
+    }
+
+    @NotNull
+    private Thread startDaemon(final int port) {
+        Thread daemon = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    new CompileDaemon(port, 5000, getTokenFile()).run();
+                }
+                catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        daemon.start();
+        return daemon;
+    }
+
+    private ExitCode compileWhenStarted(int port, @NotNull String[] args, @NotNull MessageCollector messageCollector)
+            throws Exception {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            ExitCode exitCode = CompileDaemonClient.compile(port, getTokenFile(), args, messageCollector);
+            if (exitCode != null) {
+                return exitCode;
+            }
+            Thread.sleep(100);
+        }
+        fail("Compile daemon has not started");
+        return null;
+    }
+
+    private static int findFreePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    private static class CollectingMessageCollector implements MessageCollector {
+        private final List<String> errors = Lists.newArrayList();
+
+        @Override
+        public void report(@NotNull CompilerMessageSeverity severity, @NotNull String message, @NotNull CompilerMessageLocation location) {
+            if (CompilerMessageSeverity.ERRORS.contains(severity)) {
+                errors.add(message);
+            }
+        }
+    }
+}
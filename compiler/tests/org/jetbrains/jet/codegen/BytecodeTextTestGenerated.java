@@ -37,11 +37,21 @@ public class BytecodeTextTestGenerated extends AbstractBytecodeTextTest {
         JetTestUtils.assertAllTestsPresentByMetadata(this.getClass(), "org.jetbrains.jet.generators.tests.GenerateTests", new File("compiler/testData/codegen/bytecodeText"), Pattern.compile("^(.+)\\.kt$"), true);
     }
     
+    @TestMetadata("capturedVarByValue.kt")
+    public void testCapturedVarByValue() throws Exception {
+        doTest("compiler/testData/codegen/bytecodeText/capturedVarByValue.kt");
+    }
+    
     @TestMetadata("componentEvaluatesOnlyOnce.kt")
     public void testComponentEvaluatesOnlyOnce() throws Exception {
         doTest("compiler/testData/codegen/bytecodeText/componentEvaluatesOnlyOnce.kt");
     }
     
+    @TestMetadata("inlineFunctionLiteral.kt")
+    public void testInlineFunctionLiteral() throws Exception {
+        doTest("compiler/testData/codegen/bytecodeText/inlineFunctionLiteral.kt");
+    }
+    
     @TestMetadata("intConstantNotNull.kt")
     public void testIntConstantNotNull() throws Exception {
         doTest("compiler/testData/codegen/bytecodeText/intConstantNotNull.kt");
@@ -82,6 +92,26 @@ public class BytecodeTextTestGenerated extends AbstractBytecodeTextTest {
         doTest("compiler/testData/codegen/bytecodeText/topLevelFunWithDefaultArgs.kt");
     }
     
+    @TestMetadata("whenEnumSwitch.kt")
+    public void testWhenEnumSwitch() throws Exception {
+        doTest("compiler/testData/codegen/bytecodeText/whenEnumSwitch.kt");
+    }
+    
+    @TestMetadata("whenIntLookupSwitch.kt")
+    public void testWhenIntLookupSwitch() throws Exception {
+        doTest("compiler/testData/codegen/bytecodeText/whenIntLookupSwitch.kt");
+    }
+    
+    @TestMetadata("whenIntTableSwitch.kt")
+    public void testWhenIntTableSwitch() throws Exception {
+        doTest("compiler/testData/codegen/bytecodeText/whenIntTableSwitch.kt");
+    }
+    
+    @TestMetadata("whenStringSwitch.kt")
+    public void testWhenStringSwitch() throws Exception {
+        doTest("compiler/testData/codegen/bytecodeText/whenStringSwitch.kt");
+    }
+    
     @TestMetadata("compiler/testData/codegen/bytecodeText/statements")
     public static class Statements extends AbstractBytecodeTextTest {
         public void testAllFilesPresentInStatements() throws Exception {
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class ClassFileSinkTest extends KotlinTestWithEnvironment {
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testSinkReceivesAllClasses() throws Exception {
+        File[] testDirs = new File("compiler/testData/codegen/boxMultiFile").listFiles();
+        assertNotNull(testDirs);
+        for (File testDir : testDirs) {
+            doTest(testDir);
+        }
+    }
+
+    private void doTest(@NotNull File testDir) throws Exception {
+        List<JetFile> files = Lists.newArrayList();
+        File[] ioFiles = testDir.listFiles();
+        assertNotNull(ioFiles);
+        for (File ioFile : ioFiles) {
+            if (ioFile.getName().endsWith(".kt")) {
+                files.add(JetTestUtils.loadJetFile(getProject(), ioFile));
+            }
+        }
+
+        AnalyzeExhaust exhaust = AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationAndCheckForErrors(
+                getProject(), files, Collections.<AnalyzerScriptParameter>emptyList(), Predicates.<PsiFile>alwaysTrue());
+
+        ClassFileFactory inMemory = generate(exhaust, files, null);
+
+        final Map<String, byte[]> written = Maps.newLinkedHashMap();
+        ClassFileFactory streamed = generate(exhaust, files, new ClassFileSink() {
+            @Override
+            public void write(@NotNull String relativePath, @NotNull Collection<File> sourceFiles, @NotNull byte[] bytes) {
+                assertNull("Written twice: " + relativePath, written.put(relativePath, bytes));
+            }
+        });
+        streamed.done();
+
+        assertEquals(testDir.getName(), inMemory.files(), Lists.newArrayList(written.keySet()));
+        assertEquals(testDir.getName(), inMemory.files(), streamed.files());
+        for (String file : inMemory.files()) {
+            assertTrue(testDir.getName() + ": " + file, Arrays.equals(inMemory.asBytes(file), written.get(file)));
+        }
+    }
+
+    @NotNull
+    private ClassFileFactory generate(@NotNull AnalyzeExhaust exhaust, @NotNull List<JetFile> files, @Nullable ClassFileSink sink) {
+        GenerationState state = new GenerationState(
+                getProject(), ClassBuilderFactories.binaries(false), exhaust.getBindingContext(), files);
+        state.getFactory().setSink(sink);
+        KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION);
+        return state.getFactory();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.google.common.collect.Lists;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.AbstractBenchmark;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.lang.psi.JetFile;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Generates the code of the Kotlin sources under the given directory (compiler/testData/codegen/box by default) and
+ * reports the time taken and the memory allocated by the code generation, not counting the analysis.
+ * <p/>
+ * Needs a JVM which measures the memory allocated by a thread (see {@link com.sun.management.ThreadMXBean}).
+ */
+public class CodegenAllocationBenchmark extends AbstractBenchmark {
+    private final File root;
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    private JetCoreEnvironment environment;
+    private List<JetFile> files;
+    // The results of the files which can't be analyzed alone are null
+    private final List<AnalyzeExhaust> exhausts = Lists.newArrayList();
+
+    public CodegenAllocationBenchmark(@NotNull File root) {
+        this.root = root;
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new CodegenAllocationBenchmark(new File(args.length > 0 ? args[0] : "compiler/testData/codegen/box")).run();
+    }
+
+    @Override
+    protected void setUp(@NotNull JetCoreEnvironment environment) throws Exception {
+        this.environment = environment;
+        files = loadFiles(environment, root, Pattern.compile(".*\\.kt"), null);
+        for (JetFile file : files) {
+            exhausts.add(analyzeAlone(file));
+        }
+    }
+
+    @Override
+    protected void runRound(boolean report) {
+        long threadId = Thread.currentThread().getId();
+        long time = 0;
+        long allocated = 0;
+        int failed = 0;
+        for (int i = 0; i < files.size(); i++) {
+            AnalyzeExhaust exhaust = exhausts.get(i);
+            if (exhaust == null) continue;
+
+            long startAllocated = threadBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            try {
+                GenerationState state = new GenerationState(environment.getProject(), ClassBuilderFactories.TEST,
+                                                            exhaust.getBindingContext(), Collections.singletonList(files.get(i)));
+                KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION);
+            }
+            catch (Throwable e) {
+                failed++;
+            }
+            time += System.nanoTime() - start;
+            allocated += threadBean.getThreadAllocatedBytes(threadId) - startAllocated;
+        }
+
+        if (report) {
+            report("codegen: %d ms, %d KB allocated, %d files failed", time / 1000000, allocated / 1024, failed);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.lang.resolve.java.PackageClassUtils;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+public class GeneratedClassLoaderTest extends CodegenTestCase {
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testReleaseDefinedClasses() throws Exception {
+        loadText("class A\nclass B\nfun box() = \"OK\"");
+        ClassFileFactory factory = generateClassesInFile();
+        assertTrue(factory.containsFile("A.class"));
+        assertFalse(factory.containsFile("C.class"));
+
+        GeneratedClassLoader loader = new GeneratedClassLoader(factory, true, GeneratedClassLoaderTest.class.getClassLoader());
+        try {
+            assertEquals("OK", loader.loadClass(PackageClassUtils.getPackageClassName(FqName.ROOT)).getMethod("box").invoke(null));
+            assertSame(loader.loadClass("A"), loader.loadClass("A"));
+
+            // Released after the class is defined, not yet defined classes are still available
+            assertTrue(factory.files().contains("A.class"));
+            try {
+                factory.asBytes("A.class");
+                fail("Bytes of a defined class should be released");
+            }
+            catch (IllegalStateException expected) {
+            }
+            assertNotNull(factory.asBytes("B.class"));
+            assertNotNull(loader.loadClass("B"));
+        }
+        finally {
+            loader.dispose();
+        }
+    }
+}
@@ -921,6 +921,11 @@ public class BlackBoxCodegenTestGenerated extends AbstractBlackBoxCodegenTest {
             JetTestUtils.assertAllTestsPresentByMetadata(this.getClass(), "org.jetbrains.jet.generators.tests.GenerateTests", new File("compiler/testData/codegen/box/closures"), Pattern.compile("^(.+)\\.kt$"), true);
         }
         
+        @TestMetadata("capturedVarWrittenBeforeCapture.kt")
+        public void testCapturedVarWrittenBeforeCapture() throws Exception {
+            doTest("compiler/testData/codegen/box/closures/capturedVarWrittenBeforeCapture.kt");
+        }
+        
         @TestMetadata("closureInsideConstrucor.kt")
         public void testClosureInsideConstrucor() throws Exception {
             doTest("compiler/testData/codegen/box/closures/closureInsideConstrucor.kt");
@@ -1885,6 +1890,39 @@ public class BlackBoxCodegenTestGenerated extends AbstractBlackBoxCodegenTest {
         }
     }
     
+    @TestMetadata("compiler/testData/codegen/box/inline")
+    public static class Inline extends AbstractBlackBoxCodegenTest {
+        public void testAllFilesPresentInInline() throws Exception {
+            JetTestUtils.assertAllTestsPresentByMetadata(this.getClass(), "org.jetbrains.jet.generators.tests.GenerateTests", new File("compiler/testData/codegen/box/inline"), Pattern.compile("^(.+)\\.kt$"), true);
+        }
+        
+        @TestMetadata("functionLiteral.kt")
+        public void testFunctionLiteral() throws Exception {
+            doTest("compiler/testData/codegen/box/inline/functionLiteral.kt");
+        }
+        
+        @TestMetadata("nestedCall.kt")
+        public void testNestedCall() throws Exception {
+            doTest("compiler/testData/codegen/box/inline/nestedCall.kt");
+        }
+        
+        @TestMetadata("notInlinedParameter.kt")
+        public void testNotInlinedParameter() throws Exception {
+            doTest("compiler/testData/codegen/box/inline/notInlinedParameter.kt");
+        }
+        
+        @TestMetadata("returnInExpression.kt")
+        public void testReturnInExpression() throws Exception {
+            doTest("compiler/testData/codegen/box/inline/returnInExpression.kt");
+        }
+        
+        @TestMetadata("simple.kt")
+        public void testSimple() throws Exception {
+            doTest("compiler/testData/codegen/box/inline/simple.kt");
+        }
+        
+    }
+    
     @TestMetadata("compiler/testData/codegen/box/innerNested")
     public static class InnerNested extends AbstractBlackBoxCodegenTest {
         public void testAllFilesPresentInInnerNested() throws Exception {
@@ -3610,6 +3648,21 @@ public class BlackBoxCodegenTestGenerated extends AbstractBlackBoxCodegenTest {
             doTest("compiler/testData/codegen/box/when/range.kt");
         }
         
+        @TestMetadata("switchOverEnum.kt")
+        public void testSwitchOverEnum() throws Exception {
+            doTest("compiler/testData/codegen/box/when/switchOverEnum.kt");
+        }
+        
+        @TestMetadata("switchOverInt.kt")
+        public void testSwitchOverInt() throws Exception {
+            doTest("compiler/testData/codegen/box/when/switchOverInt.kt");
+        }
+        
+        @TestMetadata("switchOverString.kt")
+        public void testSwitchOverString() throws Exception {
+            doTest("compiler/testData/codegen/box/when/switchOverString.kt");
+        }
+        
         @TestMetadata("whenArgumentIsEvaluatedOnlyOnce.kt")
         public void testWhenArgumentIsEvaluatedOnlyOnce() throws Exception {
             doTest("compiler/testData/codegen/box/when/whenArgumentIsEvaluatedOnlyOnce.kt");
@@ -3633,6 +3686,7 @@ public class BlackBoxCodegenTestGenerated extends AbstractBlackBoxCodegenTest {
         suite.addTestSuite(ExtensionFunctions.class);
         suite.addTestSuite(ExtensionProperties.class);
         suite.addTest(Functions.innerSuite());
+        suite.addTestSuite(Inline.class);
         suite.addTestSuite(InnerNested.class);
         suite.addTest(Instructions.innerSuite());
         suite.addTestSuite(Intrinsics.class);
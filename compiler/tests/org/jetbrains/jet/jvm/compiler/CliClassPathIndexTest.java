@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.jet.cli.jvm.compiler.CliClassPathIndex;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.test.TestCaseWithTmpdir;
+import org.jetbrains.jet.utils.PathUtil;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class CliClassPathIndexTest extends TestCaseWithTmpdir {
+    public void testJarAndDirectory() throws Exception {
+        File directory = new File(tmpdir, "classes");
+        FileUtil.writeToFile(new File(directory, "foo/Bar.class"), new byte[0]);
+        File indexDir = new File(tmpdir, "index");
+
+        for (int i = 0; i < 2; i++) {
+            // The second time the index of the jar is read from the disk
+            CliClassPathIndex index = new CliClassPathIndex(Arrays.asList(PathUtil.findRtJar(), directory), indexDir);
+
+            assertTrue(index.mayContainClass(new FqName("java.util.Map")));
+            assertTrue(index.mayContainClass(new FqName("java.util.Map.Entry")));
+            assertFalse(index.mayContainClass(new FqName("java.util.NoSuchMap")));
+            assertTrue(index.mayContainClass(new FqName("foo.Bar")));
+            assertTrue(index.mayContainClass(new FqName("foo.Bar.Inner")));
+            assertFalse(index.mayContainClass(new FqName("foo.Baz")));
+
+            assertTrue(index.mayContainPackage(FqName.ROOT));
+            assertTrue(index.mayContainPackage(new FqName("java")));
+            assertTrue(index.mayContainPackage(new FqName("java.util")));
+            assertTrue(index.mayContainPackage(new FqName("foo")));
+            assertFalse(index.mayContainPackage(new FqName("java.nosuchpackage")));
+            assertFalse(index.mayContainPackage(new FqName("bar")));
+        }
+    }
+}
@@ -94,6 +94,30 @@ public class CompileEnvironmentTest extends TestCase {
         }
     }
 
+    public void testFailedCompilationKeepsJar() throws IOException {
+        File tempDir = FileUtil.createTempDirectory("compilerTest", "compilerTest");
+        try {
+            File source = new File(tempDir, "broken.kt");
+            FileUtil.writeToFile(source, "fun foo(): Int = \"not an int\"");
+            File resultJar = new File(tempDir, "result.jar");
+            FileUtil.writeToFile(resultJar, "previous jar");
+            File stdlib = ForTestCompileRuntime.runtimeJarForTests();
+            File jdkAnnotations = ForTestPackJdkAnnotations.jdkAnnotationsForTests();
+            ExitCode exitCode = new K2JVMCompiler()
+                    .exec(System.out, "-src", source.getAbsolutePath(),
+                          "-jar", resultJar.getAbsolutePath(),
+                          "-noStdlib",
+                          "-classpath", stdlib.getAbsolutePath(),
+                          "-noJdkAnnotations",
+                          "-annotations", jdkAnnotations.getAbsolutePath());
+            Assert.assertEquals(ExitCode.COMPILATION_ERROR, exitCode);
+            assertEquals("previous jar", FileUtil.loadFile(resultJar));
+            assertEquals(2, tempDir.listFiles().length);
+        } finally {
+            FileUtil.delete(tempDir);
+        }
+    }
+
     private static List<String> listEntries(JarInputStream is) throws IOException {
         List<String> entries = new ArrayList<String>();
         while (true) {
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.jvm.compiler;
+
+import com.google.common.collect.Lists;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.TestJdkKind;
+import org.jetbrains.jet.cli.common.CLIConfigurationKeys;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.cli.jvm.compiler.IncrementalCompiler;
+import org.jetbrains.jet.config.CommonConfigurationKeys;
+import org.jetbrains.jet.config.CompilerConfiguration;
+import org.jetbrains.jet.lang.resolve.java.PackageClassUtils;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.test.TestCaseWithTmpdir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public class IncrementalCompilerTest extends TestCaseWithTmpdir {
+    private File sources;
+    private File output;
+    private File cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        sources = new File(tmpdir, "src");
+        output = new File(tmpdir, "out");
+        cache = new File(tmpdir, "cache");
+    }
+
+    public void testOnlyChangedAndDependentFilesAreRecompiled() throws Exception {
+        writeSource("a.kt", "package a\nfun foo(): Int = 1\n");
+        writeSource("b.kt", "package b\nfun bar(): Int = a.foo()\n");
+        writeSource("c.kt", "package c\nfun baz(): Int = 3\n");
+
+        assertEquals(Lists.newArrayList("3 of 3"), compile());
+
+        // Nothing changed
+        assertEquals(Lists.<String>newArrayList(), compile());
+        assertOutputExists("a", "b", "c");
+
+        // The signature is the same, dependent files are not recompiled
+        writeSource("a.kt", "package a\nfun foo(): Int = 2\n");
+        assertEquals(Lists.newArrayList("1 of 3"), compile());
+
+        // The signature has changed, b.kt depends on it
+        writeSource("a.kt", "package a\nfun foo(): Int = 2\nfun foo(i: Int): Int = i\n");
+        assertEquals(Lists.newArrayList("1 of 3", "1 of 3"), compile());
+
+        // Classes of unchanged files are restored from the cache
+        FileUtil.delete(output);
+        assertEquals(Lists.<String>newArrayList(), compile());
+        assertOutputExists("a", "b", "c");
+    }
+
+    public void testNewFileInExistingNamespace() throws Exception {
+        writeSource("a1.kt", "package a\nfun foo(): Int = 1\n");
+        assertEquals(Lists.newArrayList("1 of 1"), compile());
+
+        // The namespace class contains the declarations of both files, so they are compiled together
+        writeSource("a2.kt", "package a\nfun bar(): Int = foo()\n");
+        assertEquals(Lists.newArrayList("1 of 2", "2 of 2"), compile());
+        assertOutputExists("a");
+    }
+
+    private void writeSource(@NotNull String name, @NotNull String text) throws IOException {
+        FileUtil.writeToFile(new File(sources, name), text);
+    }
+
+    private void assertOutputExists(@NotNull String... namespaces) {
+        for (String namespace : namespaces) {
+            String className = namespace + "/" + PackageClassUtils.getPackageClassName(new FqName(namespace)) + ".class";
+            assertTrue(className, new File(output, className).exists());
+        }
+    }
+
+    /**
+     * @return numbers of files compiled in each round
+     */
+    @NotNull
+    private List<String> compile() {
+        final List<String> rounds = Lists.newArrayList();
+        CompilerConfiguration configuration = JetTestUtils.compilerConfigurationForTests(ConfigurationKind.JDK_ONLY, TestJdkKind.MOCK_JDK);
+        configuration.add(CommonConfigurationKeys.SOURCE_ROOTS_KEY, sources.getPath());
+        configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, new MessageCollector() {
+            @Override
+            public void report(@NotNull CompilerMessageSeverity severity, @NotNull String message, @NotNull CompilerMessageLocation location) {
+                assertFalse(message, CompilerMessageSeverity.ERRORS.contains(severity));
+                String prefix = "Incremental compilation round ";
+                if (message.startsWith(prefix)) {
+                    rounds.add(message.substring(message.indexOf(": ") + 2, message.lastIndexOf(" files")));
+                }
+            }
+        });
+        assertTrue(IncrementalCompiler.compile(configuration, output, cache));
+        return rounds;
+    }
+}
@@ -27,6 +27,9 @@ import org.jetbrains.jet.lang.descriptors.ModuleDescriptor;
 import org.jetbrains.jet.lang.descriptors.NamespaceDescriptor;
 import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.lazy.storage.LockBasedStorageManager;
+import org.jetbrains.jet.lang.resolve.lazy.storage.LockPerKeyStorageManager;
+import org.jetbrains.jet.lang.resolve.lazy.storage.StorageManager;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.test.util.NamespaceComparator;
@@ -49,12 +52,13 @@ public class LazyResolveStdlibLoadingTest extends KotlinTestWithEnvironmentManag
     }
 
     protected void doTestForGivenFiles(
-            List<JetFile> files
+            List<JetFile> files,
+            StorageManager storageManager
     ) {
         Set<Name> namespaceShortNames = LazyResolveTestUtil.getTopLevelPackagesFromFileList(files);
 
         ModuleDescriptor module = LazyResolveTestUtil.resolveEagerly(files, stdlibEnvironment);
-        ModuleDescriptor lazyModule = LazyResolveTestUtil.resolveLazily(files, stdlibEnvironment);
+        ModuleDescriptor lazyModule = LazyResolveTestUtil.resolveLazily(files, stdlibEnvironment, storageManager);
 
         for (Name name : namespaceShortNames) {
             NamespaceDescriptor eager = module.getNamespace(FqName.topLevel(name));
@@ -65,7 +69,15 @@ public class LazyResolveStdlibLoadingTest extends KotlinTestWithEnvironmentManag
 
     public void testStdLib() throws Exception {
         doTestForGivenFiles(
-                convertToJetFiles(collectKtFiles(STD_LIB_SRC))
+                convertToJetFiles(collectKtFiles(STD_LIB_SRC)),
+                new LockBasedStorageManager()
+        );
+    }
+
+    public void testStdLibWithLockPerKeyStorageManager() throws Exception {
+        doTestForGivenFiles(
+                convertToJetFiles(collectKtFiles(STD_LIB_SRC)),
+                new LockPerKeyStorageManager()
         );
     }
 
@@ -45,6 +45,7 @@ import org.jetbrains.jet.lang.resolve.java.JavaDescriptorResolver;
 import org.jetbrains.jet.lang.resolve.java.PsiClassFinder;
 import org.jetbrains.jet.lang.resolve.lazy.declarations.FileBasedDeclarationProviderFactory;
 import org.jetbrains.jet.lang.resolve.lazy.storage.LockBasedStorageManager;
+import org.jetbrains.jet.lang.resolve.lazy.storage.StorageManager;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
@@ -88,6 +89,14 @@ public class LazyResolveTestUtil {
     }
 
     public static KotlinCodeAnalyzer resolveLazilyWithSession(List<JetFile> files, JetCoreEnvironment environment) {
+        return resolveLazilyWithSession(files, environment, new LockBasedStorageManager());
+    }
+
+    public static KotlinCodeAnalyzer resolveLazilyWithSession(
+            List<JetFile> files,
+            JetCoreEnvironment environment,
+            StorageManager storageManager
+    ) {
         JetTestUtils.newTrace(environment);
 
         ModuleDescriptorImpl javaModule = AnalyzerFacadeForJVM.createJavaModule("<java module>");
@@ -100,7 +109,6 @@ public class LazyResolveTestUtil {
         final JavaDescriptorResolver javaDescriptorResolver = injector.getJavaDescriptorResolver();
 
 
-        LockBasedStorageManager storageManager = new LockBasedStorageManager();
         FileBasedDeclarationProviderFactory declarationProviderFactory = new FileBasedDeclarationProviderFactory(storageManager, files, new Predicate<FqName>() {
             @Override
             public boolean apply(FqName fqName) {
@@ -138,6 +146,10 @@ public class LazyResolveTestUtil {
         return resolveLazilyWithSession(files, environment).getRootModuleDescriptor();
     }
 
+    public static ModuleDescriptor resolveLazily(List<JetFile> files, JetCoreEnvironment environment, StorageManager storageManager) {
+        return resolveLazilyWithSession(files, environment, storageManager).getRootModuleDescriptor();
+    }
+
     @NotNull
     public static Set<Name> getTopLevelPackagesFromFileList(@NotNull List<JetFile> files) {
         Set<Name> shortNames = Sets.newLinkedHashSet();
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.lazy.storage;
+
+import com.intellij.openapi.util.Computable;
+import com.intellij.util.Function;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LockPerKeyStorageManagerTest {
+
+    private final LockPerKeyStorageManager storageManager = new LockPerKeyStorageManager();
+
+    @Test
+    public void memoizedFunctionComputesOncePerKey() {
+        final AtomicInteger counter = new AtomicInteger();
+        MemoizedFunctionToNotNull<String, Integer> f = storageManager.createMemoizedFunction(new Function<String, Integer>() {
+            @Override
+            public Integer fun(String s) {
+                counter.incrementAndGet();
+                return s.length();
+            }
+        }, StorageManager.ReferenceKind.STRONG);
+
+        Assert.assertEquals(3, (int) f.fun("foo"));
+        Assert.assertEquals(3, (int) f.fun("foo"));
+        Assert.assertEquals(6, (int) f.fun("foobar"));
+        Assert.assertEquals(2, counter.get());
+    }
+
+    @Test
+    public void nullableValuesAreMemoized() {
+        final AtomicInteger counter = new AtomicInteger();
+        NullableLazyValue<String> value = storageManager.createNullableLazyValue(new Computable<String>() {
+            @Override
+            public String compute() {
+                counter.incrementAndGet();
+                return null;
+            }
+        });
+
+        Assert.assertNull(value.compute());
+        Assert.assertNull(value.compute());
+        Assert.assertEquals(1, counter.get());
+    }
+
+    @Test
+    public void independentKeysAreComputedConcurrently() throws Exception {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final MemoizedFunctionToNotNull<String, String> f = storageManager.createMemoizedFunction(new Function<String, String>() {
+            @Override
+            public String fun(String s) {
+                bothStarted.countDown();
+                try {
+                    // With a single global lock the second computation can not start until the first one finishes
+                    Assert.assertTrue("Computations were serialized", bothStarted.await(10, TimeUnit.SECONDS));
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return s;
+            }
+        }, StorageManager.ReferenceKind.STRONG);
+
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread first = startThread(error, new Runnable() {
+            @Override
+            public void run() {
+                f.fun("a");
+            }
+        });
+        Thread second = startThread(error, new Runnable() {
+            @Override
+            public void run() {
+                f.fun("b");
+            }
+        });
+        first.join();
+        second.join();
+
+        Assert.assertNull(error.get());
+    }
+
+    @Test
+    public void recursionOnOneThreadReenters() {
+        final AtomicInteger counter = new AtomicInteger();
+        final AtomicReference<MemoizedFunctionToNotNull<Integer, Integer>> f = new AtomicReference<MemoizedFunctionToNotNull<Integer, Integer>>();
+        f.set(storageManager.createMemoizedFunction(new Function<Integer, Integer>() {
+            @Override
+            public Integer fun(Integer depth) {
+                // The innermost computation stores the value, the outer ones return it
+                return counter.incrementAndGet() < 3 ? f.get().fun(depth) : depth;
+            }
+        }, StorageManager.ReferenceKind.STRONG));
+
+        Assert.assertEquals(1, (int) f.get().fun(1));
+        Assert.assertEquals(1, (int) f.get().fun(1));
+        Assert.assertEquals(3, counter.get());
+    }
+
+    @Test
+    public void failedComputationIsRetried() {
+        final AtomicInteger counter = new AtomicInteger();
+        MemoizedFunctionToNotNull<String, String> f = storageManager.createMemoizedFunction(new Function<String, String>() {
+            @Override
+            public String fun(String s) {
+                if (counter.incrementAndGet() == 1) {
+                    throw new IllegalStateException("first attempt");
+                }
+                return s;
+            }
+        }, StorageManager.ReferenceKind.STRONG);
+
+        try {
+            f.fun("a");
+            Assert.fail("The exception was not rethrown");
+        }
+        catch (IllegalStateException e) {
+            Assert.assertEquals("first attempt", e.getMessage());
+        }
+        Assert.assertEquals("a", f.fun("a"));
+        Assert.assertEquals("a", f.fun("a"));
+        Assert.assertEquals(2, counter.get());
+    }
+
+    @Test
+    public void cycleAcrossThreadsIsDetected() throws Exception {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final AtomicReference<MemoizedFunctionToNotNull<String, String>> f = new AtomicReference<MemoizedFunctionToNotNull<String, String>>();
+        f.set(storageManager.createMemoizedFunction(new Function<String, String>() {
+            @Override
+            public String fun(String s) {
+                bothStarted.countDown();
+                try {
+                    bothStarted.await();
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return f.get().fun("a".equals(s) ? "b" : "a");
+            }
+        }, StorageManager.ReferenceKind.STRONG));
+
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread first = startThread(error, new Runnable() {
+            @Override
+            public void run() {
+                f.get().fun("a");
+            }
+        });
+        Thread second = startThread(error, new Runnable() {
+            @Override
+            public void run() {
+                f.get().fun("b");
+            }
+        });
+        first.join(TimeUnit.SECONDS.toMillis(10));
+        second.join(TimeUnit.SECONDS.toMillis(10));
+
+        Assert.assertFalse("Threads are deadlocked", first.isAlive() || second.isAlive());
+        Assert.assertTrue(error.get() instanceof LockPerKeyStorageManager.CycleDetectedException);
+    }
+
+    private static Thread startThread(final AtomicReference<Throwable> error, final Runnable runnable) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                }
+                catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+}
@@ -49,11 +49,16 @@ public class ReplInterpreterTest {
         Disposer.dispose(disposable);
     }
 
-    private void testFile(@NotNull String relativePath) {
+    @NotNull
+    private ReplInterpreter createInterpreter() {
         CompilerConfiguration configuration =
                 JetTestUtils.compilerConfigurationForTests(ConfigurationKind.JDK_ONLY, TestJdkKind.FULL_JDK);
         configuration.add(JVMConfigurationKeys.CLASSPATH_KEY, new File("out/production/runtime"));
-        ReplInterpreter repl = new ReplInterpreter(disposable, configuration);
+        return new ReplInterpreter(disposable, configuration);
+    }
+
+    private void testFile(@NotNull String relativePath) {
+        ReplInterpreter repl = createInterpreter();
 
         ReplSessionTestFile file = ReplSessionTestFile.load(new File("compiler/testData/repl/" + relativePath));
         for (ReplSessionTestFile.OneLine t : file.getLines()) {
@@ -156,4 +161,25 @@ public class ReplInterpreterTest {
         testFile("multiline3.repl");
     }
 
+    @Test
+    public void longSession() {
+        ReplInterpreter repl = createInterpreter();
+        eval(repl, "import java.util.ArrayList");
+        eval(repl, "fun twice(x: Int) = 2 * x");
+        // Long enough for the trace to be compacted more than once
+        for (int i = 0; i < 150; i++) {
+            eval(repl, "val x" + i + " = twice(" + i + ")");
+        }
+        Assert.assertEquals(298, eval(repl, "x149"));
+        Assert.assertEquals("java.util.ArrayList", eval(repl, "ArrayList<Int>().getClass()!!.getName()"));
+        eval(repl, "fun twice(x: Int) = 0");
+        Assert.assertEquals(0, eval(repl, "twice(x3)"));
+    }
+
+    private static Object eval(@NotNull ReplInterpreter repl, @NotNull String line) {
+        ReplInterpreter.LineResult lineResult = repl.eval(line);
+        Assert.assertEquals("after evaluation of: " + line, ReplInterpreter.LineResultType.SUCCESS, lineResult.getType());
+        return lineResult.getValue();
+    }
+
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.resolve;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.AbstractBenchmark;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.diagnostics.Diagnostic;
+import org.jetbrains.jet.lang.diagnostics.Severity;
+import org.jetbrains.jet.lang.psi.JetFile;
+
+/**
+ * Analyzes a generated builder-like file where the same names ({@code plus} and {@code nest}) are declared as extensions
+ * of many classes, and are called with several implicit receivers, and reports the time taken.
+ */
+public class OverloadedExtensionsBenchmark extends AbstractBenchmark {
+    private static final int CLASS_COUNT = 200;
+
+    private JetFile file;
+
+    public static void main(String[] args) throws Exception {
+        new OverloadedExtensionsBenchmark().run();
+    }
+
+    @Override
+    protected void setUp(@NotNull JetCoreEnvironment environment) {
+        file = JetTestUtils.createFile("dsl.kt", generateText(CLASS_COUNT), environment.getProject());
+    }
+
+    @Override
+    protected void runRound(boolean report) {
+        long start = System.nanoTime();
+        AnalyzeExhaust exhaust = analyzeAlone(file);
+        long time = System.nanoTime() - start;
+
+        if (report) {
+            if (exhaust == null) {
+                report("%d classes: analysis failed", CLASS_COUNT);
+                return;
+            }
+            int errorCount = 0;
+            for (Diagnostic diagnostic : exhaust.getBindingContext().getDiagnostics()) {
+                if (diagnostic.getSeverity() == Severity.ERROR) errorCount++;
+            }
+            report("%d classes: %d ms, %d errors", CLASS_COUNT, time / 1000000, errorCount);
+        }
+    }
+
+    @NotNull
+    private static String generateText(int classCount) {
+        StringBuilder text = new StringBuilder("package dsl\n\n");
+        for (int i = 0; i < classCount; i++) {
+            text.append("class C").append(i).append("\n");
+            text.append("fun C").append(i).append(".plus(other: Int): C").append(i).append(" = this\n");
+            text.append("fun C").append(i).append(".nest(body: C").append(i).append(".() -> Unit) { this.body() }\n\n");
+        }
+        for (int i = 0; i < classCount; i++) {
+            text.append("fun test").append(i).append("() {\n");
+            text.append("    C").append(i).append("().nest {\n");
+            text.append("        C").append((i + 1) % classCount).append("().nest {\n");
+            text.append("            C").append((i + 2) % classCount).append("().nest {\n");
+            text.append("                plus(1)\n");
+            text.append("                this + 2\n");
+            text.append("            }\n");
+            text.append("        }\n");
+            text.append("    }\n");
+            text.append("}\n\n");
+        }
+        return text.toString();
+    }
+}
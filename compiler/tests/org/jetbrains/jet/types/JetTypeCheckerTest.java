@@ -47,6 +47,7 @@ import org.jetbrains.jet.lang.types.ErrorUtils;
 import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.jet.lang.types.TypeUtils;
 import org.jetbrains.jet.lang.types.checker.JetTypeChecker;
+import org.jetbrains.jet.lang.types.checker.SubtypingCache;
 import org.jetbrains.jet.lang.types.expressions.ExpressionTypingServices;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 
@@ -494,6 +495,28 @@ public class JetTypeCheckerTest extends JetLiteFixture {
         assertEquals(expected, allSupertypes);
     }
 
+    public void testCachedSubtyping() throws Exception {
+        SubtypingCache cache = new SubtypingCache();
+        SubtypingCache previous = SubtypingCache.setCurrent(cache);
+        try {
+            JetType derived = makeType("Derived_T<Int>");
+            JetType baseIn = makeType("Base_T<in Int>");
+            JetType baseAny = makeType("Base_T<Any>");
+            JetType intType = makeType("Int");
+            for (int i = 0; i < 2; i++) {
+                assertTrue(JetTypeChecker.INSTANCE.isSubtypeOf(derived, baseIn));
+                assertFalse(JetTypeChecker.INSTANCE.isSubtypeOf(derived, baseAny));
+                assertFalse(JetTypeChecker.INSTANCE.isSubtypeOf(intType, baseIn));
+                assertTrue(JetTypeChecker.INSTANCE.isSubtypeOf(intType, makeType("Any?")));
+            }
+            // The second time the same types are checked from the cache, except for "Any?" which is a new type every time
+            assertTrue(cache.toString(), cache.getHitCount() >= 3);
+        }
+        finally {
+            SubtypingCache.setCurrent(previous);
+        }
+    }
+
     private void assertSubtype(String subtype, String supertype) {
         assertSubtypingRelation(subtype, supertype, true);
     }
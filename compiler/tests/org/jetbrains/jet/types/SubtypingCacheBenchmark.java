@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.types;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.AbstractBenchmark;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.types.checker.SubtypingCache;
+
+import java.io.File;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Analyzes the Kotlin sources under the given directory (compiler/testData/resolve by default, with the resolve test
+ * markup stripped) with and without {@link SubtypingCache}, and reports the time taken and the hit rate of the cache.
+ */
+public class SubtypingCacheBenchmark extends AbstractBenchmark {
+    private static final Pattern MARKUP = Pattern.compile("(~[^~]+~)|(`[^`]+`)");
+
+    private final File root;
+    private List<JetFile> files;
+
+    public SubtypingCacheBenchmark(@NotNull File root) {
+        this.root = root;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new SubtypingCacheBenchmark(new File(args.length > 0 ? args[0] : "compiler/testData/resolve")).run();
+    }
+
+    @Override
+    protected void setUp(@NotNull JetCoreEnvironment environment) throws Exception {
+        files = loadFiles(environment, root, Pattern.compile(".*\\.(kt|resolve)"), MARKUP);
+    }
+
+    @Override
+    protected void runRound(boolean report) {
+        analyze("no cache", SubtypingCache.DISABLED, report);
+        analyze("cache", new SubtypingCache(), report);
+    }
+
+    private void analyze(@NotNull String name, @NotNull SubtypingCache cache, boolean report) {
+        // The analyses reuse the cache which is current when they start
+        SubtypingCache previous = SubtypingCache.setCurrent(cache);
+        long start = System.nanoTime();
+        try {
+            for (JetFile file : files) {
+                analyzeAlone(file);
+            }
+        }
+        finally {
+            SubtypingCache.setCurrent(previous);
+        }
+        long time = System.nanoTime() - start;
+
+        if (report) {
+            int checks = cache.getHitCount() + cache.getMissCount();
+            report("%-10s %6d ms, cached checks: %d, hit rate: %.1f%%",
+                   name, time / 1000000, checks, checks == 0 ? 0.0 : 100.0 * cache.getHitCount() / checks);
+        }
+    }
+}
@@ -377,6 +377,17 @@ public class TypeSubstitutorTest extends KotlinTestWithEnvironment {
         );
     }
 
+    public void testEqualTypesShareMemberScope() throws Exception {
+        JetType first = resolveType("List<Int>");
+        JetType second = resolveType("List<Int>");
+        assertNotSame(first, second);
+        assertSame(first.getMemberScope(), second.getMemberScope());
+
+        Name get = Name.identifier("get");
+        assertSame(first.getMemberScope().getFunctions(get), second.getMemberScope().getFunctions(get));
+        assertNotSame(first.getMemberScope(), resolveType("List<String>").getMemberScope());
+    }
+
     //public void testTwoParametersInChain() throws Exception {
     //    doTest(
     //            "P<Int, Int>",
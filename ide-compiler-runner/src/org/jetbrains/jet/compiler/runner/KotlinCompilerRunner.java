@@ -26,6 +26,7 @@ import com.intellij.openapi.projectRoots.SimpleJavaSdkType;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.Function;
 import com.intellij.util.SystemProperties;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
 import org.jetbrains.jet.cli.common.messages.MessageCollector;
@@ -34,7 +35,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class KotlinCompilerRunner {
     public static void runCompiler(
@@ -43,31 +46,52 @@ public class KotlinCompilerRunner {
             File scriptFile,
             OutputItemsCollector collector,
             boolean runOutOfProcess
+    ) {
+        runCompiler(messageCollector, environment, scriptFile, collector, runOutOfProcess, null);
+    }
+
+    /**
+     * @param incrementalCacheDir if not null, only the changed files and the files depending on them are recompiled
+     */
+    public static void runCompiler(
+            MessageCollector messageCollector,
+            CompilerEnvironment environment,
+            File scriptFile,
+            OutputItemsCollector collector,
+            boolean runOutOfProcess,
+            @Nullable File incrementalCacheDir
     ) {
         if (runOutOfProcess) {
-            runOutOfProcess(messageCollector, collector, environment, scriptFile);
+            runOutOfProcess(messageCollector, collector, environment, scriptFile, incrementalCacheDir);
         }
         else {
-            runInProcess(messageCollector, collector, environment, scriptFile);
+            runInProcess(messageCollector, collector, environment, scriptFile, incrementalCacheDir);
         }
     }
 
     private static void runInProcess(final MessageCollector messageCollector,
             OutputItemsCollector collector,
             final CompilerEnvironment environment,
-            final File scriptFile) {
+            final File scriptFile,
+            @Nullable final File incrementalCacheDir) {
         CompilerRunnerUtil.outputCompilerMessagesAndHandleExitCode(messageCollector, collector, new Function<PrintStream, Integer>() {
             @Override
             public Integer fun(PrintStream stream) {
-                return execInProcess(environment, scriptFile, stream, messageCollector);
+                return execInProcess(environment, scriptFile, incrementalCacheDir, stream, messageCollector);
             }
         });
     }
 
-    private static int execInProcess(CompilerEnvironment environment, File scriptFile, PrintStream out, MessageCollector messageCollector) {
+    private static int execInProcess(
+            CompilerEnvironment environment,
+            File scriptFile,
+            @Nullable File incrementalCacheDir,
+            PrintStream out,
+            MessageCollector messageCollector
+    ) {
         try {
             String compilerClassName = "org.jetbrains.jet.cli.jvm.K2JVMCompiler";
-            String[] arguments = commandLineArguments(environment.getOutput(), scriptFile);
+            String[] arguments = commandLineArguments(environment.getOutput(), scriptFile, incrementalCacheDir);
             messageCollector.report(CompilerMessageSeverity.INFO,
                                     "Using kotlinHome=" + environment.getKotlinPaths().getHomePath(),
                                     CompilerMessageLocation.NO_LOCATION);
@@ -85,26 +109,32 @@ public class KotlinCompilerRunner {
         }
     }
 
-    private static String[] commandLineArguments(File outputDir, File scriptFile) {
-        return new String[]{
+    private static String[] commandLineArguments(File outputDir, File scriptFile, @Nullable File incrementalCacheDir) {
+        List<String> arguments = new ArrayList<String>(Arrays.asList(
                 "-module", scriptFile.getAbsolutePath(),
                 "-output", outputDir.getPath(),
                 "-tags", "-verbose", "-version",
                 "-notNullAssertions", "-notNullParamAssertions",
-                "-noStdlib", "-noJdkAnnotations", "-noJdk"};
+                "-noStdlib", "-noJdkAnnotations", "-noJdk"));
+        if (incrementalCacheDir != null) {
+            arguments.add("-incrementalCache");
+            arguments.add(incrementalCacheDir.getPath());
+        }
+        return arguments.toArray(new String[arguments.size()]);
     }
 
     private static void runOutOfProcess(
             final MessageCollector messageCollector,
             final OutputItemsCollector itemCollector,
             CompilerEnvironment environment,
-            File scriptFile
+            File scriptFile,
+            @Nullable File incrementalCacheDir
     ) {
         SimpleJavaParameters params = new SimpleJavaParameters();
         params.setJdk(new SimpleJavaSdkType().createJdk("tmp", SystemProperties.getJavaHome()));
         params.setMainClass("org.jetbrains.jet.cli.jvm.K2JVMCompiler");
 
-        for (String arg : commandLineArguments(environment.getOutput(), scriptFile)) {
+        for (String arg : commandLineArguments(environment.getOutput(), scriptFile, incrementalCacheDir)) {
             params.getProgramParametersList().add(arg);
         }
 
@@ -74,6 +74,7 @@ class JvmDeclarationsCacheProvider extends DeclarationsCacheProvider {
                         incompleteTrace = null;
                     }
 
+                    // The whole analysis is dropped on any out of block change, e.g. an edit to a class header
                     return Result.<KotlinDeclarationsCache>create(
                             new KotlinDeclarationsCacheImpl(analyzeExhaust),
                             PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT
@@ -19,10 +19,12 @@ package org.jetbrains.jet.plugin.project;
 import com.google.common.base.Predicates;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.libraries.LibraryUtil;
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderEx;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
@@ -33,7 +35,6 @@ import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.util.Function;
-import com.intellij.util.containers.SLRUCache;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.analyzer.AnalyzeExhaust;
@@ -53,14 +54,25 @@ import org.jetbrains.jet.plugin.util.ApplicationUtils;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 public final class AnalyzerFacadeWithCache {
 
     private static final Logger LOG = Logger.getInstance("org.jetbrains.jet.plugin.project.AnalyzerFacadeWithCache");
 
-    private final static Key<CachedValue<SLRUCache<JetFile, AnalyzeExhaust>>> ANALYZE_EXHAUST_FULL = Key.create("ANALYZE_EXHAUST_FULL");
+    private final static Key<CachedValue<FileAnalysisCache>> ANALYZE_EXHAUST_FULL = Key.create("ANALYZE_EXHAUST_FULL");
+
+    // The analyses of the bodies share the descriptors of the declarations cache, which are not thread-safe
+    private static final ReentrantLock analysisLock = new ReentrantLock();
+    private static final long CANCELLATION_CHECK_INTERVAL_MS = 10;
+
+    private static final AtomicInteger hitCount = new AtomicInteger();
+    private static final AtomicInteger missCount = new AtomicInteger();
 
-    private static final Object lock = new Object();
     public static final Function<JetFile, Collection<JetFile>> SINGLE_DECLARATION_PROVIDER = new Function<JetFile, Collection<JetFile>>() {
         @Override
         public Collection<JetFile> fun(JetFile file) {
@@ -77,46 +89,74 @@ public final class AnalyzerFacadeWithCache {
     // TODO: Also need to pass several files when user have multi-file environment
     @NotNull
     public static AnalyzeExhaust analyzeFileWithCache(@NotNull JetFile file) {
-        // Need lock, because parallel threads can start evaluation of compute() simultaneously
-        synchronized (lock) {
-            Project project = file.getProject();
-            return CachedValuesManager.getManager(project).getCachedValue(
-                    project,
+        if (DumbService.isDumb(file.getProject())) {
+            return emptyExhaust();
+        }
+        return getFileAnalysisCache(file.getProject()).get(file);
+    }
+
+    /**
+     * @return the number of the analyses found in the cache and made anew since the start, for internal actions
+     */
+    @NotNull
+    public static String getCacheStatistics() {
+        int hits = hitCount.get();
+        int misses = missCount.get();
+        return String.format("Analyzed files cache: %d hits, %d misses, hit rate %.1f%%",
+                             hits, misses, hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses));
+    }
+
+    @NotNull
+    private static FileAnalysisCache getFileAnalysisCache(@NotNull Project project) {
+        CachedValue<FileAnalysisCache> cachedValue = project.getUserData(ANALYZE_EXHAUST_FULL);
+        if (cachedValue == null) {
+            cachedValue = ((UserDataHolderEx) project).putUserDataIfAbsent(
                     ANALYZE_EXHAUST_FULL,
-                    new CachedValueProvider<SLRUCache<JetFile, AnalyzeExhaust>>() {
+                    CachedValuesManager.getManager(project).createCachedValue(new CachedValueProvider<FileAnalysisCache>() {
                         @Nullable
                         @Override
-                        public Result<SLRUCache<JetFile, AnalyzeExhaust>> compute() {
-                            SLRUCache<JetFile, AnalyzeExhaust> cache = new SLRUCache<JetFile, AnalyzeExhaust>(3, 8) {
-
-                                @NotNull
-                                @Override
-                                public AnalyzeExhaust createValue(JetFile file) {
-                                    try {
-                                        if (DumbService.isDumb(file.getProject())) {
-                                            return emptyExhaust();
-                                        }
-
-                                        ApplicationUtils.warnTimeConsuming(LOG);
-
-                                        AnalyzeExhaust analyzeExhaustHeaders = analyzeHeadersWithCacheOnFile(file);
-
-                                        return analyzeBodies(analyzeExhaustHeaders, file);
-                                    }
-                                    catch (ProcessCanceledException e) {
-                                        throw e;
-                                    }
-                                    catch (Throwable e) {
-                                        handleError(e);
-                                        return emptyExhaustWithDiagnosticOnFile(file, e);
-                                    }
-                                }
-                            };
-                            return Result.create(cache, PsiModificationTracker.MODIFICATION_COUNT);
+                        public Result<FileAnalysisCache> compute() {
+                            // The analyses of the files which weren't modified since are still valid while the declarations are
+                            return Result.create(new FileAnalysisCache(), PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT);
                         }
-                    },
-                    false
-            ).get(file);
+                    }, false));
+        }
+        return cachedValue.getValue();
+    }
+
+    @NotNull
+    private static AnalyzeExhaust analyzeFile(@NotNull JetFile file) {
+        lockAnalysis();
+        try {
+            ApplicationUtils.warnTimeConsuming(LOG);
+
+            AnalyzeExhaust analyzeExhaustHeaders = analyzeHeadersWithCacheOnFile(file);
+
+            return analyzeBodies(analyzeExhaustHeaders, file);
+        }
+        catch (ProcessCanceledException e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            handleError(e);
+            return emptyExhaustWithDiagnosticOnFile(file, e);
+        }
+        finally {
+            analysisLock.unlock();
+        }
+    }
+
+    // A thread waiting for the analysis of another file stops waiting as soon as it's canceled
+    private static void lockAnalysis() {
+        while (true) {
+            ProgressManager.checkCanceled();
+            try {
+                if (analysisLock.tryLock(CANCELLATION_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)) return;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException();
+            }
         }
     }
 
@@ -187,4 +227,105 @@ public final class AnalyzerFacadeWithCache {
 
         return AnalyzerFacadeProvider.getAnalyzerFacadeForFile(file).getLazyResolveSession(fileProject, files);
     }
+
+    /**
+     * The analyses of the files, each valid while its file isn't modified. An analysis is made once, by the first thread
+     * asking for it, the others wait for its result without blocking the threads asking for the other files.
+     */
+    private static class FileAnalysisCache {
+        // Only the analyses used last are kept, not to hold the binding contexts of all the files opened since an edit
+        private static final int MAX_FILE_COUNT = 32;
+
+        private final ConcurrentMap<JetFile, FileAnalysis> analyses = new ConcurrentHashMap<JetFile, FileAnalysis>();
+        private final AtomicLong accessCount = new AtomicLong();
+
+        @NotNull
+        public AnalyzeExhaust get(@NotNull JetFile file) {
+            while (true) {
+                long modificationStamp = file.getModificationStamp();
+                FileAnalysis analysis = analyses.get(file);
+                if (analysis != null && analysis.modificationStamp == modificationStamp) {
+                    hitCount.incrementAndGet();
+                }
+                else {
+                    FileAnalysis newAnalysis = new FileAnalysis(file, modificationStamp);
+                    boolean added = analysis == null
+                                    ? analyses.putIfAbsent(file, newAnalysis) == null
+                                    : analyses.replace(file, analysis, newAnalysis);
+                    if (!added) continue;
+
+                    missCount.incrementAndGet();
+                    analysis = newAnalysis;
+                    removeLeastRecentlyUsed();
+                    analysis.task.run();
+                }
+                analysis.lastAccess = accessCount.incrementAndGet();
+
+                AnalyzeExhaust exhaust = analysis.await();
+                if (exhaust != null) return exhaust;
+
+                // The analysis was canceled by the thread making it, make it anew unless this one is canceled too
+                analyses.remove(file, analysis);
+                ProgressManager.checkCanceled();
+            }
+        }
+
+        private void removeLeastRecentlyUsed() {
+            while (analyses.size() > MAX_FILE_COUNT) {
+                Map.Entry<JetFile, FileAnalysis> leastRecentlyUsed = null;
+                for (Map.Entry<JetFile, FileAnalysis> entry : analyses.entrySet()) {
+                    if (leastRecentlyUsed == null || entry.getValue().lastAccess < leastRecentlyUsed.getValue().lastAccess) {
+                        leastRecentlyUsed = entry;
+                    }
+                }
+                if (leastRecentlyUsed == null) return;
+                analyses.remove(leastRecentlyUsed.getKey(), leastRecentlyUsed.getValue());
+            }
+        }
+    }
+
+    private static class FileAnalysis {
+        private static final long WAIT_INTERVAL_MS = 10;
+
+        private final long modificationStamp;
+        private final FutureTask<AnalyzeExhaust> task;
+        private volatile long lastAccess;
+
+        private FileAnalysis(@NotNull final JetFile file, long modificationStamp) {
+            this.modificationStamp = modificationStamp;
+            this.task = new FutureTask<AnalyzeExhaust>(new Callable<AnalyzeExhaust>() {
+                @Override
+                public AnalyzeExhaust call() {
+                    return analyzeFile(file);
+                }
+            });
+        }
+
+        /**
+         * @return the result of the analysis, or {@code null} if it was canceled
+         */
+        @Nullable
+        public AnalyzeExhaust await() {
+            while (true) {
+                // The thread waiting for the analysis made by another one can be canceled meanwhile
+                ProgressManager.checkCanceled();
+                try {
+                    return task.get(WAIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                }
+                catch (TimeoutException e) {
+                    // Keep waiting
+                }
+                catch (InterruptedException e) {
+                    throw new ProcessCanceledException(e);
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof ProcessCanceledException) return null;
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new IllegalStateException("Failed to analyze file", cause);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,3 @@
+// FALSE
+val test: Int
+    get() = 1<caret>2
\ No newline at end of file
@@ -0,0 +1,7 @@
+// FALSE
+fun first() {
+}
+
+// comment<caret>
+fun second() {
+}
@@ -0,0 +1,2 @@
+// TRUE
+fun some() = 1<caret>2
\ No newline at end of file
@@ -0,0 +1,2 @@
+// FALSE
+fun some(): Int = 1<caret>2
\ No newline at end of file
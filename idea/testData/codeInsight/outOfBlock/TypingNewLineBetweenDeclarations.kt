@@ -0,0 +1,8 @@
+// FALSE
+class Some {
+    fun first() {
+    }<caret>
+
+    fun second() {
+    }
+}
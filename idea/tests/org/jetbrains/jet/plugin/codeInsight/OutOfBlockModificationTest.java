@@ -18,6 +18,7 @@ package org.jetbrains.jet.plugin.codeInsight;
 
 import com.intellij.psi.*;
 import com.intellij.psi.impl.JavaCodeBlockModificationListener;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
 import org.jetbrains.jet.plugin.PluginTestCaseBase;
 
@@ -75,6 +76,26 @@ public class OutOfBlockModificationTest extends LightCodeInsightFixtureTestCase
         doTest();
     }
 
+    public void testTypingInAccessorWithType() {
+        doTypingTest("1");
+    }
+
+    public void testTypingInComment() {
+        doTypingTest("1");
+    }
+
+    public void testTypingInExpressionBodyWithInference() {
+        doTypingTest("1");
+    }
+
+    public void testTypingInExpressionBodyWithType() {
+        doTypingTest("1");
+    }
+
+    public void testTypingNewLineBetweenDeclarations() {
+        doTypingTest("\n");
+    }
+
     @Override
     public void setUp() throws Exception {
         super.setUp();
@@ -83,19 +104,7 @@ public class OutOfBlockModificationTest extends LightCodeInsightFixtureTestCase
 
     protected void doTest() {
         myFixture.configureByFile(getTestName(false) + ".kt");
-        String text = myFixture.getDocument(myFixture.getFile()).getText();
-
-        boolean expectedOutOfBlock = false;
-        if (text.startsWith("// TRUE")) {
-            expectedOutOfBlock = true;
-        }
-        else if (text.startsWith("// FALSE")) {
-            expectedOutOfBlock = false;
-        }
-        else {
-            fail("Expectation of code block result test should be configured with " +
-                 "\"// TRUE\" or \"// FALSE\" directive in the beginning of the file");
-        }
+        boolean expectedOutOfBlock = isOutOfBlockExpected();
 
         PsiElement element = myFixture.getFile().findElementAt(myFixture.getCaretOffset());
         assertNotNull("Should be valid element", element);
@@ -104,6 +113,34 @@ public class OutOfBlockModificationTest extends LightCodeInsightFixtureTestCase
                      !expectedOutOfBlock, isInsideCodeBlock(element));
     }
 
+    // Checks that JetCodeBlockModificationListener changes the out of code block modification count on real typing
+    protected void doTypingTest(String textToType) {
+        myFixture.configureByFile(getTestName(false) + ".kt");
+        boolean expectedOutOfBlock = isOutOfBlockExpected();
+
+        PsiModificationTracker tracker = PsiManager.getInstance(getProject()).getModificationTracker();
+        long countBefore = tracker.getOutOfCodeBlockModificationCount();
+        myFixture.type(textToType);
+        PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+
+        assertEquals("Result for out of block modification test differs from expected after typing \"" + textToType + "\"",
+                     expectedOutOfBlock, tracker.getOutOfCodeBlockModificationCount() != countBefore);
+    }
+
+    private boolean isOutOfBlockExpected() {
+        String text = myFixture.getDocument(myFixture.getFile()).getText();
+        if (text.startsWith("// TRUE")) {
+            return true;
+        }
+        else if (text.startsWith("// FALSE")) {
+            return false;
+        }
+
+        fail("Expectation of code block result test should be configured with " +
+             "\"// TRUE\" or \"// FALSE\" directive in the beginning of the file");
+        return false;
+    }
+
     /**
      * Copy of private {@link JavaCodeBlockModificationListener.isInsideCodeBlock()}
      */
@@ -41,6 +41,9 @@ import static org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity.EXCE
 public class KotlinBuilder extends ModuleLevelBuilder {
 
     private static final String KOTLIN_BUILDER_NAME = "Kotlin Builder";
+    private static final String INCREMENTAL_CACHE_DIRECTORY_NAME = "kotlin-incremental";
+    // The incremental compilation is experimental, it's only used when this system property is set to true
+    private static final String INCREMENTAL_COMPILATION_PROPERTY = "kotlin.jps.incremental";
 
     protected KotlinBuilder() {
         super(BuilderCategory.SOURCE_PROCESSOR);
@@ -96,12 +99,20 @@ public class KotlinBuilder extends ModuleLevelBuilder {
 
         OutputItemsCollectorImpl outputItemCollector = new OutputItemsCollectorImpl(outputDir);
 
+        File incrementalCacheDir = null;
+        if (Boolean.parseBoolean(System.getProperty(INCREMENTAL_COMPILATION_PROPERTY))) {
+            incrementalCacheDir = new File(
+                    context.getProjectDescriptor().dataManager.getDataPaths().getTargetDataRoot(representativeTarget),
+                    INCREMENTAL_CACHE_DIRECTORY_NAME);
+        }
+
         KotlinCompilerRunner.runCompiler(
                 messageCollector,
                 environment,
                 scriptFile,
                 outputItemCollector,
-                /*runOutOfProcess = */false);
+                /*runOutOfProcess = */false,
+                incrementalCacheDir);
 
         for (SimpleOutputItem outputItem : outputItemCollector.getOutputs()) {
             outputConsumer.registerOutputFile(
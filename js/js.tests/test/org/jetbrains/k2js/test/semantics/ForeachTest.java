@@ -29,4 +29,20 @@ public final class ForeachTest extends AbstractExpressionTest {
     public void testForOnEmptyArray() throws Exception {
         fooBoxTest();
     }
+
+    public void testForIteratesOverArrayIndices() throws Exception {
+        fooBoxTest();
+    }
+
+    public void testForIteratesOverPrimitiveArray() throws Exception {
+        fooBoxTest();
+    }
+
+    public void testForIteratesOverArrayList() throws Exception {
+        fooBoxTest();
+    }
+
+    public void testForOnEmptyArrayList() throws Exception {
+        fooBoxTest();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.test.semantics;
+
+import org.jetbrains.k2js.config.EcmaVersion;
+import org.jetbrains.k2js.facade.MainCallParameters;
+import org.jetbrains.k2js.test.SingleFileTranslationTest;
+import org.jetbrains.k2js.test.config.TestConfigWithOptimizations;
+import org.jetbrains.k2js.test.rhino.RhinoSystemOutputChecker;
+
+import java.util.Collections;
+
+import static org.jetbrains.k2js.test.utils.JsTestUtils.readFile;
+
+public final class MinifyTest extends SingleFileTranslationTest {
+
+    public MinifyTest() {
+        super("minify/");
+    }
+
+    public void testMinify() throws Exception {
+        String filename = getTestName(true) + ".kt";
+        generateJavaScriptFiles(Collections.singletonList(getInputFilePath(filename)), filename, MainCallParameters.mainWithoutArguments(),
+                                DEFAULT_ECMA_VERSIONS, TestConfigWithOptimizations.MINIFYING);
+        runRhinoTests(filename, DEFAULT_ECMA_VERSIONS, new RhinoSystemOutputChecker("Hello, world 86406\n"));
+
+        for (EcmaVersion version : DEFAULT_ECMA_VERSIONS) {
+            String code = readFile(getOutputFilePath(filename, version));
+            assertFalse(code.contains("accumulatedTotal"));
+            assertFalse(code.contains("secondsPerDay"));
+            assertFalse(code.contains("\n  "));
+            assertTrue(code.contains("86400"));
+            assertTrue(code.contains("'Hello, world'"));
+        }
+    }
+}
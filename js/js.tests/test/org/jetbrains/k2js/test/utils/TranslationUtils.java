@@ -102,10 +102,11 @@ public final class TranslationUtils {
             @NotNull MainCallParameters mainCallParameters,
             @NotNull EcmaVersion version, TestConfigFactory configFactory) throws Exception {
         List<JetFile> psiFiles = createPsiFileList(inputFiles, project);
-        JsProgram program = new K2JSTranslator(getConfig(project, version, configFactory)).generateProgram(psiFiles, mainCallParameters);
+        Config config = getConfig(project, version, configFactory);
+        JsProgram program = new K2JSTranslator(config).generateProgram(psiFiles, mainCallParameters);
         FileWriter writer = new FileWriter(new File(outputFile));
         try {
-            writer.write(CodeGenerator.generateProgramToString(program));
+            writer.write(CodeGenerator.generateProgramToString(program, config.isMinify()));
         }
         finally {
             writer.close();
@@ -149,6 +149,9 @@ public abstract class Config {
     @NotNull
     private final String moduleId;
 
+    private boolean removeUnusedDeclarations = false;
+    private boolean minify = false;
+
     public Config(@NotNull Project project, @NotNull String moduleId, @NotNull EcmaVersion ecmaVersion) {
         this.project = project;
         this.target = ecmaVersion;
@@ -170,6 +173,30 @@ public abstract class Config {
         return moduleId;
     }
 
+    /**
+     * Whether the declarations which the call of main, the tests and the initializers of the packages don't need are left out
+     * of the generated code, see UnusedDeclarationsRemover
+     */
+    public boolean isRemoveUnusedDeclarations() {
+        return removeUnusedDeclarations;
+    }
+
+    public void setRemoveUnusedDeclarations(boolean removeUnusedDeclarations) {
+        this.removeUnusedDeclarations = removeUnusedDeclarations;
+    }
+
+    /**
+     * Whether the local names of the generated code are shortened and the optional whitespace is left out,
+     * see LocalNamesMinifier
+     */
+    public boolean isMinify() {
+        return minify;
+    }
+
+    public void setMinify(boolean minify) {
+        this.minify = minify;
+    }
+
     @NotNull
     protected abstract List<JetFile> generateLibFiles();
 
@@ -25,6 +25,8 @@ import org.jetbrains.jet.lang.resolve.BindingContext;
 import org.jetbrains.k2js.analyze.AnalyzerFacadeForJS;
 import org.jetbrains.k2js.config.Config;
 import org.jetbrains.k2js.facade.exceptions.TranslationException;
+import org.jetbrains.k2js.generate.LocalNamesMinifier;
+import org.jetbrains.k2js.generate.UnusedDeclarationsRemover;
 import org.jetbrains.k2js.translate.general.Translation;
 import org.jetbrains.k2js.utils.JetFileUtils;
 
@@ -56,6 +58,7 @@ public final class K2JSTranslator {
     @NotNull
     private final Config config;
 
+    private int removedDeclarationsSize = 0;
 
     public K2JSTranslator(@NotNull Config config) {
         this.config = config;
@@ -73,14 +76,14 @@ public final class K2JSTranslator {
     @NotNull
     public String generateProgramCode(@NotNull JetFile file, @NotNull MainCallParameters mainCallParameters) throws TranslationException {
         JsProgram program = generateProgram(Arrays.asList(file), mainCallParameters);
-        return generateProgramToString(program);
+        return generateProgramToString(program, config.isMinify());
     }
 
     @NotNull
     public String generateProgramCode(@NotNull List<JetFile> files, @NotNull MainCallParameters mainCallParameters)
             throws TranslationException {
         JsProgram program = generateProgram(files, mainCallParameters);
-        return generateProgramToString(program);
+        return generateProgramToString(program, config.isMinify());
     }
 
     @NotNull
@@ -88,7 +91,21 @@ public final class K2JSTranslator {
             @NotNull MainCallParameters mainCallParameters)
             throws TranslationException {
         BindingContext bindingContext = AnalyzerFacadeForJS.analyzeFilesAndCheckErrors(filesToTranslate, config);
-        return Translation.generateAst(bindingContext, filesToTranslate, mainCallParameters, config);
+        JsProgram program = Translation.generateAst(bindingContext, filesToTranslate, mainCallParameters, config);
+        if (config.isRemoveUnusedDeclarations()) {
+            removedDeclarationsSize += UnusedDeclarationsRemover.removeUnusedDeclarations(program);
+        }
+        if (config.isMinify()) {
+            LocalNamesMinifier.minify(program);
+        }
+        return program;
+    }
+
+    /**
+     * @return the size of the unused declarations left out of the programs generated so far, in characters
+     */
+    public int getRemovedDeclarationsSize() {
+        return removedDeclarationsSize;
     }
 
     @NotNull
@@ -27,7 +27,15 @@ public final class CodeGenerator {
 
     @NotNull
     public static String generateProgramToString(@NotNull JsProgram program) {
-        TextOutputImpl output = new TextOutputImpl();
+        return generateProgramToString(program, false);
+    }
+
+    /**
+     * @param compact whether to leave out the optional whitespace, the line breaks and the indentation
+     */
+    @NotNull
+    public static String generateProgramToString(@NotNull JsProgram program, boolean compact) {
+        TextOutputImpl output = new TextOutputImpl(compact);
         JsSourceGenerationVisitor sourceGenerator = new JsSourceGenerationVisitor(output);
         program.traverse(sourceGenerator, null);
         return output.toString();
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.generate;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.dart.compiler.backend.js.JsReservedIdentifiers;
+import com.google.dart.compiler.backend.js.ast.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+import static com.google.dart.compiler.backend.js.ast.JsVars.JsVar;
+
+/**
+ * Renames the parameters and the variables of the functions of a translated program to short identifiers.
+ * <p/>
+ * Only the names local to the functions are renamed: they can't be seen by other scripts, while the members of the
+ * packages and the classes are reached as properties, by their names. The references are bound to the declarations
+ * lexically, by their identifiers, and a new name is never given to a variable if a reference to another variable
+ * with that name would be captured by it. The names of the functions, the parameters of catch clauses and the
+ * variables of for-in statements are kept, as are the variables declared by a statement which is not in a modifiable
+ * list of statements, since it can't be replaced.
+ */
+public final class LocalNamesMinifier {
+    private static final String FIRST_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String NEXT_CHARS = FIRST_CHARS + "0123456789_$";
+
+    // The lists which blocks are made with by the AST and can't be modified, e.g. by new JsBlock(JsStatement)
+    private static final Set<Class<?>> UNMODIFIABLE_LISTS = Sets.<Class<?>>newHashSet(
+            Collections.singletonList(null).getClass(),
+            Collections.emptyList().getClass(),
+            Collections.unmodifiableList(new ArrayList<Object>()).getClass(),
+            Collections.unmodifiableList(new LinkedList<Object>()).getClass());
+
+    private static final Set<String> KEYWORDS = Sets.newHashSet(
+            "break", "case", "catch", "class", "const", "continue", "debugger", "default", "delete", "do", "else", "enum",
+            "export", "extends", "false", "finally", "for", "function", "if", "implements", "import", "in", "instanceof",
+            "interface", "let", "new", "null", "package", "private", "protected", "public", "return", "static", "super",
+            "switch", "this", "throw", "true", "try", "typeof", "var", "void", "while", "with", "yield");
+
+    // The functions in the order they are met, the enclosing ones first
+    private final List<FunctionScope> functions = Lists.newArrayList();
+
+    // The function whose declaration each reference is bound to, null for the global ones
+    private final Map<JsNameRef, FunctionScope> bindings = new IdentityHashMap<JsNameRef, FunctionScope>();
+    // A node may be shared by several functions, its name is kept if they don't agree on its binding
+    private final Set<JsNameRef> ambiguousReferences = Sets.newIdentityHashSet();
+
+    public static void minify(@NotNull JsProgram program) {
+        LocalNamesMinifier minifier = new LocalNamesMinifier();
+        new DeclarationCollector().collect(program, minifier.functions);
+        minifier.bindReferences();
+        for (FunctionScope function : minifier.functions) {
+            minifier.chooseNewNames(function);
+        }
+        for (FunctionScope function : minifier.functions) {
+            minifier.rename(function);
+        }
+    }
+
+    private LocalNamesMinifier() {
+    }
+
+    private void bindReferences() {
+        for (FunctionScope function : functions) {
+            for (JsNameRef reference : function.references) {
+                FunctionScope owner = function.findDeclaration(reference.getIdent());
+                if (bindings.containsKey(reference) && bindings.get(reference) != owner) {
+                    ambiguousReferences.add(reference);
+                }
+                bindings.put(reference, owner);
+            }
+        }
+        for (JsNameRef reference : ambiguousReferences) {
+            for (FunctionScope function : functions) {
+                if (function.references.contains(reference)) {
+                    FunctionScope owner = function.findDeclaration(reference.getIdent());
+                    if (owner != null) {
+                        owner.keptNames.add(reference.getIdent());
+                    }
+                }
+            }
+        }
+    }
+
+    private void chooseNewNames(@NotNull FunctionScope function) {
+        Set<String> usedNames = Sets.newHashSet();
+        collectNamesUsedInside(function, function, usedNames);
+
+        Iterator<String> generator = new NameGenerator();
+        for (String name : function.declaredNames) {
+            if (function.keptNames.contains(name)) continue;
+
+            String newName = generator.next();
+            while (usedNames.contains(newName)) {
+                newName = generator.next();
+            }
+            function.newNames.put(name, newName);
+            usedNames.add(newName);
+        }
+    }
+
+    // The names in the body of the given function which mustn't be shadowed by its variables: the references to the
+    // enclosing functions and to the globals, with their new names, and the kept names of the nested functions
+    private void collectNamesUsedInside(@NotNull FunctionScope function, @NotNull FunctionScope current, @NotNull Set<String> usedNames) {
+        for (JsNameRef reference : current.references) {
+            FunctionScope owner = bindings.get(reference);
+            if (owner == null || !owner.isInside(function)) {
+                usedNames.add(getNewName(reference, owner));
+            }
+        }
+        usedNames.addAll(current.keptNames);
+        for (FunctionScope nested : current.nested) {
+            collectNamesUsedInside(function, nested, usedNames);
+        }
+    }
+
+    @NotNull
+    private String getNewName(@NotNull JsNameRef reference, @Nullable FunctionScope owner) {
+        String name = reference.getIdent();
+        if (owner == null || ambiguousReferences.contains(reference)) return name;
+        String newName = owner.newNames.get(name);
+        return newName != null ? newName : name;
+    }
+
+    private void rename(@NotNull FunctionScope function) {
+        if (function.newNames.isEmpty()) return;
+
+        for (JsNameRef reference : function.references) {
+            FunctionScope owner = bindings.get(reference);
+            if (owner != null && !ambiguousReferences.contains(reference)) {
+                JsName newName = owner.getNewJsName(reference.getIdent());
+                if (newName != null) {
+                    reference.resolve(newName);
+                }
+            }
+        }
+
+        List<JsParameter> parameters = function.function.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            JsName newName = function.getNewJsName(parameters.get(i).getName().getIdent());
+            if (newName != null) {
+                parameters.set(i, new JsParameter(newName));
+            }
+        }
+
+        for (VarsDeclaration declaration : function.varDeclarations) {
+            List<JsVar> newVars = Lists.newArrayList();
+            for (JsVar var : declaration.vars) {
+                JsName newName = function.getNewJsName(var.getName().getIdent());
+                newVars.add(newName != null ? new JsVar(newName, var.getInitExpression()) : var);
+            }
+            declaration.replace(new JsVars(newVars, declaration.vars.isMultiline()));
+        }
+    }
+
+    // A statement declaring variables, or a for loop declaring them in its initializer, at the given index of a list of
+    // statements. The names of the variables are final, so the statement is replaced to rename them.
+    private static class VarsDeclaration {
+        private final JsVars vars;
+        private final List<JsStatement> statements;
+        private final int index;
+
+        private VarsDeclaration(@NotNull JsVars vars, @NotNull List<JsStatement> statements, int index) {
+            this.vars = vars;
+            this.statements = statements;
+            this.index = index;
+        }
+
+        private void replace(@NotNull JsVars newVars) {
+            JsStatement statement = statements.get(index);
+            if (statement instanceof JsFor) {
+                JsFor loop = (JsFor) statement;
+                JsFor newLoop = new JsFor(newVars, loop.getCondition(), loop.getIncrExpr());
+                newLoop.setBody(loop.getBody());
+                statements.set(index, newLoop);
+            }
+            else {
+                statements.set(index, newVars);
+            }
+        }
+    }
+
+    private static class FunctionScope {
+        private final JsFunction function;
+        @Nullable
+        private final FunctionScope parent;
+        private final List<FunctionScope> nested = Lists.newArrayList();
+
+        // The parameters and the variables which can be renamed, in the order they are declared
+        private final Set<String> declaredNames = Sets.newLinkedHashSet();
+        // The names declared in the function which are not renamed
+        private final Set<String> keptNames = Sets.newHashSet();
+
+        private final List<JsNameRef> references = Lists.newArrayList();
+        private final List<VarsDeclaration> varDeclarations = Lists.newArrayList();
+
+        private final Map<String, String> newNames = Maps.newHashMap();
+        private final Map<String, JsName> newJsNames = Maps.newHashMap();
+
+        private FunctionScope(@NotNull JsFunction function, @Nullable FunctionScope parent) {
+            this.function = function;
+            this.parent = parent;
+            if (parent != null) {
+                parent.nested.add(this);
+            }
+        }
+
+        @Nullable
+        private FunctionScope findDeclaration(@NotNull String name) {
+            for (FunctionScope scope = this; scope != null; scope = scope.parent) {
+                if (scope.declaredNames.contains(name) || scope.keptNames.contains(name)) return scope;
+            }
+            return null;
+        }
+
+        private boolean isInside(@NotNull FunctionScope other) {
+            for (FunctionScope scope = this; scope != null; scope = scope.parent) {
+                if (scope == other) return true;
+            }
+            return false;
+        }
+
+        @Nullable
+        private JsName getNewJsName(@NotNull String name) {
+            String newName = newNames.get(name);
+            if (newName == null) return null;
+
+            JsName jsName = newJsNames.get(name);
+            if (jsName == null) {
+                jsName = function.getScope().declareName(newName);
+                newJsNames.put(name, jsName);
+            }
+            return jsName;
+        }
+    }
+
+    private static class DeclarationCollector extends JsVisitor {
+        private List<FunctionScope> functions;
+        @Nullable
+        private FunctionScope current = null;
+        private final Map<JsVars, VarsDeclaration> varDeclarations = new IdentityHashMap<JsVars, VarsDeclaration>();
+
+        public void collect(@NotNull JsProgram program, @NotNull List<FunctionScope> functions) {
+            this.functions = functions;
+            accept(program);
+        }
+
+        @Override
+        public boolean visit(JsFunction x, JsContext ctx) {
+            FunctionScope function = new FunctionScope(x, current);
+            functions.add(function);
+            if (x.getName() != null) {
+                // The name of a function statement is declared in the enclosing function
+                function.keptNames.add(x.getName().getIdent());
+                if (current != null) {
+                    current.keptNames.add(x.getName().getIdent());
+                }
+            }
+            for (JsParameter parameter : x.getParameters()) {
+                function.declaredNames.add(parameter.getName().getIdent());
+            }
+
+            FunctionScope enclosing = current;
+            current = function;
+            accept(x.getBody());
+            current = enclosing;
+
+            // A name declared both ways is kept
+            function.declaredNames.removeAll(function.keptNames);
+            return false;
+        }
+
+        @Override
+        public boolean visit(JsBlock x, JsContext ctx) {
+            collectVarDeclarations(x.getStatements());
+            return true;
+        }
+
+        @Override
+        public boolean visit(JsCase x, JsContext ctx) {
+            collectVarDeclarations(x.getStatements());
+            return true;
+        }
+
+        @Override
+        public boolean visit(JsDefault x, JsContext ctx) {
+            collectVarDeclarations(x.getStatements());
+            return true;
+        }
+
+        // The lists of statements are visited before the statements, so the declarations which can be replaced are known
+        // when their variables are met
+        private void collectVarDeclarations(@NotNull List<JsStatement> statements) {
+            if (UNMODIFIABLE_LISTS.contains(statements.getClass())) return;
+
+            for (int i = 0; i < statements.size(); i++) {
+                JsStatement statement = statements.get(i);
+                JsVars vars = null;
+                if (statement instanceof JsVars) {
+                    vars = (JsVars) statement;
+                }
+                else if (statement instanceof JsFor) {
+                    vars = ((JsFor) statement).getInitVars();
+                }
+                if (vars != null) {
+                    varDeclarations.put(vars, new VarsDeclaration(vars, statements, i));
+                }
+            }
+        }
+
+        @Override
+        public boolean visit(JsVars x, JsContext ctx) {
+            if (current != null) {
+                VarsDeclaration declaration = varDeclarations.get(x);
+                for (JsVar var : x) {
+                    (declaration != null ? current.declaredNames : current.keptNames).add(var.getName().getIdent());
+                }
+                if (declaration != null) {
+                    current.varDeclarations.add(declaration);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean visit(JsCatch x, JsContext ctx) {
+            if (current != null) {
+                current.keptNames.add(x.getParameter().getName().getIdent());
+            }
+            if (x.getCondition() != null) {
+                accept(x.getCondition());
+            }
+            accept(x.getBody());
+            return false;
+        }
+
+        @Override
+        public boolean visit(JsForIn x, JsContext ctx) {
+            if (current != null && x.getIterVarName() != null) {
+                current.keptNames.add(x.getIterVarName().getIdent());
+            }
+            return true;
+        }
+
+        @Override
+        public boolean visit(JsNameRef x, JsContext ctx) {
+            if (current != null && x.getQualifier() == null && x.getIdent() != null) {
+                current.references.add(x);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean visit(JsPropertyInitializer x, JsContext ctx) {
+            // The label is the name of a property, not a reference
+            accept(x.getValueExpr());
+            return false;
+        }
+
+        @Override
+        public boolean visit(JsBreak x, JsContext ctx) {
+            return false;
+        }
+
+        @Override
+        public boolean visit(JsContinue x, JsContext ctx) {
+            return false;
+        }
+    }
+
+    // a, b, ..., Z, aa, ab, ..., skipping the keywords and the global names of the browsers
+    private static class NameGenerator implements Iterator<String> {
+        private int index = 0;
+
+        @Override
+        public boolean hasNext() {
+            return true;
+        }
+
+        @Override
+        public String next() {
+            String name;
+            do {
+                name = generate(index++);
+            }
+            while (KEYWORDS.contains(name) || JsReservedIdentifiers.reservedGlobalSymbols.contains(name));
+            return name;
+        }
+
+        @NotNull
+        private static String generate(int index) {
+            StringBuilder name = new StringBuilder();
+            name.append(FIRST_CHARS.charAt(index % FIRST_CHARS.length()));
+            index /= FIRST_CHARS.length();
+            while (index > 0) {
+                index--;
+                name.append(NEXT_CHARS.charAt(index % NEXT_CHARS.length()));
+                index /= NEXT_CHARS.length();
+            }
+            return name.toString();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
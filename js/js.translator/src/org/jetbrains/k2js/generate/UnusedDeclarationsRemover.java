@@ -0,0 +1,251 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.generate;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.dart.compiler.backend.js.JsSourceGenerationVisitor;
+import com.google.dart.compiler.backend.js.ast.*;
+import com.google.dart.compiler.util.TextOutputImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.k2js.translate.utils.JsAstUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.dart.compiler.backend.js.ast.JsVars.JsVar;
+
+/**
+ * Leaves out of a translated program the functions, classes, objects and properties of the packages, the classes
+ * and the function literals which it never refers to.
+ * <p/>
+ * The code run by the program itself (the initializers of the packages, the call of main and the tests) is taken as
+ * used, and so is everything it refers to, by name: as the members are reached through the package objects, any reference
+ * to a name (or a string equal to it) keeps all the declarations of that name. The members of the classes are not
+ * removed, as they may be called by the library through the overridden names.
+ * <p/>
+ * The module only exports what is left, so the program must not be called by other scripts.
+ */
+public final class UnusedDeclarationsRemover {
+    private static final String DEFINE_PACKAGE = "definePackage";
+
+    private final JsProgram program;
+
+    // The entries of the object literals and the variables which can be removed, by their names
+    private final Multimap<String, JsNode> declarations = ArrayListMultimap.create();
+    private final Set<JsNode> removableNodes = Sets.newIdentityHashSet();
+
+    private final Set<String> usedNames = Sets.newHashSet();
+    private final List<String> namesToVisit = Lists.newArrayList();
+
+    private int removedSize;
+
+    /**
+     * @return the size of the code removed, in characters
+     */
+    public static int removeUnusedDeclarations(@NotNull JsProgram program) {
+        JsFunction rootFunction = findRootFunction(program);
+        if (rootFunction == null) return 0;
+
+        UnusedDeclarationsRemover remover = new UnusedDeclarationsRemover(program);
+        remover.remove(rootFunction.getBody().getStatements());
+        return remover.removedSize;
+    }
+
+    private UnusedDeclarationsRemover(@NotNull JsProgram program) {
+        this.program = program;
+    }
+
+    // See JsAstUtils.createPackage()
+    @Nullable
+    private static JsFunction findRootFunction(@NotNull JsProgram program) {
+        for (JsStatement statement : program.getGlobalBlock().getStatements()) {
+            if (!(statement instanceof JsExprStmt)) continue;
+            JsExpression expression = ((JsExprStmt) statement).getExpression();
+            if (!(expression instanceof JsInvocation)) continue;
+            for (JsExpression argument : ((JsInvocation) expression).getArguments()) {
+                if (argument instanceof JsInvocation && ((JsInvocation) argument).getQualifier() instanceof JsFunction) {
+                    return (JsFunction) ((JsInvocation) argument).getQualifier();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void remove(@NotNull List<JsStatement> rootStatements) {
+        for (JsStatement statement : rootStatements) {
+            if (statement instanceof JsVars) {
+                for (JsVar var : (JsVars) statement) {
+                    collectDeclarations(var.getInitExpression(), false);
+                }
+            }
+        }
+        if (declarations.isEmpty()) return;
+
+        ReferenceCollector collector = new ReferenceCollector();
+        collector.acceptList(rootStatements);
+        while (!namesToVisit.isEmpty()) {
+            String name = namesToVisit.remove(namesToVisit.size() - 1);
+            for (JsNode declaration : declarations.get(name)) {
+                if (declaration instanceof JsPropertyInitializer) {
+                    collector.accept(((JsPropertyInitializer) declaration).getValueExpr());
+                }
+                else {
+                    JsExpression initExpression = ((JsVar) declaration).getInitExpression();
+                    if (initExpression != null) {
+                        collector.accept(initExpression);
+                    }
+                }
+            }
+        }
+
+        for (JsStatement statement : rootStatements) {
+            if (statement instanceof JsVars) {
+                for (JsVar var : (JsVars) statement) {
+                    collectDeclarations(var.getInitExpression(), true);
+                }
+            }
+        }
+    }
+
+    // Walks the definitions of the packages, the classes and the function literals, registering their members
+    // or removing the unused ones
+    private void collectDeclarations(@Nullable JsExpression expression, boolean removeUnused) {
+        if (expression instanceof JsObjectLiteral) {
+            List<JsPropertyInitializer> initializers = ((JsObjectLiteral) expression).getPropertyInitializers();
+            for (int i = initializers.size() - 1; i >= 0; i--) {
+                JsPropertyInitializer initializer = initializers.get(i);
+                JsExpression value = initializer.getValueExpr();
+                if (isPackageDefinition(value)) {
+                    for (JsExpression argument : ((JsInvocation) value).getArguments()) {
+                        collectDeclarations(argument, removeUnused);
+                    }
+                }
+                else if (initializer.getLabelExpr() instanceof JsNameRef) {
+                    String name = ((JsNameRef) initializer.getLabelExpr()).getIdent();
+                    if (!removeUnused) {
+                        addDeclaration(name, initializer);
+                    }
+                    else if (!usedNames.contains(name)) {
+                        removedSize += getSize(new JsObjectLiteral(Collections.singletonList(initializer))) - 2;
+                        initializers.remove(i);
+                    }
+                }
+            }
+        }
+        else if (expression instanceof JsInvocation) {
+            JsInvocation invocation = (JsInvocation) expression;
+            if (invocation.getQualifier() == JsAstUtils.CREATE_OBJECT) {
+                for (JsExpression argument : invocation.getArguments()) {
+                    collectDeclarations(argument, removeUnused);
+                }
+            }
+            else if (invocation.getQualifier() instanceof JsFunction && invocation.getArguments().isEmpty()) {
+                // The classes which are inherited from are declared as the variables of a function,
+                // see ClassDeclarationTranslator
+                List<JsStatement> statements = ((JsFunction) invocation.getQualifier()).getBody().getStatements();
+                for (int i = 0; i < statements.size(); i++) {
+                    JsStatement statement = statements.get(i);
+                    if (statement instanceof JsVars) {
+                        collectVarDeclarations(statements, i, removeUnused);
+                    }
+                    else if (statement instanceof JsReturn) {
+                        collectDeclarations(((JsReturn) statement).getExpr(), removeUnused);
+                    }
+                }
+            }
+        }
+    }
+
+    private void collectVarDeclarations(@NotNull List<JsStatement> statements, int index, boolean removeUnused) {
+        List<JsVar> usedVars = Lists.newArrayList();
+        for (JsVar var : (JsVars) statements.get(index)) {
+            String name = var.getName().getIdent();
+            if (!removeUnused) {
+                addDeclaration(name, var);
+            }
+            else if (usedNames.contains(name)) {
+                usedVars.add(var);
+            }
+            else {
+                removedSize += getSize(var);
+            }
+        }
+        if (removeUnused) {
+            // The statements of the function may not be removed
+            statements.set(index, usedVars.isEmpty() ? program.getEmptyStmt() : new JsVars(usedVars, true));
+        }
+    }
+
+    private void addDeclaration(@NotNull String name, @NotNull JsNode declaration) {
+        declarations.put(name, declaration);
+        removableNodes.add(declaration);
+    }
+
+    private void markUsed(@NotNull String name) {
+        if (usedNames.add(name) && declarations.containsKey(name)) {
+            namesToVisit.add(name);
+        }
+    }
+
+    private static boolean isPackageDefinition(@NotNull JsExpression expression) {
+        if (!(expression instanceof JsInvocation)) return false;
+        JsExpression qualifier = ((JsInvocation) expression).getQualifier();
+        return qualifier instanceof JsNameRef && DEFINE_PACKAGE.equals(((JsNameRef) qualifier).getIdent());
+    }
+
+    private static int getSize(@NotNull JsNode node) {
+        TextOutputImpl output = new TextOutputImpl();
+        new JsSourceGenerationVisitor(output).accept(node);
+        return output.toString().length();
+    }
+
+    private class ReferenceCollector extends JsVisitor {
+        @Override
+        public boolean visit(JsNameRef x, JsContext ctx) {
+            String name = x.getIdent();
+            if (name != null) {
+                markUsed(name);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean visit(JsStringLiteral x, JsContext ctx) {
+            markUsed(x.getValue());
+            return true;
+        }
+
+        @Override
+        public boolean visit(JsPropertyInitializer x, JsContext ctx) {
+            if (!removableNodes.contains(x)) {
+                // The label is the name of the member being defined, not a reference to it
+                accept(x.getValueExpr());
+            }
+            return false;
+        }
+
+        @Override
+        public boolean visit(JsVar x, JsContext ctx) {
+            return !removableNodes.contains(x);
+        }
+    }
+}
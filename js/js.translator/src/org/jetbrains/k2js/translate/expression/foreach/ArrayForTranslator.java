@@ -19,9 +19,12 @@ package org.jetbrains.k2js.translate.expression.foreach;
 import com.google.common.collect.Lists;
 import com.google.dart.compiler.backend.js.ast.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.descriptors.DeclarationDescriptor;
 import org.jetbrains.jet.lang.psi.JetExpression;
 import org.jetbrains.jet.lang.psi.JetForExpression;
 import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+import org.jetbrains.jet.lang.types.lang.PrimitiveType;
 import org.jetbrains.k2js.translate.context.TemporaryVariable;
 import org.jetbrains.k2js.translate.context.TranslationContext;
 import org.jetbrains.k2js.translate.general.Translation;
@@ -48,10 +51,22 @@ public final class ArrayForTranslator extends ForTranslator {
             @NotNull TranslationContext context) {
         JetExpression loopRange = getLoopRange(expression);
         JetType rangeType = BindingUtils.getTypeForExpression(context.bindingContext(), loopRange);
-        //TODO: better check
-        //TODO: IMPORTANT!
-        return getClassDescriptorForType(rangeType).getName().getName().equals("Array")
-               || getClassDescriptorForType(rangeType).getName().getName().equals("IntArray");
+        return isArrayClass(getClassDescriptorForType(rangeType));
+    }
+
+    // Array and the arrays of the primitive types are all JavaScript arrays, see ArrayFIF
+    static boolean isArrayClass(@NotNull DeclarationDescriptor descriptor) {
+        KotlinBuiltIns builtIns = KotlinBuiltIns.getInstance();
+        DeclarationDescriptor original = descriptor.getOriginal();
+        if (original == builtIns.getArray()) {
+            return true;
+        }
+        for (PrimitiveType type : PrimitiveType.values()) {
+            if (original == builtIns.getPrimitiveArrayClassDescriptor(type)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @NotNull
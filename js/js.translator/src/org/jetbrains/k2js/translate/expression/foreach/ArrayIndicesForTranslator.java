@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.translate.expression.foreach;
+
+import com.google.common.collect.Lists;
+import com.google.dart.compiler.backend.js.ast.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.descriptors.DeclarationDescriptor;
+import org.jetbrains.jet.lang.descriptors.PropertyDescriptor;
+import org.jetbrains.jet.lang.psi.JetDotQualifiedExpression;
+import org.jetbrains.jet.lang.psi.JetExpression;
+import org.jetbrains.jet.lang.psi.JetForExpression;
+import org.jetbrains.jet.lang.psi.JetSimpleNameExpression;
+import org.jetbrains.k2js.translate.context.TemporaryVariable;
+import org.jetbrains.k2js.translate.context.TranslationContext;
+import org.jetbrains.k2js.translate.general.Translation;
+import org.jetbrains.k2js.translate.intrinsic.functions.factories.ArrayFIF;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.jetbrains.k2js.translate.utils.BindingUtils.getNullableDescriptorForReferenceExpression;
+import static org.jetbrains.k2js.translate.utils.JsAstUtils.*;
+import static org.jetbrains.k2js.translate.utils.PsiUtils.getLoopRange;
+import static org.jetbrains.k2js.translate.utils.PsiUtils.getSelectorAsSimpleName;
+import static org.jetbrains.k2js.translate.utils.TemporariesUtils.temporariesInitialization;
+
+/**
+ * Translates the loops over the indices of an array, {@code for (i in array.indices)}, without creating the range.
+ */
+public final class ArrayIndicesForTranslator extends ForTranslator {
+
+    @NotNull
+    public static JsStatement doTranslate(@NotNull JetForExpression expression,
+            @NotNull TranslationContext context) {
+        return (new ArrayIndicesForTranslator(expression, context).translate());
+    }
+
+    public static boolean isApplicable(@NotNull JetForExpression expression,
+            @NotNull TranslationContext context) {
+        JetExpression loopRange = getLoopRange(expression);
+        if (!(loopRange instanceof JetDotQualifiedExpression)) {
+            return false;
+        }
+        JetSimpleNameExpression selector = getSelectorAsSimpleName((JetDotQualifiedExpression) loopRange);
+        if (selector == null) {
+            return false;
+        }
+        DeclarationDescriptor descriptor = getNullableDescriptorForReferenceExpression(context.bindingContext(), selector);
+        if (!(descriptor instanceof PropertyDescriptor) || !descriptor.getName().getName().equals("indices")) {
+            return false;
+        }
+        DeclarationDescriptor containingDeclaration = descriptor.getOriginal().getContainingDeclaration();
+        return containingDeclaration != null && ArrayForTranslator.isArrayClass(containingDeclaration);
+    }
+
+    @NotNull
+    private final TemporaryVariable array;
+
+    @NotNull
+    private final TemporaryVariable end;
+
+    private ArrayIndicesForTranslator(@NotNull JetForExpression forExpression, @NotNull TranslationContext context) {
+        super(forExpression, context);
+        JetExpression loopRange = getLoopRange(expression);
+        assert loopRange instanceof JetDotQualifiedExpression;
+        JetExpression receiver = ((JetDotQualifiedExpression) loopRange).getReceiverExpression();
+        array = context.declareTemporary(Translation.translateAsExpression(receiver, context));
+
+        JsExpression length = ArrayFIF.ARRAY_LENGTH_INTRINSIC.apply(array.reference(),
+                                                                    Collections.<JsExpression>emptyList(),
+                                                                    context());
+        end = context().declareTemporary(length);
+    }
+
+    @NotNull
+    private JsBlock translate() {
+        List<JsStatement> blockStatements = Lists.newArrayList();
+        blockStatements.add(temporariesInitialization(array, end).makeStmt());
+        blockStatements.add(generateForExpression(getInitExpression(), getCondition(), getIncrementExpression(),
+                                                  translateOriginalBodyExpression()));
+        return new JsBlock(blockStatements);
+    }
+
+    @NotNull
+    private JsVars getInitExpression() {
+        return newVar(parameterName, program().getNumberLiteral(0));
+    }
+
+    @NotNull
+    private JsExpression getCondition() {
+        return inequality(parameterName.makeRef(), end.reference());
+    }
+
+    @NotNull
+    private JsExpression getIncrementExpression() {
+        return new JsPostfixOperation(JsUnaryOperator.INC, parameterName.makeRef());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.translate.expression.foreach;
+
+import com.google.common.collect.Lists;
+import com.google.dart.compiler.backend.js.ast.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.psi.JetExpression;
+import org.jetbrains.jet.lang.psi.JetForExpression;
+import org.jetbrains.jet.lang.resolve.name.FqNameUnsafe;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.k2js.translate.context.TemporaryVariable;
+import org.jetbrains.k2js.translate.context.TranslationContext;
+import org.jetbrains.k2js.translate.general.Translation;
+import org.jetbrains.k2js.translate.utils.BindingUtils;
+
+import java.util.List;
+
+import static org.jetbrains.jet.lang.resolve.DescriptorUtils.getClassDescriptorForType;
+import static org.jetbrains.jet.lang.resolve.DescriptorUtils.getFQName;
+import static org.jetbrains.k2js.translate.utils.JsAstUtils.*;
+import static org.jetbrains.k2js.translate.utils.PsiUtils.getLoopRange;
+import static org.jetbrains.k2js.translate.utils.TemporariesUtils.temporariesInitialization;
+
+/**
+ * Translates the loops over a java.util.ArrayList to the calls of get() by index, as its iterator
+ * (see ArrayIterator in kotlin_lib.js) would do, without creating the iterator.
+ */
+public final class ArrayListForTranslator extends ForTranslator {
+    private static final FqNameUnsafe ARRAY_LIST = new FqNameUnsafe("java.util.ArrayList");
+
+    @NotNull
+    public static JsStatement doTranslate(@NotNull JetForExpression expression,
+            @NotNull TranslationContext context) {
+        return (new ArrayListForTranslator(expression, context).translate());
+    }
+
+    public static boolean isApplicable(@NotNull JetForExpression expression,
+            @NotNull TranslationContext context) {
+        JetExpression loopRange = getLoopRange(expression);
+        JetType rangeType = BindingUtils.getTypeForExpression(context.bindingContext(), loopRange);
+        return getFQName(getClassDescriptorForType(rangeType)).equals(ARRAY_LIST);
+    }
+
+    @NotNull
+    private final TemporaryVariable list;
+
+    @NotNull
+    private final TemporaryVariable size;
+
+    @NotNull
+    private final TemporaryVariable index;
+
+    private ArrayListForTranslator(@NotNull JetForExpression forExpression, @NotNull TranslationContext context) {
+        super(forExpression, context);
+        list = context.declareTemporary(Translation.translateAsExpression(getLoopRange(expression), context));
+        size = context().declareTemporary(new JsInvocation(new JsNameRef("size", list.reference())));
+        index = context().declareTemporary(program().getNumberLiteral(0));
+    }
+
+    @NotNull
+    private JsBlock translate() {
+        List<JsStatement> blockStatements = Lists.newArrayList();
+        blockStatements.add(temporariesInitialization(list, size).makeStmt());
+        blockStatements.add(generateForExpression(getInitExpression(), getCondition(), getIncrementExpression(),
+                                                  translateBody(getItem())));
+        return new JsBlock(blockStatements);
+    }
+
+    @NotNull
+    private JsExpression getItem() {
+        return new JsInvocation(new JsNameRef("get", list.reference()), index.reference());
+    }
+
+    @NotNull
+    private JsVars getInitExpression() {
+        return newVar(index.name(), program().getNumberLiteral(0));
+    }
+
+    @NotNull
+    private JsExpression getCondition() {
+        return inequality(index.reference(), size.reference());
+    }
+
+    @NotNull
+    private JsExpression getIncrementExpression() {
+        return new JsPrefixOperation(JsUnaryOperator.INC, index.reference());
+    }
+}
@@ -38,12 +38,18 @@ public abstract class ForTranslator extends AbstractTranslator {
         if (RangeLiteralForTranslator.isApplicable(expression, context)) {
             return RangeLiteralForTranslator.doTranslate(expression, context);
         }
+        if (ArrayIndicesForTranslator.isApplicable(expression, context)) {
+            return ArrayIndicesForTranslator.doTranslate(expression, context);
+        }
         if (RangeForTranslator.isApplicable(expression, context)) {
             return RangeForTranslator.doTranslate(expression, context);
         }
         if (ArrayForTranslator.isApplicable(expression, context)) {
             return ArrayForTranslator.doTranslate(expression, context);
         }
+        if (ArrayListForTranslator.isApplicable(expression, context)) {
+            return ArrayListForTranslator.doTranslate(expression, context);
+        }
         return IteratorForTranslator.doTranslate(expression, context);
     }
 
@@ -21,6 +21,7 @@ import com.google.dart.compiler.backend.js.ast.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.lang.psi.JetExpression;
 import org.jetbrains.jet.lang.psi.JetForExpression;
+import org.jetbrains.jet.lang.resolve.name.FqNameUnsafe;
 import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.k2js.translate.context.TemporaryVariable;
 import org.jetbrains.k2js.translate.context.TranslationContext;
@@ -30,11 +31,13 @@ import org.jetbrains.k2js.translate.utils.BindingUtils;
 import java.util.List;
 
 import static org.jetbrains.jet.lang.resolve.DescriptorUtils.getClassDescriptorForType;
+import static org.jetbrains.jet.lang.resolve.DescriptorUtils.getFQName;
 import static org.jetbrains.k2js.translate.utils.JsAstUtils.*;
 import static org.jetbrains.k2js.translate.utils.PsiUtils.getLoopRange;
 import static org.jetbrains.k2js.translate.utils.TemporariesUtils.temporariesInitialization;
 
 public final class RangeForTranslator extends ForTranslator {
+    private static final FqNameUnsafe INT_RANGE = new FqNameUnsafe("jet.IntRange");
 
     @NotNull
     public static JsStatement doTranslate(@NotNull JetForExpression expression,
@@ -46,9 +49,8 @@ public final class RangeForTranslator extends ForTranslator {
                                        @NotNull TranslationContext context) {
         JetExpression loopRange = getLoopRange(expression);
         JetType rangeType = BindingUtils.getTypeForExpression(context.bindingContext(), loopRange);
-        //TODO: better check
         //TODO: long range?
-        return getClassDescriptorForType(rangeType).getName().getName().equals("IntRange");
+        return getFQName(getClassDescriptorForType(rangeType)).equals(INT_RANGE);
     }
 
     @NotNull
@@ -57,21 +59,18 @@ public final class RangeForTranslator extends ForTranslator {
     private final TemporaryVariable start;
     @NotNull
     private final TemporaryVariable end;
-    @NotNull
-    private final TemporaryVariable increment;
 
     private RangeForTranslator(@NotNull JetForExpression forExpression, @NotNull TranslationContext context) {
         super(forExpression, context);
         rangeExpression = context.declareTemporary(Translation.translateAsExpression(getLoopRange(expression), context));
         start = context().declareTemporary(callFunction("get_start"));
         end = context().declareTemporary(callFunction("get_end"));
-        increment = context().declareTemporary(callFunction("get_increment"));
     }
 
     @NotNull
     private JsBlock translate() {
         List<JsStatement> blockStatements = Lists.newArrayList();
-        blockStatements.add(temporariesInitialization(rangeExpression, start, end, increment).makeStmt());
+        blockStatements.add(temporariesInitialization(rangeExpression, start, end).makeStmt());
         blockStatements.add(generateForExpression());
         return new JsBlock(blockStatements);
     }
@@ -95,7 +94,8 @@ public final class RangeForTranslator extends ForTranslator {
 
     @NotNull
     private JsExpression getIncrExpression() {
-        return addAssign(parameterName.makeRef(), increment.reference());
+        // The increment of a range is always 1
+        return new JsPostfixOperation(JsUnaryOperator.INC, parameterName.makeRef());
     }
 
     @NotNull
@@ -36,6 +36,8 @@ import org.jetbrains.k2js.translate.operation.OperatorTable;
 
 import java.util.List;
 
+import static com.google.dart.compiler.backend.js.ast.JsNumberLiteral.JsDoubleLiteral;
+import static com.google.dart.compiler.backend.js.ast.JsNumberLiteral.JsIntLiteral;
 import static org.jetbrains.k2js.translate.intrinsic.functions.factories.NumberConversionFIF.INTEGER_NUMBER_TYPES;
 import static org.jetbrains.k2js.translate.intrinsic.functions.patterns.PatternBuilder.pattern;
 import static org.jetbrains.k2js.translate.utils.JsAstUtils.*;
@@ -150,7 +152,82 @@ public enum PrimitiveBinaryOperationFIF implements FunctionIntrinsicFactory {
                 @NotNull TranslationContext context) {
             assert receiver != null;
             assert arguments.size() == 1 : "Binary operator should have a receiver and one argument";
-            return new JsBinaryOperation(operator, receiver, arguments.get(0));
+            JsExpression argument = arguments.get(0);
+            JsExpression folded = fold(receiver, argument, context.program());
+            return folded != null ? folded : new JsBinaryOperation(operator, receiver, argument);
+        }
+
+        // Computes the operations on the literals the way the generated code would, so that they can be left out of it
+        @Nullable
+        private JsExpression fold(@NotNull JsExpression left, @NotNull JsExpression right, @NotNull JsProgram program) {
+            if (left instanceof JsStringLiteral && right instanceof JsStringLiteral && operator == JsBinaryOperator.ADD) {
+                return program.getStringLiteral(((JsStringLiteral) left).getValue() + ((JsStringLiteral) right).getValue());
+            }
+            if (left instanceof JsIntLiteral && right instanceof JsIntLiteral) {
+                Integer result = foldBitwise(((JsIntLiteral) left).value, ((JsIntLiteral) right).value);
+                if (result != null) {
+                    return program.getNumberLiteral(result);
+                }
+            }
+            if (left instanceof JsNumberLiteral && right instanceof JsNumberLiteral) {
+                Double result = foldArithmetic(getValue((JsNumberLiteral) left), getValue((JsNumberLiteral) right));
+                if (result == null || result.isNaN() || result.isInfinite() || isNegativeZero(result)) return null;
+                if (result == Math.rint(result) && result >= Integer.MIN_VALUE && result <= Integer.MAX_VALUE) {
+                    return program.getNumberLiteral(result.intValue());
+                }
+                return program.getNumberLiteral(result);
+            }
+            return null;
+        }
+
+        // The operands of the bitwise operations are 32-bit integers both in Java and in JavaScript,
+        // except for >>>, whose result is unsigned in JavaScript
+        @Nullable
+        private Integer foldBitwise(int left, int right) {
+            switch (operator) {
+                case BIT_AND:
+                    return left & right;
+                case BIT_OR:
+                    return left | right;
+                case BIT_XOR:
+                    return left ^ right;
+                case SHL:
+                    return left << right;
+                case SHR:
+                    return left >> right;
+                default:
+                    return null;
+            }
+        }
+
+        // The numbers are doubles in JavaScript, and the integer division is not translated to DIV
+        @Nullable
+        private Double foldArithmetic(double left, double right) {
+            switch (operator) {
+                case ADD:
+                    return left + right;
+                case SUB:
+                    return left - right;
+                case MUL:
+                    return left * right;
+                case DIV:
+                    return left / right;
+                case MOD:
+                    return left % right;
+                default:
+                    return null;
+            }
+        }
+
+        private static double getValue(@NotNull JsNumberLiteral literal) {
+            if (literal instanceof JsIntLiteral) {
+                return ((JsIntLiteral) literal).value;
+            }
+            return ((JsDoubleLiteral) literal).value;
+        }
+
+        private static boolean isNegativeZero(double value) {
+            return value == 0 && 1 / value < 0;
         }
     }
 }
@@ -62,7 +62,8 @@ public final class JsAstUtils {
         if (jsNode instanceof JsBlock) {
             return (JsBlock) jsNode;
         }
-        return new JsBlock(convertToStatement(jsNode));
+        // A modifiable list, so that the statement can be replaced later, see LocalNamesMinifier
+        return new JsBlock(new SmartList<JsStatement>(convertToStatement(jsNode)));
     }
 
     @NotNull
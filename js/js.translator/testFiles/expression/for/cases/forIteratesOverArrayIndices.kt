@@ -0,0 +1,16 @@
+package foo
+
+val a1 = array(1, 2, 3, 4)
+
+fun box() : Boolean {
+    var sum = 0
+    var last = -1
+    for (i in a1.indices) {
+        sum += a1[i]
+        last = i
+    }
+    for (i in array<Int>().indices) {
+        return false
+    }
+    return (sum == 10) && (last == 3)
+}
@@ -0,0 +1,17 @@
+package foo
+
+import java.util.ArrayList
+
+fun box() : Boolean {
+    val list = ArrayList<Int>()
+    list.add(1)
+    list.add(2)
+    list.add(3)
+    var sum = 0
+    var count = 0
+    for (i in list) {
+        sum += i
+        count++
+    }
+    return (sum == 6) && (count == 3)
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+package foo
+
+fun box() : Boolean {
+    val a1 = IntArray(3)
+    a1[0] = 1
+    a1[1] = 2
+    a1[2] = 3
+    var sum = 0
+    for (a in a1) {
+        sum += a
+    }
+
+    val a2 = DoubleArray(2)
+    a2[0] = 0.5
+    a2[1] = 1.5
+    var doubleSum = 0.0
+    for (d in a2) {
+        doubleSum += d
+    }
+    return (sum == 6) && (doubleSum == 2.0)
+}
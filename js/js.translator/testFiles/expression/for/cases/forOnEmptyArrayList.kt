@@ -0,0 +1,11 @@
+package foo
+
+import java.util.ArrayList
+
+fun box() : Boolean {
+    val list = ArrayList<String>()
+    for (s in list) {
+        return false
+    }
+    return true
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package foo
+
+fun sum(numbers: Array<Int>): Int {
+    var accumulatedTotal = 0
+    for (number in numbers) {
+        accumulatedTotal += number
+    }
+    return accumulatedTotal
+}
+
+fun makeAdder(increment: Int): (Int) -> Int = { value -> value + increment }
+
+fun main(args: Array<String>) {
+    val secondsPerDay = 24 * 60 * 60
+    val greeting = "Hello, " + "world"
+    val addSeconds = makeAdder(secondsPerDay)
+    println(greeting + " " + addSeconds(sum(array(1, 2, 3))))
+}
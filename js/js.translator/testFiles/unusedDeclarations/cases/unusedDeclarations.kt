@@ -0,0 +1,25 @@
+package foo
+
+open class Base() {
+    open fun name() = "base"
+}
+
+class Derived() : Base() {
+    override fun name() = "derived"
+}
+
+open class UnusedBase() {
+    fun usedFunction() = 0
+}
+
+class UnusedDerived() : UnusedBase()
+
+val answer = 42
+
+fun usedFunction(b: Base) = b.name() + " " + answer
+
+fun unusedFunction(): Int = unusedFunction()
+
+fun main(args: Array<String>) {
+    println(usedFunction(Derived()))
+}
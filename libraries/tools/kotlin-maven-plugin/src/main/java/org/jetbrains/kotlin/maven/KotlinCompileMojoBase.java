@@ -23,6 +23,7 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.cli.common.CLICompiler;
 import org.jetbrains.jet.cli.common.CompilerArguments;
 import org.jetbrains.jet.cli.common.CompilerVersion;
@@ -32,8 +33,10 @@ import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
 import org.jetbrains.jet.cli.common.messages.MessageCollector;
 import org.jetbrains.jet.cli.jvm.K2JVMCompiler;
 import org.jetbrains.jet.cli.jvm.K2JVMCompilerArguments;
+import org.jetbrains.jet.cli.jvm.daemon.CompileDaemonClient;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -133,6 +136,14 @@ public abstract class KotlinCompileMojoBase extends AbstractMojo {
      */
     public String testModule;
 
+    /**
+     * Port of a running Kotlin compile daemon to send the compilation to.
+     * When no daemon is listening on the port, the sources are compiled in the Maven process.
+     *
+     * @parameter expression="${kotlin.daemon.port}"
+     */
+    public Integer daemonPort;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         getLog().info("Kotlin Compiler version " + CompilerVersion.VERSION);
@@ -182,7 +193,13 @@ public abstract class KotlinCompileMojoBase extends AbstractMojo {
             }
         };
 
-        final ExitCode exitCode = compiler.exec(messageCollector, arguments);
+        ExitCode exitCode = null;
+        if (daemonPort != null && arguments instanceof K2JVMCompilerArguments) {
+            exitCode = compileWithDaemon((K2JVMCompilerArguments) arguments, messageCollector);
+        }
+        if (exitCode == null) {
+            exitCode = compiler.exec(messageCollector, arguments);
+        }
 
         switch (exitCode) {
             case COMPILATION_ERROR:
@@ -193,6 +210,28 @@ public abstract class KotlinCompileMojoBase extends AbstractMojo {
         }
     }
 
+    @Nullable
+    private ExitCode compileWithDaemon(@NotNull K2JVMCompilerArguments arguments, @NotNull MessageCollector messageCollector)
+            throws MojoExecutionException {
+        String[] commandLine = CompileDaemonClient.toCommandLine(arguments);
+        if (commandLine == null) {
+            getLog().info("Compiler arguments can't be passed to the compile daemon, compiling in process");
+            return null;
+        }
+
+        try {
+            ExitCode exitCode = CompileDaemonClient.compile(daemonPort, commandLine, messageCollector);
+            if (exitCode == null) {
+                getLog().info("No compile daemon is listening on port " + daemonPort + ", compiling in process");
+            }
+            return exitCode;
+        }
+        catch (IOException e) {
+            // Some messages may have been reported already, compiling again would report them twice
+            throw new MojoExecutionException("Connection to the compile daemon is lost during the compilation", e);
+        }
+    }
+
     private void printCompilerArgumentsIfDebugEnabled(CompilerArguments arguments, CLICompiler compiler) {
         if (getLog().isDebugEnabled()) {
             getLog().debug("Invoking compiler " + compiler + " with arguments:");